@@ -0,0 +1,97 @@
+package com.lat.be.util;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+
+/**
+ * Phần xử lý CPU của /auth/refresh: kiểm tra refresh token bằng decoder tạo mới mỗi lần (cách cũ của
+ * SecurityUtil.checkValidRefreshToken) so với decoder dùng chung, băm token để tra cứu / xoay vòng,
+ * và ký token mới khi xoay vòng. Chạy: ./gradlew jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RefreshTokenBenchmark {
+    private SecretKey secretKey;
+    private JwtEncoder encoder;
+    private JwtDecoder sharedDecoder;
+    private String refreshToken;
+    private String family;
+
+    @Setup
+    public void setup() {
+        byte[] keyBytes = new byte[64];
+        new SecureRandom().nextBytes(keyBytes);
+        this.secretKey = new SecretKeySpec(keyBytes, SecurityUtil.JWT_ALGORITHM.getName());
+        this.encoder = new NimbusJwtEncoder(new ImmutableSecret<>(this.secretKey));
+        this.sharedDecoder = newDecoder();
+        this.family = UUID.randomUUID().toString();
+        this.refreshToken = encode();
+    }
+
+    @Benchmark
+    public Jwt decodeWithNewDecoder() {
+        return newDecoder().decode(this.refreshToken);
+    }
+
+    @Benchmark
+    public Jwt decodeWithSharedDecoder() {
+        return this.sharedDecoder.decode(this.refreshToken);
+    }
+
+    @Benchmark
+    public String hashToken() {
+        return SecurityUtil.hashToken(this.refreshToken);
+    }
+
+    // Một lần xoay vòng: kiểm tra token cũ, băm token cũ để so với hash đang lưu, ký và băm token mới
+    @Benchmark
+    public String rotate() {
+        this.sharedDecoder.decode(this.refreshToken);
+        SecurityUtil.hashToken(this.refreshToken);
+        return SecurityUtil.hashToken(encode());
+    }
+
+    private JwtDecoder newDecoder() {
+        return NimbusJwtDecoder.withSecretKey(this.secretKey).macAlgorithm(SecurityUtil.JWT_ALGORITHM).build();
+    }
+
+    // Cùng claim với SecurityUtil.createRefreshToken
+    private String encode() {
+        Instant now = Instant.now();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .issuedAt(now)
+                .expiresAt(now.plus(100, ChronoUnit.DAYS))
+                .subject("benchmark@hoangtusport.id.vn")
+                .claim("user", Map.of("id", 1024L, "email", "benchmark@hoangtusport.id.vn", "name", "Benchmark"))
+                .claim("family", this.family)
+                .build();
+        JwsHeader header = JwsHeader.with(SecurityUtil.JWT_ALGORITHM).build();
+        return this.encoder.encode(JwtEncoderParameters.from(header, claims)).getTokenValue();
+    }
+}
@@ -0,0 +1,90 @@
+package com.lat.be.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * So sánh ký URL thanh toán và kiểm tra chữ ký trả về giữa cách cũ (Mac.getInstance mỗi lần, String.format,
+ * sắp xếp ArrayList, URLEncoder theo tên charset, xem VNPayLegacySigner trong src/test) và VNPaySigner. Chạy: ./gradlew jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VNPaySignerBenchmark {
+    private static final String SECRET = "BENCHMARKHASHSECRET0123456789ABCDEF";
+
+    private VNPaySigner signer;
+    private Map<String, String> paymentParams;
+    private Map<String, String> returnParams;
+
+    @Setup
+    public void setup() {
+        this.signer = new VNPaySigner(SECRET);
+
+        this.paymentParams = new HashMap<>();
+        this.paymentParams.put("vnp_Version", "2.1.0");
+        this.paymentParams.put("vnp_Command", "pay");
+        this.paymentParams.put("vnp_TmnCode", "YOURCODE");
+        this.paymentParams.put("vnp_Amount", "125000000");
+        this.paymentParams.put("vnp_CurrCode", "VND");
+        this.paymentParams.put("vnp_TxnRef", "1024-1735689600000");
+        this.paymentParams.put("vnp_OrderInfo", "Thanh toan don hang 1024");
+        this.paymentParams.put("vnp_OrderType", "200000");
+        this.paymentParams.put("vnp_Locale", "vn");
+        this.paymentParams.put("vnp_ReturnUrl", "https://hoangtusport.id.vn/confirmation/1024");
+        this.paymentParams.put("vnp_IpAddr", "127.0.0.1");
+        this.paymentParams.put("vnp_CreateDate", "20250101080000");
+        this.paymentParams.put("vnp_ExpireDate", "20250101081500");
+
+        this.returnParams = new HashMap<>();
+        this.returnParams.put("vnp_Amount", "125000000");
+        this.returnParams.put("vnp_BankCode", "NCB");
+        this.returnParams.put("vnp_BankTranNo", "VNP14780123");
+        this.returnParams.put("vnp_CardType", "ATM");
+        this.returnParams.put("vnp_OrderInfo", "Thanh toan don hang 1024");
+        this.returnParams.put("vnp_PayDate", "20250101080512");
+        this.returnParams.put("vnp_ResponseCode", "00");
+        this.returnParams.put("vnp_TmnCode", "YOURCODE");
+        this.returnParams.put("vnp_TransactionNo", "14780123");
+        this.returnParams.put("vnp_TransactionStatus", "00");
+        this.returnParams.put("vnp_TxnRef", "1024-1735689600000");
+        this.returnParams.put("vnp_SecureHash", this.signer.sign(VNPaySigner.canonicalQuery(this.returnParams)));
+    }
+
+    @Benchmark
+    public String signLegacy() {
+        return VNPayLegacySigner.createQuery(SECRET, this.paymentParams);
+    }
+
+    @Benchmark
+    public String signEngine() {
+        // Giống VNPayConfig.createPaymentUrl: tham số được đưa vào TreeMap
+        StringBuilder query = VNPaySigner.canonicalQuery(new TreeMap<>(this.paymentParams));
+        String hash = this.signer.sign(query);
+        return query.append('&').append(VNPaySigner.SECURE_HASH).append('=').append(hash).toString();
+    }
+
+    @Benchmark
+    public boolean verifyLegacy() {
+        String hash = this.returnParams.get(VNPaySigner.SECURE_HASH);
+        boolean valid = VNPayLegacySigner.validate(SECRET, this.returnParams);
+        // Cách cũ xóa vnp_SecureHash khỏi map nên đặt lại cho lần gọi sau
+        this.returnParams.put(VNPaySigner.SECURE_HASH, hash);
+        return valid;
+    }
+
+    @Benchmark
+    public boolean verifyEngine() {
+        return this.signer.verify(this.returnParams);
+    }
+}
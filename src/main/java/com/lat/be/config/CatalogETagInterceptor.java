@@ -0,0 +1,65 @@
+package com.lat.be.config;
+
+import java.util.Map;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.lat.be.service.CatalogVersion;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * GET có điều kiện cho các API đọc danh mục: so If-None-Match / If-Modified-Since với phiên bản danh mục
+ * trước khi vào controller, khớp thì trả 304 ngay (không truy vấn CSDL, không serialize).
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogETagInterceptor implements HandlerInterceptor {
+    private static final String PRODUCT_DETAIL_PATTERN = "/api/v1/products/{id}";
+
+    private final CatalogVersion catalogVersion;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+            return true;
+        }
+        // Đọc phiên bản trước khi tải dữ liệu: nội dung trả về luôn mới bằng hoặc hơn ETag
+        CatalogVersion.Snapshot snapshot = this.catalogVersion.current();
+        Long productId = productDetailId(request);
+        if (productId != null) {
+            // Trang chi tiết có số lượng tồn kho nên dùng phiên bản riêng của sản phẩm
+            snapshot = this.catalogVersion.forProduct(productId);
+        }
+        // Cho phép client / CDN lưu lại nhưng phải hỏi lại mỗi lần (Spring Security không ghi đè khi đã có header)
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        // Ghi ETag / Last-Modified và đặt trạng thái 304 nếu khớp
+        return !new ServletWebRequest(request, response).checkNotModified(snapshot.getETag(), snapshot.getLastModified());
+    }
+
+    /**
+     * ID sản phẩm nếu request là GET /api/v1/products/{id}, null với các API khác
+     */
+    private Long productDetailId(HttpServletRequest request) {
+        if (!PRODUCT_DETAIL_PATTERN.equals(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE))) {
+            return null;
+        }
+        Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (!(variables instanceof Map<?, ?> map)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(String.valueOf(map.get("id")));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -17,7 +17,7 @@ public class CorsConfig {
         configuration.setAllowedOriginPatterns(Collections.singletonList("*"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH", "HEAD"));
         configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "Accept", "x-no-retry", "*"));
-        configuration.setExposedHeaders(Arrays.asList("Content-Disposition", "Content-Length"));
+        configuration.setExposedHeaders(Arrays.asList("Content-Disposition", "Content-Length", "ETag", "Last-Modified"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
         
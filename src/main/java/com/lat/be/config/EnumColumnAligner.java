@@ -0,0 +1,55 @@
+package com.lat.be.config;
+
+import java.util.List;
+
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chuyển các cột enum cũ kiểu MySQL ENUM(...) sang VARCHAR để thêm hằng mới vào enum Java
+ * (ví dụ OrderStatus.CANCELLED, PaymentStatus.REFUND_REQUIRED) không làm lỗi ghi dữ liệu; ddl-auto=update không tự sửa kiểu cột.
+ * Chạy sau khi Hibernate cập nhật schema, giống SequenceTableAligner.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Slf4j
+public class EnumColumnAligner {
+    // {bảng, cột, độ dài VARCHAR, cho phép NULL}
+    private static final Object[][] COLUMNS = {
+            {"orders", "order_status", 20, true},
+            {"orders", "payment_status", 20, true},
+            {"daily_order_rollups", "payment_status", 20, false},
+            {"daily_sales_rollups", "payment_status", 20, false},
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void align() {
+        for (Object[] column : COLUMNS) {
+            String table = (String) column[0];
+            String name = (String) column[1];
+            int length = (Integer) column[2];
+            boolean nullable = (Boolean) column[3];
+            try {
+                List<String> types = this.jdbcTemplate.queryForList(
+                        "SELECT DATA_TYPE FROM information_schema.COLUMNS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?",
+                        String.class, table, name);
+                if (!types.isEmpty() && "enum".equalsIgnoreCase(types.get(0))) {
+                    this.jdbcTemplate.execute("ALTER TABLE " + table + " MODIFY " + name + " VARCHAR(" + length + ")"
+                            + (nullable ? "" : " NOT NULL"));
+                    log.info("Converted {}.{} from ENUM to VARCHAR({})", table, name, length);
+                }
+            } catch (Exception e) {
+                log.warn("Could not align enum column {}.{}: {}", table, name, e.getMessage());
+            }
+        }
+    }
+}
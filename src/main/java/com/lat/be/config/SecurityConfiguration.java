@@ -43,7 +43,8 @@ public class SecurityConfiguration {
         String[] whiteList = {
                 "/",
                 "/api/v1/auth/login", "/api/v1/auth/refresh", "/api/v1/auth/register",
-                "/api/payment/vnpay-return"
+                "/api/payment/vnpay-return", "/api/v1/payment/vnpay-ipn",
+                "/api/v1/carts/guest", "/api/v1/carts/guest/**"
         };
 
         http
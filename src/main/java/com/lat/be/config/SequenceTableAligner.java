@@ -0,0 +1,50 @@
+package com.lat.be.config;
+
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Đồng bộ các bảng sequence giả lập (MySQL không có sequence) với ID lớn nhất hiện có,
+ * để bảng từng dùng IDENTITY chuyển sang pooled sequence không bị trùng khóa chính.
+ * Chạy sau khi Hibernate cập nhật schema và trước khi web server nhận request.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Slf4j
+public class SequenceTableAligner {
+    // {bảng sequence, bảng dữ liệu, allocationSize}
+    private static final Object[][] SEQUENCES = {
+            {"order_details_seq", "order_details", 50},
+            {"stock_reservations_seq", "stock_reservations", 50},
+            {"cart_details_seq", "cart_details", 50},
+            {"payment_events_seq", "payment_events", 50},
+            {"payment_attempts_seq", "payment_attempts", 50},
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void align() {
+        for (Object[] sequence : SEQUENCES) {
+            String sequenceTable = (String) sequence[0];
+            String dataTable = (String) sequence[1];
+            int allocationSize = (Integer) sequence[2];
+            try {
+                // Pooled optimizer cấp ID từ (next_val - allocationSize + 1), nên next_val phải vượt MAX(id) + allocationSize
+                int updated = this.jdbcTemplate.update(
+                        "UPDATE " + sequenceTable + " SET next_val = GREATEST(next_val, " +
+                        "(SELECT COALESCE(MAX(id), 0) + ? + 1 FROM " + dataTable + "))",
+                        allocationSize);
+                log.debug("Aligned sequence table {} ({} row)", sequenceTable, updated);
+            } catch (Exception e) {
+                log.warn("Could not align sequence table {}: {}", sequenceTable, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.lat.be.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class StatisticsConfig {
+
+    @Value("${statistics.fallback-pool-size:8}")
+    private int fallbackPoolSize;
+
+    /**
+     * Pool riêng cho các truy vấn thống kê chạy song song, tách khỏi pool xử lý request
+     */
+    @Bean
+    public ThreadPoolTaskExecutor statisticsExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(fallbackPoolSize);
+        executor.setMaxPoolSize(fallbackPoolSize);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("statistics-");
+        return executor;
+    }
+}
@@ -4,16 +4,16 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Component;
 
+import com.lat.be.util.VNPaySigner;
+
+import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import lombok.Setter;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
-import java.util.*;
+import java.util.Map;
+import java.util.TreeMap;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -23,6 +23,9 @@ import java.time.format.DateTimeFormatter;
 @Getter
 @Setter
 public class VNPayConfig {
+    public static final ZoneId VIETNAM_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    public static final DateTimeFormatter VNP_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
     @Value("${vnpay.pay-url:https://sandbox.vnpayment.vn/paymentv2/vpcpay.html}")
     private String vnpPayUrl;
 
@@ -47,28 +50,29 @@ public class VNPayConfig {
     @Value("${vnpay.ip-addr:127.0.0.1}")
     private String vnpIpAddr;
 
-    public String hmacSHA512(String key, String data) {
-        try {
-            Mac sha512_HMAC = Mac.getInstance("HmacSHA512");
-            SecretKeySpec secret_key = new SecretKeySpec(key.getBytes(), "HmacSHA512");
-            sha512_HMAC.init(secret_key);
-            byte[] hash = sha512_HMAC.doFinal(data.getBytes());
-            return bytesToHex(hash);
-        } catch (Exception ex) {
-            throw new RuntimeException("Failed to calculate hmac-sha512", ex);
-        }
-    }
+    // Thời hạn hiệu lực của URL thanh toán (phút)
+    @Value("${vnpay.payment-ttl-minutes:15}")
+    private long paymentTtlMinutes;
 
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder builder = new StringBuilder();
-        for (byte b : bytes) {
-            builder.append(String.format("%02x", b));
-        }
-        return builder.toString();
+    // Bộ ký HMAC-SHA512 dùng lại Mac đã khởi tạo theo từng luồng
+    private VNPaySigner signer;
+
+    @PostConstruct
+    void initSigner() {
+        this.signer = new VNPaySigner(vnpHashSecret);
     }
-    
+
     public String createPaymentUrl(Long orderId, String vnpTxnRef, long amount, String orderInfo, String ipAddress) {
-        Map<String, String> vnp_Params = new HashMap<>();
+        return createPaymentUrl(orderId, vnpTxnRef, amount, orderInfo, ipAddress, Instant.now());
+    }
+
+    /**
+     * Tạo URL thanh toán có vnp_CreateDate = createdAt và hết hạn sau paymentTtlMinutes (xem getPaymentUrlExpiry)
+     */
+    public String createPaymentUrl(Long orderId, String vnpTxnRef, long amount, String orderInfo, String ipAddress,
+            Instant createdAt) {
+        // TreeMap giữ sẵn thứ tự tên tham số nên chỉ cần duyệt một lượt
+        Map<String, String> vnp_Params = new TreeMap<>();
         vnp_Params.put("vnp_Version", vnpVersion);
         vnp_Params.put("vnp_Command", vnpCommand);
         vnp_Params.put("vnp_TmnCode", vnpTmnCode);
@@ -82,88 +86,38 @@ public class VNPayConfig {
         String fullReturnUrl = vnpReturnUrl + "/" + orderId;
         vnp_Params.put("vnp_ReturnUrl", fullReturnUrl);
         vnp_Params.put("vnp_IpAddr", ipAddress);
-        ZoneId vietnamZone = ZoneId.of("Asia/Ho_Chi_Minh");
-        LocalDateTime vietnamNow = LocalDateTime.now(vietnamZone);
-        String vnp_CreateDate = vietnamNow.format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+        LocalDateTime vietnamNow = LocalDateTime.ofInstant(createdAt, VIETNAM_ZONE);
+        String vnp_CreateDate = vietnamNow.format(VNP_DATE_FORMAT);
         vnp_Params.put("vnp_CreateDate", vnp_CreateDate);
-        LocalDateTime expireTime = vietnamNow.plusMinutes(15);
-        String vnp_ExpireDate = expireTime.format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+        LocalDateTime expireTime = vietnamNow.plusMinutes(paymentTtlMinutes);
+        String vnp_ExpireDate = expireTime.format(VNP_DATE_FORMAT);
         vnp_Params.put("vnp_ExpireDate", vnp_ExpireDate);
-        StringBuilder query = new StringBuilder();
-        StringBuilder hashData = new StringBuilder();
-        List<String> fieldNames = new ArrayList<>(vnp_Params.keySet());
-        Collections.sort(fieldNames);
-        Iterator<String> itr = fieldNames.iterator();
-        while (itr.hasNext()) {
-            String fieldName = itr.next();
-            String fieldValue = vnp_Params.get(fieldName);
-            if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                hashData.append(fieldName);
-                hashData.append('=');
-                try {
-                    hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                    query.append(URLEncoder.encode(fieldName, StandardCharsets.US_ASCII.toString()));
-                    query.append('=');
-                    query.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                } catch (UnsupportedEncodingException e) {
-                    throw new RuntimeException("Error encoding URL parameters", e);
-                }
-                if (itr.hasNext()) {
-                    query.append('&');
-                    hashData.append('&');
-                }
-            }
-        }
+        // Chuỗi ký và query string trùng nhau với tên tham số VNPay
+        StringBuilder query = VNPaySigner.canonicalQuery(vnp_Params);
+        String vnp_SecureHash = this.signer.sign(query);
+        query.append('&').append(VNPaySigner.SECURE_HASH).append('=').append(vnp_SecureHash);
         String queryUrl = query.toString();
-        String vnp_SecureHash = hmacSHA512(vnpHashSecret, hashData.toString());
-        queryUrl += "&vnp_SecureHash=" + vnp_SecureHash;
         if (vnpPayUrl == null || vnpPayUrl.isEmpty()) {
             vnpPayUrl = "https://sandbox.vnpayment.vn/paymentv2/vpcpay.html";
         }
-        String fullUrl = vnpPayUrl + "?" + queryUrl;
-        System.out.println("VNPay URL (FULL): " + fullUrl);
-        return fullUrl;
+        return vnpPayUrl + "?" + queryUrl;
     }
     
+    /**
+     * Thời điểm hết hạn của URL tạo lúc createdAt
+     */
+    public Instant getPaymentUrlExpiry(Instant createdAt) {
+        return createdAt.plus(Duration.ofMinutes(paymentTtlMinutes));
+    }
+
     public String createPaymentUrl(Long orderId, long amount, String orderInfo) {
         return createPaymentUrl(orderId, orderId.toString(), amount, orderInfo, vnpIpAddr);
     }
     
+    /**
+     * Kiểm tra chữ ký vnp_SecureHash của dữ liệu VNPay trả về (không sửa map đầu vào)
+     */
     public boolean validateReturnData(Map<String, String> vnp_Params) {
-        // Remove vnp_SecureHash
-        String vnp_SecureHash = vnp_Params.get("vnp_SecureHash");
-        vnp_Params.remove("vnp_SecureHash");
-        
-        // Remove vnp_SecureHashType
-        if (vnp_Params.containsKey("vnp_SecureHashType")) {
-            vnp_Params.remove("vnp_SecureHashType");
-        }
-        
-        // Build check sum
-        StringBuilder hashData = new StringBuilder();
-        List<String> fieldNames = new ArrayList<>(vnp_Params.keySet());
-        Collections.sort(fieldNames);
-        
-        Iterator<String> itr = fieldNames.iterator();
-        while (itr.hasNext()) {
-            String fieldName = itr.next();
-            String fieldValue = vnp_Params.get(fieldName);
-            if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                hashData.append(fieldName);
-                hashData.append('=');
-                try {
-                    hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                } catch (UnsupportedEncodingException e) {
-                    throw new RuntimeException("Error encoding URL parameters", e);
-                }
-                
-                if (itr.hasNext()) {
-                    hashData.append('&');
-                }
-            }
-        }
-        
-        String checkSum = hmacSHA512(vnpHashSecret, hashData.toString());
-        return checkSum.equals(vnp_SecureHash);
+        return this.signer.verify(vnp_Params);
     }
-} 
\ No newline at end of file
+}
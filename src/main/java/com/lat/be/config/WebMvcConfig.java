@@ -0,0 +1,25 @@
+package com.lat.be.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import lombok.RequiredArgsConstructor;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+    private final CatalogETagInterceptor catalogETagInterceptor;
+
+    @Value("${catalog.conditional-get.enabled:true}")
+    private boolean conditionalGetEnabled;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (conditionalGetEnabled) {
+            registry.addInterceptor(catalogETagInterceptor)
+                    .addPathPatterns("/api/v1/products/**", "/api/v1/categories/**", "/api/v1/suppliers/**");
+        }
+    }
+}
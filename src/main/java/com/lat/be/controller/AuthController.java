@@ -20,12 +20,15 @@ import com.lat.be.domain.User;
 import com.lat.be.domain.request.ReqLoginDTO;
 import com.lat.be.domain.response.ResCreateUserDTO;
 import com.lat.be.domain.response.ResLoginDTO;
+import com.lat.be.service.CartService;
 import com.lat.be.service.RoleService;
 import com.lat.be.service.UserService;
 import com.lat.be.util.SecurityUtil;
 import com.lat.be.util.annotation.ApiMessage;
 import com.lat.be.util.error.IdInvalidException;
 
+import java.util.UUID;
+
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api/v1")
@@ -36,12 +39,14 @@ public class AuthController {
     private final UserService userService;
     private final PasswordEncoder passwordEncoder;
     private final RoleService roleService;
+    private final CartService cartService;
 
     @Value("${lat.jwt.refresh-token-validity-in-seconds}")
     private long refreshTokenExpiration;
 
     @PostMapping("/auth/login")
-    public ResponseEntity<ResLoginDTO> login(@Valid @RequestBody ReqLoginDTO loginDTO) {
+    public ResponseEntity<ResLoginDTO> login(@Valid @RequestBody ReqLoginDTO loginDTO,
+            @CookieValue(name = CartController.GUEST_CART_COOKIE, required = false) String guestCartToken) {
         //Nạp input gồm username/password vào Security
         UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
                 loginDTO.getUsername(), loginDTO.getPassword());
@@ -70,10 +75,11 @@ public class AuthController {
 
         res.setAccessToken(access_token);
 
-        // create a refresh token
-        String refresh_token = this.securityUtil.createRefreshToken(loginDTO.getUsername(), res);
+        // create a refresh token (mỗi lần đăng nhập mở một họ token mới)
+        String family = UUID.randomUUID().toString();
+        String refresh_token = this.securityUtil.createRefreshToken(loginDTO.getUsername(), res, family);
         //update user
-        this.userService.updateUserToken(refresh_token, loginDTO.getUsername());
+        this.userService.updateUserToken(refresh_token, family, loginDTO.getUsername());
 
         //set cookies
         ResponseCookie resCookies = ResponseCookie.from("refresh_token", refresh_token)
@@ -84,6 +90,18 @@ public class AuthController {
 
         res.setRefreshToken(refresh_token);
 
+        // Gộp giỏ hàng đã thêm khi chưa đăng nhập vào giỏ của tài khoản rồi xóa cookie giỏ khách
+        if (guestCartToken != null && currentUserDB != null) {
+            this.cartService.mergeGuestCart(currentUserDB.getId(), guestCartToken);
+            ResponseCookie deleteGuestCart = ResponseCookie.from(CartController.GUEST_CART_COOKIE, "")
+                    .httpOnly(true)
+                    .maxAge(0)
+                    .path("/")
+                    .build();
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.SET_COOKIE, resCookies.toString(), deleteGuestCart.toString())
+                    .body(res);
+        }
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.SET_COOKIE, resCookies.toString())
@@ -125,40 +143,38 @@ public class AuthController {
         // check valid
         Jwt decodedToken =  this.securityUtil.checkValidRefreshToken(refreshToken);
         String email = decodedToken.getSubject();
+        String family = decodedToken.getClaimAsString("family");
 
-        // check user by token and email
-        User currentUser = this.userService.getUserByRefreshTokenAndEmail(refreshToken, email);
-        if(currentUser == null){
+        // check user by token hash and email
+        User currentUserDB = this.userService.getUserByRefreshToken(refreshToken);
+        if(currentUserDB == null || !currentUserDB.getEmail().equals(email)){
+            // Token đúng chữ ký nhưng đã bị xoay vòng: nếu cùng họ với phiên hiện hành thì coi là bị đánh cắp và thu hồi cả họ
+            this.userService.revokeRefreshTokenFamily(email, family);
             throw new IdInvalidException("Refresh token không hợp lệ");
         }
 
-
-
         //issue new token/set refresh token as cookies
         ResLoginDTO res = new ResLoginDTO();
 
-        User currentUserDB = this.userService.handleGetUserByEmail(email);
-        if(currentUserDB != null){
-            ResLoginDTO.UserLogin userLogin = new ResLoginDTO.UserLogin(
-                    currentUserDB.getId(),
-                    currentUserDB.getEmail(),
-                    currentUserDB.getName(),
-                    currentUserDB.getRole(),
-                    currentUserDB.getAvatar(),
-                    currentUserDB.getAddress(),
-                    currentUserDB.getGender()
-            );
-            res.setUser(userLogin);
-        }
+        ResLoginDTO.UserLogin userLogin = new ResLoginDTO.UserLogin(
+                currentUserDB.getId(),
+                currentUserDB.getEmail(),
+                currentUserDB.getName(),
+                currentUserDB.getRole(),
+                currentUserDB.getAvatar(),
+                currentUserDB.getAddress(),
+                currentUserDB.getGender()
+        );
+        res.setUser(userLogin);
         String access_token = this.securityUtil.createAccessToken(email, res);
 
 
         res.setAccessToken(access_token);
 
-        // create a refresh token
-        String new_refresh_token = this.securityUtil.createRefreshToken(email, res);
+        // create a refresh token (giữ nguyên họ token)
+        String new_refresh_token = this.securityUtil.createRefreshToken(email, res, family);
         //update user
-        this.userService.updateUserToken(new_refresh_token, email);
+        this.userService.saveRefreshToken(currentUserDB, new_refresh_token, family);
 
         //set cookies
         ResponseCookie resCookies = ResponseCookie.from("refresh_token", new_refresh_token)
@@ -183,7 +199,7 @@ public class AuthController {
         }
 
         //update refresh token = null
-        this.userService.updateUserToken(null, email);
+        this.userService.updateUserToken(null, null, email);
 
         //remove refresh cookies
         ResponseCookie deleteSpringCookie = ResponseCookie.from("refresh_token", null)
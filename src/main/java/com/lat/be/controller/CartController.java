@@ -1,7 +1,10 @@
 package com.lat.be.controller;
 
 import com.lat.be.domain.CartDetail;
+import com.lat.be.domain.request.AddToCartDTO;
+import com.lat.be.domain.request.BulkCartDTO;
 import com.lat.be.domain.request.UpdateCartItemDTO;
+import com.lat.be.domain.response.BulkCartResultDTO;
 import com.lat.be.service.CartService;
 import com.lat.be.util.annotation.ApiMessage;
 
@@ -9,7 +12,9 @@ import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -21,6 +26,8 @@ import java.util.Map;
 @RequestMapping("/api/v1/carts")
 @RequiredArgsConstructor
 public class CartController {
+    public static final String GUEST_CART_COOKIE = "guest_cart";
+
     private final CartService cartService;
 
     @PreAuthorize("hasAnyRole('admin', 'employee', 'user')")
@@ -40,6 +47,13 @@ public class CartController {
         }
     }
 
+    @PreAuthorize("hasAnyRole('admin', 'employee', 'user')")
+    @PostMapping("/bulk")
+    @ApiMessage("Cập nhật nhiều sản phẩm trong giỏ hàng")
+    public ResponseEntity<BulkCartResultDTO> applyBulk(@Valid @RequestBody BulkCartDTO bulkCartDTO) {
+        return ResponseEntity.ok(cartService.applyBulk(bulkCartDTO.getItems()));
+    }
+
     @PreAuthorize("hasAnyRole('admin', 'employee', 'user')")
     @PutMapping("/update/{cartDetailId}")
     @ApiMessage("Cập nhật số lượng sản phẩm trong giỏ hàng")
@@ -86,4 +100,89 @@ public class CartController {
         cartService.clearCart();
         return ResponseEntity.ok("Giỏ hàng đã được làm trống");
     }
-} 
\ No newline at end of file
+
+    // ===== Giỏ hàng của khách chưa đăng nhập (định danh bằng cookie guest_cart) =====
+
+    @GetMapping("/guest")
+    @ApiMessage("Lấy danh sách sản phẩm trong giỏ hàng")
+    public ResponseEntity<List<CartDetail>> getGuestCartItems(
+            @CookieValue(name = GUEST_CART_COOKIE, required = false) String token) {
+        // Chỉ xem thì không tạo giỏ: khách chưa thêm sản phẩm nào nhận giỏ rỗng và không có cookie
+        if (!cartService.hasGuestCart(token)) {
+            return ResponseEntity.ok(List.of());
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, guestCartCookie(token))
+                .body(cartService.getGuestCartItems(token));
+    }
+
+    @PostMapping("/guest/add")
+    @ApiMessage("Thêm sản phẩm vào giỏ hàng")
+    public ResponseEntity<?> addProductToGuestCart(
+            @CookieValue(name = GUEST_CART_COOKIE, required = false) String token,
+            @Valid @RequestBody AddToCartDTO addToCartDTO) {
+        String cartToken;
+        try {
+            // Giỏ của khách được tạo ở lần thêm sản phẩm đầu tiên
+            cartToken = cartService.ensureGuestCart(token);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+        try {
+            CartDetail cartDetail = cartService.addProductToGuestCart(
+                    cartToken, addToCartDTO.getProductId(), addToCartDTO.getQuantity());
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.SET_COOKIE, guestCartCookie(cartToken))
+                    .body(cartDetail);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    @PutMapping("/guest/update/{productId}")
+    @ApiMessage("Cập nhật số lượng sản phẩm trong giỏ hàng")
+    public ResponseEntity<?> updateGuestCartItemQuantity(
+            @CookieValue(name = GUEST_CART_COOKIE, required = false) String token,
+            @PathVariable("productId") Long productId,
+            @Valid @RequestBody UpdateCartItemDTO updateCartItemDTO) {
+        try {
+            CartDetail cartDetail = cartService.updateGuestCartItemQuantity(token, productId, updateCartItemDTO.getQuantity());
+            if (cartDetail == null) {
+                return ResponseEntity.ok("Sản phẩm đã được xóa khỏi giỏ hàng do số lượng = 0");
+            }
+            return ResponseEntity.ok(cartDetail);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/guest/remove/{productId}")
+    @ApiMessage("Xóa sản phẩm khỏi giỏ hàng")
+    public ResponseEntity<?> removeGuestCartItem(
+            @CookieValue(name = GUEST_CART_COOKIE, required = false) String token,
+            @PathVariable("productId") Long productId) {
+        cartService.removeGuestCartItem(token, productId);
+        return ResponseEntity.ok("Sản phẩm đã được xóa khỏi giỏ hàng");
+    }
+
+    @DeleteMapping("/guest/clear")
+    @ApiMessage("Xóa tất cả sản phẩm trong giỏ hàng")
+    public ResponseEntity<?> clearGuestCart(@CookieValue(name = GUEST_CART_COOKIE, required = false) String token) {
+        cartService.clearGuestCart(token);
+        return ResponseEntity.ok("Giỏ hàng đã được làm trống");
+    }
+
+    private String guestCartCookie(String token) {
+        return ResponseCookie.from(GUEST_CART_COOKIE, token)
+                .httpOnly(true)
+                .maxAge(cartService.getGuestCartTtlSeconds())
+                .path("/")
+                .sameSite("Lax")
+                .build()
+                .toString();
+    }
+}
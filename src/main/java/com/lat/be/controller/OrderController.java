@@ -15,13 +15,14 @@ import org.springframework.web.bind.annotation.*;
 
 import com.lat.be.domain.Order;
 import com.lat.be.domain.OrderDetail;
-import com.lat.be.domain.User;
 import com.lat.be.domain.request.CreateOrderDTO;
 import com.lat.be.domain.request.UpdateOrderStatus;
 import com.lat.be.domain.request.UpdatePaymentStatus;
 import com.lat.be.domain.response.OrderResponse;
 import com.lat.be.domain.response.ResultPaginationDTO;
 import com.lat.be.domain.response.OrderWithItemsDTO;
+import com.lat.be.service.CartService;
+import com.lat.be.service.OrderCancellationService;
 import com.lat.be.service.OrderService;
 import com.lat.be.service.UserService;
 import com.lat.be.service.VNPayService;
@@ -29,6 +30,7 @@ import com.lat.be.util.annotation.ApiMessage;
 import com.lat.be.util.constant.PaymentMethod;
 import com.lat.be.util.constant.PaymentStatus;
 import com.lat.be.util.constant.OrderStatus;
+import com.lat.be.util.error.IdInvalidException;
 import com.turkraft.springfilter.boot.Filter;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -41,12 +43,16 @@ public class OrderController {
     private final OrderService orderService;
     private final UserService userService;
     private final VNPayService vnPayService;
+    private final OrderCancellationService orderCancellationService;
+    private final CartService cartService;
     
     @PreAuthorize("hasAnyRole('admin', 'employee', 'user')")
     @PostMapping
     @ApiMessage("Tạo đơn hàng từ giỏ hàng thành công")
     public ResponseEntity<OrderResponse> createOrder(@Valid @RequestBody CreateOrderDTO createOrderDTO, HttpServletRequest request) {
         try {
+            // Ghi giỏ hàng trong bộ nhớ trước khi mở giao dịch tạo đơn để giao dịch chỉ giữ một kết nối
+            cartService.flushCurrentCart();
             Order order = orderService.createOrder(createOrderDTO);
             
             OrderResponse response = OrderResponse.builder()
@@ -63,10 +69,10 @@ public class OrderController {
                 // Nếu là TRANSFER, tạo URL thanh toán VNPay
                 String orderInfo = "Thanh toan don hang: " + order.getId();
                 String clientIp = getClientIpAddress(request);
-                Long totalPrice = (order.getTotalPrice() * 26000);
-                Long roundedTotalPrice = (long) (Math.ceil(totalPrice / 10000.0) * 10000);
-                String paymentUrl = vnPayService.createPaymentUrl(
-                    order.getId(),
+                Long roundedTotalPrice = VNPayService.toChargeAmount(order.getTotalPrice());
+                // Gán URL cùng hạn dùng vào đơn hàng để create-payment trả lại URL này khi còn hạn
+                String paymentUrl = vnPayService.issuePaymentUrl(
+                    order,
                     roundedTotalPrice,
                     orderInfo,
                     clientIp
@@ -74,7 +80,6 @@ public class OrderController {
                 order.setPaymentStatus(PaymentStatus.PENDING);
                 order.setOrderStatus(OrderStatus.PENDING);
                 order.setPaymentMessage("Vui lòng thanh toán để hoàn tất đơn hàng");
-                order.setPaymentUrl(paymentUrl);
                 orderService.updateOrder(order);
                 response.setPaymentUrl(paymentUrl);
             }
@@ -114,9 +119,13 @@ public class OrderController {
     @ApiMessage("Lấy danh sách đơn hàng thành công")
     public ResponseEntity<ResultPaginationDTO> getAllOrders(
             @Filter Specification<Order> orderSpec,
-            @PageableDefault(sort = "id", direction = Sort.Direction.DESC) Pageable pageable) {
+            @PageableDefault(sort = "id", direction = Sort.Direction.DESC) Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor) throws IdInvalidException {
         
-        ResultPaginationDTO result = orderService.getAllOrders(orderSpec, pageable);
+        // Có tham số cursor (kể cả rỗng cho trang đầu) thì phân trang theo con trỏ
+        ResultPaginationDTO result = cursor != null
+                ? orderService.getAllOrdersByCursor(orderSpec, pageable, cursor)
+                : orderService.getAllOrders(orderSpec, pageable);
         return ResponseEntity.ok(result);
     }
 
@@ -133,15 +142,14 @@ public class OrderController {
     @PreAuthorize("hasAnyRole('admin', 'employee', 'user')")
     @ApiMessage("Lấy danh sách đơn hàng của tôi thành công")
     public ResponseEntity<List<OrderWithItemsDTO>> getMyOrders() {
-        User currentUser = this.userService.getCurrentUser();
-        List<Order> myOrders = this.orderService.getOrdersWithDetailsByUser(currentUser);
-        
-        // Chuyển đổi List<Order> thành List<OrderWithItemsDTO>
-        List<OrderWithItemsDTO> ordersWithItems = myOrders.stream()
-                .map(OrderWithItemsDTO::fromOrder)
-                .toList();
-
-        return ResponseEntity.ok(ordersWithItems);
+        return ResponseEntity.ok(this.orderService.getOrdersWithDetailsByUser(this.userService.getCurrentPrincipal()));
+    }
+    
+    @GetMapping("/my-orders/page")
+    @PreAuthorize("hasAnyRole('admin', 'employee', 'user')")
+    @ApiMessage("Lấy danh sách đơn hàng của tôi thành công")
+    public ResponseEntity<ResultPaginationDTO> getMyOrdersPage(@PageableDefault(size = 10) Pageable pageable) {
+        return ResponseEntity.ok(this.orderService.getMyOrders(this.userService.getCurrentPrincipal(), pageable));
     }
     
     @GetMapping("/{id}/details")
@@ -159,26 +167,25 @@ public class OrderController {
     @ApiMessage("Cập nhật trạng thái thanh toán thành công")
     public ResponseEntity<Order> updatePaymentStatus(
             @PathVariable("id") Long id,
-            @RequestBody UpdatePaymentStatus updatePaymentStatus) {
+            @RequestBody UpdatePaymentStatus updatePaymentStatus) throws IdInvalidException {
         
         Order order = orderService.getOrderById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng với ID: " + id));
         
-        // Update payment status
-        order.setPaymentStatus(updatePaymentStatus.getPaymentStatus());
-        
         // Add payment message
+        String paymentMessage = null;
         if (updatePaymentStatus.getPaymentStatus() == PaymentStatus.PAID) {
-            order.setPaymentMessage("Thanh toán thành công");
+            paymentMessage = "Thanh toán thành công";
         } else if (updatePaymentStatus.getPaymentStatus() == PaymentStatus.FAILED) {
-            order.setPaymentMessage("Thanh toán thất bại");
+            paymentMessage = "Thanh toán thất bại";
         } else if (updatePaymentStatus.getPaymentStatus() == PaymentStatus.PENDING) {
-            order.setPaymentMessage("Đang chờ thanh toán");
+            paymentMessage = "Đang chờ thanh toán";
         } else if (updatePaymentStatus.getPaymentStatus() == PaymentStatus.REFUNDED) {
-            order.setPaymentMessage("Đã hoàn tiền");
+            paymentMessage = "Đã hoàn tiền";
         }
         
-        Order updatedOrder = this.orderService.updateOrder(order);
+        // Update payment status
+        Order updatedOrder = this.orderService.updatePaymentStatus(order, updatePaymentStatus.getPaymentStatus(), paymentMessage);
         return ResponseEntity.ok(updatedOrder);
     }
 
@@ -187,10 +194,22 @@ public class OrderController {
     @ApiMessage("Cập nhật trạng thái đơn hàng thành công")
     public ResponseEntity<Order> updateOrderStatus(
             @PathVariable("id") Long id,
-            @RequestBody UpdateOrderStatus updateOrderStatus) {
+            @RequestBody UpdateOrderStatus updateOrderStatus) throws IdInvalidException {
         Order order = orderService.getOrderById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng với ID: " + id));
 
+        if (order.getOrderStatus() == OrderStatus.CANCELLED) {
+            // Hàng của đơn đã hủy đã được trả về kho
+            throw new IdInvalidException("Đơn hàng đã bị hủy, không thể cập nhật trạng thái");
+        }
+        if (updateOrderStatus.getOrderStatus() == OrderStatus.CANCELLED) {
+            // Hủy đơn trả hàng về kho; cập nhật bản đang giữ để trả về (câu UPDATE hàng loạt không đồng bộ entity)
+            this.orderCancellationService.cancel(id);
+            order.setOrderStatus(OrderStatus.CANCELLED);
+            order.setPaymentMessage(OrderCancellationService.MESSAGE_CANCELLED);
+            return ResponseEntity.ok(order);
+        }
+
         order.setOrderStatus(updateOrderStatus.getOrderStatus());
         Order updatedOrder = this.orderService.updateOrder(order);
         return ResponseEntity.ok(updatedOrder);
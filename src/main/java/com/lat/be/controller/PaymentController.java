@@ -9,19 +9,24 @@ import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.view.RedirectView;
 
 import com.lat.be.domain.Order;
+import com.lat.be.service.CurrentUserResolver;
 import com.lat.be.service.OrderService;
+import com.lat.be.service.PaymentStatusBroadcaster;
 import com.lat.be.service.VNPayService;
 import com.lat.be.util.annotation.ApiMessage;
 import com.lat.be.util.constant.PaymentMethod;
+import com.lat.be.util.error.IdInvalidException;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -35,6 +40,8 @@ import jakarta.servlet.http.HttpServletRequest;
 public class PaymentController {
     private final VNPayService vnPayService;
     private final OrderService orderService;
+    private final PaymentStatusBroadcaster paymentStatusBroadcaster;
+    private final CurrentUserResolver currentUserResolver;
 
     @Value("${vnpay.pay-url:https://sandbox.vnpayment.vn/paymentv2/vpcpay.html}")
     private String vnpPayUrl;
@@ -62,19 +69,18 @@ public class PaymentController {
 
         // Generate payment URL
         String orderInfo = "Thanh toan don hang: " + orderId;
-        Long totalPrice = (order.getTotalPrice() * 26000);
-        Long roundedTotalPrice = (long) (Math.ceil(totalPrice / 10000.0) * 10000);
+        Long roundedTotalPrice = VNPayService.toChargeAmount(order.getTotalPrice());
         System.out.println(roundedTotalPrice);
 
-        String paymentUrl = this.vnPayService.createPaymentUrl(orderId,roundedTotalPrice , orderInfo, ipAddress);
-
-        // Update order with payment URL
-        order.setPaymentUrl(paymentUrl);
-        orderService.updateOrder(order);
+        // Dùng lại URL còn hạn; chỉ ký và lưu đơn hàng khi phải tạo URL mới
+        String paymentUrl = this.vnPayService.getOrIssuePaymentUrl(order, roundedTotalPrice, orderInfo, ipAddress);
 
         // Return payment URL
         Map<String, String> response = new HashMap<>();
         response.put("paymentUrl", paymentUrl);
+        if (order.getPaymentUrlExpiresAt() != null) {
+            response.put("expiresAt", order.getPaymentUrlExpiresAt().toString());
+        }
         return ResponseEntity.ok(response);
     }
 
@@ -102,6 +108,37 @@ public class PaymentController {
         return ipAddress;
     }
 
+    /**
+     * IPN: VNPay gọi trực tiếp tới server sau khi giao dịch kết thúc.
+     * Phản hồi phải đúng định dạng {"RspCode","Message"} của VNPay nên trả về chuỗi JSON (không bọc RestResponse).
+     */
+    @GetMapping(value = "/vnpay-ipn", produces = MediaType.APPLICATION_JSON_VALUE)
+    public String vnpayIpn(@RequestParam Map<String, String> params) {
+        String rspCode;
+        try {
+            rspCode = vnPayService.handleIpn(params);
+        } catch (Exception e) {
+            log.error("Error handling VNPay IPN for txnRef {}", params.get("vnp_TxnRef"), e);
+            rspCode = VNPayService.IPN_UNKNOWN_ERROR;
+        }
+        return "{\"RspCode\":\"" + rspCode + "\",\"Message\":\"" + ipnMessage(rspCode) + "\"}";
+    }
+
+    private String ipnMessage(String rspCode) {
+        switch (rspCode) {
+            case VNPayService.IPN_CONFIRMED:
+                return "Confirm Success";
+            case VNPayService.IPN_ORDER_NOT_FOUND:
+                return "Order not found";
+            case VNPayService.IPN_ALREADY_CONFIRMED:
+                return "Order already confirmed";
+            case VNPayService.IPN_INVALID_SIGNATURE:
+                return "Invalid signature";
+            default:
+                return "Unknown error";
+        }
+    }
+
     @GetMapping("/vnpay-return")
     public RedirectView vnpayReturn(@RequestParam Map<String, String> params) {
         log.info("VNPay return with params: {}", params);
@@ -209,4 +246,14 @@ public class PaymentController {
         
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Theo dõi trạng thái thanh toán qua Server-Sent Events (sự kiện "payment-status"), thay cho gọi lại payment-info
+     */
+    @GetMapping(value = "/payment-status/{orderId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPaymentStatus(@PathVariable Long orderId, HttpServletRequest request)
+            throws IdInvalidException {
+        return this.paymentStatusBroadcaster.subscribe(orderId,
+                this.currentUserResolver.getPrincipal().getId(), request.isUserInRole("admin"));
+    }
 } 
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.lat.be.domain.Product;
 import com.lat.be.domain.mapper.ProductMapper;
 import com.lat.be.domain.request.CreateProductDTO;
 import com.lat.be.domain.request.UpdateProductDTO;
+import com.lat.be.domain.response.ProductCardDTO;
 import com.lat.be.domain.response.ResultPaginationDTO;
 import com.lat.be.service.ProductService;
 import com.lat.be.util.annotation.ApiMessage;
@@ -37,9 +38,23 @@ public class ProductController {
     @ApiMessage("Lấy danh sách sản phẩm")
     public ResponseEntity<ResultPaginationDTO> fetchAllProduct(
             @Filter Specification<Product> spec,
-            @PageableDefault(sort = "id", direction = Sort.Direction.DESC) Pageable pageable
+            @PageableDefault(sort = "id", direction = Sort.Direction.DESC) Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor
+    ) throws IdInvalidException {
+        // Có tham số cursor (kể cả rỗng cho trang đầu) thì phân trang theo con trỏ
+        ResultPaginationDTO rs = cursor != null
+                ? this.productService.getAllByCursor(spec, pageable, cursor)
+                : this.productService.getAll(spec, pageable);
+        return ResponseEntity.ok(rs);
+    }
+
+    @GetMapping("/search")
+    @ApiMessage("Tìm kiếm sản phẩm")
+    public ResponseEntity<ResultPaginationDTO> search(
+            @RequestParam(name = "q", defaultValue = "") String query,
+            @PageableDefault(size = 20) Pageable pageable
     ) {
-        ResultPaginationDTO rs = this.productService.getAll(spec, pageable);
+        ResultPaginationDTO rs = this.productService.search(query, pageable);
         return ResponseEntity.ok(rs);
     }
 
@@ -48,7 +63,7 @@ public class ProductController {
     public ResponseEntity<Product> getProduct(
             @PathVariable("id") Long id
     ) throws IdInvalidException {
-        Product product = this.productService.getById(id);
+        Product product = this.productService.getPublicById(id);
         return ResponseEntity.ok(product);
     }
 
@@ -116,14 +131,14 @@ public class ProductController {
     // Lấy sản phẩm theo danh mục
     @GetMapping("/category/{categoryId}")
     @ApiMessage("Lấy sản phẩm theo danh mục")
-    public ResponseEntity<List<Product>> getProductsByCategory(@PathVariable("categoryId") Long categoryId) throws IdInvalidException {
+    public ResponseEntity<List<ProductCardDTO>> getProductsByCategory(@PathVariable("categoryId") Long categoryId) throws IdInvalidException {
         return ResponseEntity.ok(this.productService.getByCategory(categoryId));
     }
 
     // Lấy sản phẩm theo nhà cung cấp
     @GetMapping("/supplier/{supplierId}")
     @ApiMessage("Lấy sản phẩm theo nhà cung cấp")
-    public ResponseEntity<List<Product>> getProductsBySupplier(@PathVariable("supplierId") Long supplierId) throws IdInvalidException {
+    public ResponseEntity<List<ProductCardDTO>> getProductsBySupplier(@PathVariable("supplierId") Long supplierId) throws IdInvalidException {
         return ResponseEntity.ok(productService.getBySupplier(supplierId));
     }
 } 
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.lat.be.controller;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import com.lat.be.domain.RestResponse;
@@ -9,6 +10,7 @@ import com.lat.be.domain.response.ProductStatDTO;
 import com.lat.be.domain.response.StatisticsDTO;
 import com.lat.be.domain.response.SupplierRevenueResponseDTO;
 import com.lat.be.service.RevenueService;
+import com.lat.be.service.SalesRollupService;
 import com.lat.be.service.StatisticsService;
 
 import lombok.RequiredArgsConstructor;
@@ -27,16 +29,31 @@ public class StatisticsController {
 
     private final StatisticsService statisticsService;
     private final RevenueService revenueService;
+    private final SalesRollupService salesRollupService;
     
     // Múi giờ UTC+7 (Asia/Ho_Chi_Minh)
     private static final ZoneId VIETNAM_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
 
     /**
-     * API lấy ra 3 sản phẩm bán chạy nhất
+     * API lấy ra các sản phẩm bán chạy nhất
+     * @param limit Số sản phẩm cần lấy (mặc định 3, tối đa 100)
+     * @param period Khoảng thời gian (today, week, month, year, all)
      */
     @GetMapping("/top-selling-products")
-    public ResponseEntity<RestResponse<List<ProductStatDTO>>> getTopSellingProducts() {
-        List<ProductStatDTO> topProducts = statisticsService.getTopSellingProducts();
+    public ResponseEntity<RestResponse<List<ProductStatDTO>>> getTopSellingProducts(
+            @RequestParam(name = "limit", defaultValue = "3") int limit,
+            @RequestParam(name = "period", defaultValue = "all") String period) {
+        // Validate period và limit
+        if (!isValidPeriod(period) || limit < 1 || limit > 100) {
+            RestResponse<List<ProductStatDTO>> errorResponse = new RestResponse<>();
+            errorResponse.setStatusCode(HttpStatus.BAD_REQUEST.value());
+            errorResponse.setError("Tham số không hợp lệ");
+            errorResponse.setMessage("limit từ 1 đến 100, period: today, week, month, year, all");
+            errorResponse.setData(null);
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+        
+        List<ProductStatDTO> topProducts = statisticsService.getTopSellingProducts(limit, period);
         RestResponse<List<ProductStatDTO>> response = new RestResponse<>();
         response.setStatusCode(HttpStatus.OK.value());
         response.setError(null);
@@ -146,6 +163,21 @@ public class StatisticsController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * API dựng lại số liệu cộng dồn từ toàn bộ đơn hàng (nên chạy lúc ít truy cập)
+     */
+    @PreAuthorize("hasRole('admin')")
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<RestResponse<Long>> rebuildRollups() {
+        long processed = salesRollupService.rebuild();
+        RestResponse<Long> response = new RestResponse<>();
+        response.setStatusCode(HttpStatus.OK.value());
+        response.setError(null);
+        response.setMessage("Dựng lại số liệu thống kê thành công");
+        response.setData(processed);
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * Kiểm tra khoảng thời gian có hợp lệ hay không
      */
@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
@@ -122,9 +123,13 @@ public class SupplierController {
     @ApiMessage("Lấy danh sách nhà cung cấp thành công")
     public ResponseEntity<ResultPaginationDTO> getAllSuppliers(
             @Filter Specification<Supplier> spec,
-            Pageable pageable
-    ) {
-        ResultPaginationDTO rs = this.supplierService.handleGetSupplier(spec, pageable);
+            Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor
+    ) throws IdInvalidException {
+        // Có tham số cursor (kể cả rỗng cho trang đầu) thì phân trang theo con trỏ
+        ResultPaginationDTO rs = cursor != null
+                ? this.supplierService.handleGetSupplierByCursor(spec, pageable, cursor)
+                : this.supplierService.handleGetSupplier(spec, pageable);
         return ResponseEntity.ok(rs);
     }
 }
@@ -70,9 +70,13 @@ public class UserController {
     @ApiMessage("Fetch all user")
     public ResponseEntity<ResultPaginationDTO> fetchAllUser(
             @Filter Specification<User> userSpec,
-            Pageable pageable
-            ) {
-        ResultPaginationDTO rs = this.userService.handleGetUser(userSpec, pageable);
+            Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor
+            ) throws IdInvalidException {
+        // Có tham số cursor (kể cả rỗng cho trang đầu) thì phân trang theo con trỏ
+        ResultPaginationDTO rs = cursor != null
+                ? this.userService.handleGetUserByCursor(userSpec, pageable, cursor)
+                : this.userService.handleGetUser(userSpec, pageable);
         return ResponseEntity.ok(rs);
     }
 
@@ -44,6 +44,7 @@ public class VNPayController {
             @RequestParam(required = false) String vnp_TransactionNo,
             @RequestParam(required = false) String vnp_PayDate,
             @RequestParam String vnp_SecureHash,
+            @RequestParam Map<String, String> vnpParams,
             HttpServletRequest request) {
         
         log.info("Processing VNPay payment - TxnRef: {}, ResponseCode: {}", vnp_TxnRef, vnp_ResponseCode);
@@ -68,8 +69,8 @@ public class VNPayController {
                 return ResponseEntity.ok(response);
             }
             
-            // Cập nhật trạng thái đơn hàng
-            Order order = vnPayService.updateOrderPaymentStatus(orderId, vnp_ResponseCode, vnp_TransactionStatus);
+            // Cập nhật trạng thái đơn hàng qua hàng đợi sự kiện thanh toán (không xử lý trùng với IPN)
+            Order order = vnPayService.applyPaymentResult(vnpParams);
             
             // Trả về kết quả đầy đủ
             boolean success = PaymentStatus.PAID.equals(order.getPaymentStatus());
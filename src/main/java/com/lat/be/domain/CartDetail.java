@@ -14,8 +14,10 @@ import java.time.Instant;
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class CartDetail {
+    // Dùng sequence (bảng giả lập trên MySQL) với pooled optimizer để Hibernate có thể batch INSERT
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_details_seq")
+    @SequenceGenerator(name = "cart_details_seq", sequenceName = "cart_details_seq", allocationSize = 50)
     Long id;
 
     @ManyToOne
@@ -0,0 +1,41 @@
+package com.lat.be.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import com.lat.be.util.constant.PaymentStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Số liệu đơn hàng cộng dồn theo ngày (UTC+7) và trạng thái thanh toán,
+ * kèm sketch HyperLogLog của khách hàng đặt hàng trong ngày.
+ */
+@Entity
+@Table(name = "daily_order_rollups", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_daily_order_rollups", columnNames = {"sales_date", "payment_status"})
+})
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DailyOrderRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "sales_date", nullable = false)
+    LocalDate salesDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_status", length = 20, nullable = false, columnDefinition = "VARCHAR(20)")
+    PaymentStatus paymentStatus;
+
+    long orderCount;
+    long revenue;
+
+    @Column(name = "customer_sketch", columnDefinition = "VARBINARY(1024)")
+    byte[] customerSketch;
+}
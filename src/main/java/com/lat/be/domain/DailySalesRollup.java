@@ -0,0 +1,46 @@
+package com.lat.be.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import com.lat.be.util.constant.PaymentStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Số liệu bán hàng cộng dồn theo ngày (UTC+7), sản phẩm và trạng thái thanh toán.
+ * Được cập nhật tăng dần khi tạo đơn / đổi trạng thái thanh toán, có thể dựng lại từ đơn hàng.
+ * Không chứa dòng của đơn đã hủy (được trừ ra khi hủy đơn).
+ */
+@Entity
+@Table(name = "daily_sales_rollups", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_daily_sales_rollups", columnNames = {"sales_date", "product_id", "payment_status"})
+})
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DailySalesRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "sales_date", nullable = false)
+    LocalDate salesDate;
+
+    @Column(name = "product_id", nullable = false)
+    Long productId;
+
+    @Column(name = "supplier_id")
+    Long supplierId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_status", length = 20, nullable = false, columnDefinition = "VARCHAR(20)")
+    PaymentStatus paymentStatus;
+
+    long revenue;
+    long units;
+    long orderCount;
+}
@@ -16,7 +16,12 @@ import java.util.List;
 
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        // Đối soát thanh toán: quét đơn PENDING theo ID tăng dần
+        @Index(name = "idx_orders_payment_status_method_id", columnList = "payment_status, payment_method, id"),
+        // Tự hủy đơn chưa thanh toán: quét đơn PENDING theo thời điểm tạo
+        @Index(name = "idx_orders_status_method_created", columnList = "order_status, payment_method, created_at")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
@@ -35,15 +40,18 @@ public class Order {
     PaymentMethod paymentMethod;
     
     @Enumerated(EnumType.STRING)
-    @Column(name = "payment_status", length = 20)
+    @Column(name = "payment_status", length = 20, columnDefinition = "VARCHAR(20)")
     PaymentStatus paymentStatus;
 
     @Enumerated(EnumType.STRING)
-    @Column(name = "order_status", length = 20)
+    // VARCHAR thay vì ENUM của MySQL để thêm trạng thái mới không phải sửa kiểu cột (xem EnumColumnAligner)
+    @Column(name = "order_status", length = 20, columnDefinition = "VARCHAR(20)")
     OrderStatus orderStatus;
 
     @Column(columnDefinition = "MEDIUMTEXT")
     String paymentUrl;
+    // Hạn của paymentUrl (vnp_ExpireDate); URL còn hạn được trả lại thay vì ký và ghi lại
+    Instant paymentUrlExpiresAt;
     String transactionNo;
     String paymentMessage;
 
@@ -65,6 +73,12 @@ public class Order {
     @Column(nullable = false)
     private String address;
 
+    // Khóa lạc quan: hai callback thanh toán ghi đồng thời thì một bên phải đọc lại
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    @JsonIgnore
+    long version;
+
     @PrePersist
     public void handleBeforeCreate() {
         this.createdAt = Instant.now();
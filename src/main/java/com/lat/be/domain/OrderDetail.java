@@ -18,8 +18,10 @@ import java.time.Instant;
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class OrderDetail {
+    // Dùng sequence (bảng giả lập trên MySQL) với pooled optimizer để Hibernate có thể batch INSERT
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_details_seq")
+    @SequenceGenerator(name = "order_details_seq", sequenceName = "order_details_seq", allocationSize = 50)
     Long id;
 
     @Min(value = 0, message = "Giá sản phẩm phải lớn hơn hoặc bằng 0")
@@ -0,0 +1,50 @@
+package com.lat.be.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+/**
+ * Một URL thanh toán VNPay đã ký cho đơn hàng (mỗi vnp_TxnRef một dòng). Đơn hàng chỉ giữ URL mới nhất,
+ * nhưng người dùng có thể đã thanh toán qua một URL cũ hơn, nên đối soát phải truy vấn mọi lần đã cấp.
+ */
+@Entity
+@Table(name = "payment_attempts",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_attempts_txn_ref", columnNames = "txn_ref"),
+        indexes = @Index(name = "idx_payment_attempts_order", columnList = "order_id"))
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PaymentAttempt {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_attempts_seq")
+    @SequenceGenerator(name = "payment_attempts_seq", sequenceName = "payment_attempts_seq", allocationSize = 50)
+    Long id;
+
+    @Column(name = "order_id", nullable = false)
+    Long orderId;
+
+    @Column(name = "txn_ref", length = 100, nullable = false)
+    String txnRef;
+
+    // vnp_CreateDate của URL (yyyyMMddHHmmss giờ Việt Nam), bắt buộc khi truy vấn querydr
+    @Column(name = "transaction_date", length = 14, nullable = false)
+    String transactionDate;
+
+    Long amount;
+
+    @Column(name = "expires_at")
+    Instant expiresAt;
+
+    @Column(name = "created_at")
+    Instant createdAt;
+
+    @PrePersist
+    public void handleBeforeCreate() {
+        this.createdAt = Instant.now();
+    }
+}
@@ -0,0 +1,80 @@
+package com.lat.be.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import com.lat.be.domain.enumeration.PaymentEventStatus;
+
+import java.time.Instant;
+
+/**
+ * Kết quả thanh toán VNPay đã kiểm tra chữ ký (từ IPN hoặc redirect), mỗi vnp_TxnRef một dòng.
+ * Dòng được ghi trước khi trả lời VNPay rồi mới áp dụng vào đơn hàng, nên callback trùng lặp
+ * hoặc đến đồng thời chỉ làm đổi trạng thái đơn hàng một lần.
+ */
+@Entity
+@Table(name = "payment_events",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_events_txn_ref", columnNames = "txn_ref"),
+        indexes = @Index(name = "idx_payment_events_status_created", columnList = "status, created_at"))
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PaymentEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_events_seq")
+    @SequenceGenerator(name = "payment_events_seq", sequenceName = "payment_events_seq", allocationSize = 50)
+    Long id;
+
+    @Column(name = "txn_ref", length = 100, nullable = false)
+    String txnRef;
+
+    @Column(name = "order_id", nullable = false)
+    Long orderId;
+
+    // IPN, RETURN hoặc QUERY (đối soát)
+    @Column(length = 20, nullable = false)
+    String source;
+
+    @Column(length = 10)
+    String responseCode;
+
+    @Column(length = 10)
+    String transactionStatus;
+
+    String transactionNo;
+    Long amount;
+    String bankCode;
+    String payDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    PaymentEventStatus status;
+
+    int attempts;
+
+    @Column(length = 500)
+    String lastError;
+
+    @Version
+    long version;
+
+    @Column(name = "created_at")
+    Instant createdAt;
+
+    Instant processedAt;
+
+    @PrePersist
+    public void handleBeforeCreate() {
+        this.createdAt = Instant.now();
+    }
+
+    /**
+     * Giao dịch thành công khi cả mã phản hồi và trạng thái giao dịch đều là 00
+     */
+    public boolean isSuccess() {
+        return "00".equals(responseCode) && (transactionStatus == null || "00".equals(transactionStatus));
+    }
+}
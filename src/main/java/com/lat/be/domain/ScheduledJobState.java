@@ -0,0 +1,40 @@
+package com.lat.be.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+/**
+ * Trạng thái của một tác vụ định kỳ chạy theo lô: điểm dừng (checkpoint) để lần chạy sau đi tiếp,
+ * và khóa thuê (lockedBy / lockedUntil) để khi chạy nhiều instance chỉ một nơi xử lý tại một thời điểm.
+ */
+@Entity
+@Table(name = "scheduled_job_states")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ScheduledJobState {
+    @Id
+    @Column(length = 100)
+    String name;
+
+    // ID lớn nhất đã xử lý trong lượt quét hiện tại; 0 là bắt đầu lượt mới
+    long checkpoint;
+
+    @Column(length = 100)
+    String lockedBy;
+
+    Instant lockedUntil;
+
+    Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    public void handleBeforeSave() {
+        this.updatedAt = Instant.now();
+    }
+}
@@ -0,0 +1,74 @@
+package com.lat.be.domain;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Min;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.lat.be.domain.enumeration.ReservationStatus;
+import com.lat.be.util.SecurityUtil;
+
+import java.time.Instant;
+
+/**
+ * Giữ hàng tạm thời cho đơn hàng thanh toán chuyển khoản (VNPay).
+ * Tồn kho đã được trừ khi tạo đơn; nếu hết hạn mà chưa thanh toán thì số lượng được trả lại kho.
+ */
+@Entity
+@Table(name = "stock_reservations", indexes = {
+        @Index(name = "idx_stock_reservations_status_expires", columnList = "status, expires_at"),
+        @Index(name = "idx_stock_reservations_order", columnList = "order_id")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StockReservation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_reservations_seq")
+    @SequenceGenerator(name = "stock_reservations_seq", sequenceName = "stock_reservations_seq", allocationSize = 50)
+    Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_id", nullable = false)
+    @JsonIgnore
+    Order order;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id", nullable = false)
+    @JsonIgnore
+    Product product;
+
+    @Min(value = 1, message = "Số lượng giữ hàng phải lớn hơn 0")
+    int quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    ReservationStatus status;
+
+    @Column(name = "expires_at", nullable = false)
+    Instant expiresAt;
+
+    Instant createdAt;
+    Instant updatedAt;
+    String createdBy;
+    String updatedBy;
+
+    @PrePersist
+    public void handleBeforeCreate() {
+        this.createdAt = Instant.now();
+        this.createdBy = SecurityUtil.getCurrentUserLogin().isPresent() == true
+                ? SecurityUtil.getCurrentUserLogin().get()
+                : "";
+    }
+
+    @PreUpdate
+    public void handleBeforeUpdate() {
+        this.updatedAt = Instant.now();
+        this.updatedBy = SecurityUtil.getCurrentUserLogin().isPresent() == true
+                ? SecurityUtil.getCurrentUserLogin().get()
+                : "";
+    }
+}
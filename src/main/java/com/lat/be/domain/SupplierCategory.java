@@ -1,6 +1,8 @@
 package com.lat.be.domain;
 
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
@@ -10,6 +12,8 @@ import java.time.Instant;
 
 @Entity
 @Table(name = "supplier_categories")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "reference.supplier-category")
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
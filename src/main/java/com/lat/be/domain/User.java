@@ -16,7 +16,9 @@ import java.time.Instant;
 import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_refresh_token_hash", columnList = "refresh_token_hash")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
@@ -43,8 +45,13 @@ public class User  {
     GenderEnum gender;
     String address;
     String avatar;
-    @Column(columnDefinition = "MEDIUMTEXT")
-    String refreshToken;
+    // Chỉ lưu SHA-256 (hex) của refresh token hiện hành và họ token của phiên đăng nhập
+    @JsonIgnore
+    @Column(name = "refresh_token_hash", columnDefinition = "CHAR(64)")
+    String refreshTokenHash;
+    @JsonIgnore
+    @Column(name = "refresh_token_family", length = 36)
+    String refreshTokenFamily;
     Instant createdAt;
     Instant updatedAt;
     String createdBy;
@@ -0,0 +1,18 @@
+package com.lat.be.domain.enumeration;
+
+public enum PaymentEventStatus {
+    PENDING("Chờ xử lý"),
+    APPLIED("Đã cập nhật đơn hàng"),
+    IGNORED("Bỏ qua"),
+    FAILED("Xử lý thất bại");
+
+    private final String description;
+
+    PaymentEventStatus(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
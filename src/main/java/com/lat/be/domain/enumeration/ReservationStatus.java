@@ -0,0 +1,17 @@
+package com.lat.be.domain.enumeration;
+
+public enum ReservationStatus {
+    HELD("Đang giữ hàng"),
+    COMMITTED("Đã trừ kho"),
+    RELEASED("Đã trả hàng");
+
+    private final String description;
+
+    ReservationStatus(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,52 @@
+package com.lat.be.domain.event;
+
+import java.util.Collection;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Phát ra khi dữ liệu danh mục sản phẩm thay đổi (xử lý sau khi giao dịch commit).
+ */
+@Getter
+@AllArgsConstructor
+public class CatalogChangedEvent {
+
+    public enum Scope {
+        // Chỉ thay đổi tồn kho / trạng thái của các sản phẩm
+        STOCK,
+        // Thay đổi thông tin sản phẩm (có thể đổi danh mục, nhà cung cấp) hoặc thêm / xóa sản phẩm
+        PRODUCT,
+        // Thay đổi danh mục, nhà cung cấp... ảnh hưởng tới nhiều sản phẩm
+        ALL
+    }
+
+    private final Scope scope;
+    private final Collection<Long> productIds;
+    // true nếu thay đổi hiện ra ở danh sách thẻ sản phẩm (thêm / xóa, tên, giá, ảnh, trạng thái, danh mục...)
+    private final boolean listingChanged;
+
+    /**
+     * Thay đổi tồn kho
+     * @param soldOutOrRestockedIds các sản phẩm có số lượng vừa về 0 hoặc vừa có hàng lại (đổi trạng thái trên thẻ)
+     */
+    public static CatalogChangedEvent stock(Collection<Long> productIds, Collection<Long> soldOutOrRestockedIds) {
+        return new CatalogChangedEvent(Scope.STOCK, List.copyOf(productIds), !soldOutOrRestockedIds.isEmpty());
+    }
+
+    /**
+     * Thêm hoặc xóa sản phẩm
+     */
+    public static CatalogChangedEvent product(Long productId) {
+        return product(productId, true);
+    }
+
+    public static CatalogChangedEvent product(Long productId, boolean listingChanged) {
+        return new CatalogChangedEvent(Scope.PRODUCT, List.of(productId), listingChanged);
+    }
+
+    public static CatalogChangedEvent all() {
+        return new CatalogChangedEvent(Scope.ALL, List.of(), true);
+    }
+}
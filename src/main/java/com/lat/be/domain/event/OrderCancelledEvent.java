@@ -0,0 +1,18 @@
+package com.lat.be.domain.event;
+
+import java.util.Map;
+
+import com.lat.be.util.constant.PaymentStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Phát ra khi các đơn hàng bị hủy (xử lý sau khi giao dịch commit).
+ */
+@Getter
+@AllArgsConstructor
+public class OrderCancelledEvent {
+    // Trạng thái thanh toán của từng đơn tại thời điểm hủy
+    private final Map<Long, PaymentStatus> paymentStatuses;
+}
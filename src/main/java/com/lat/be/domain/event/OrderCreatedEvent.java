@@ -0,0 +1,17 @@
+package com.lat.be.domain.event;
+
+import com.lat.be.util.constant.PaymentStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Phát ra khi một đơn hàng mới được tạo (xử lý sau khi giao dịch commit).
+ */
+@Getter
+@AllArgsConstructor
+public class OrderCreatedEvent {
+    private final Long orderId;
+    // Trạng thái thanh toán lúc tạo; trạng thái sau đó được báo bằng OrderPaymentStatusChangedEvent
+    private final PaymentStatus paymentStatus;
+}
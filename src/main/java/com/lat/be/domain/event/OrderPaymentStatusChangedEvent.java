@@ -0,0 +1,19 @@
+package com.lat.be.domain.event;
+
+import com.lat.be.util.constant.PaymentStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Phát ra khi trạng thái thanh toán của đơn hàng thay đổi (xử lý sau khi giao dịch commit).
+ */
+@Getter
+@AllArgsConstructor
+public class OrderPaymentStatusChangedEvent {
+    private final Long orderId;
+    private final PaymentStatus oldStatus;
+    private final PaymentStatus newStatus;
+    // Đơn hàng đã bị hủy từ trước thay đổi này
+    private final boolean orderCancelled;
+}
@@ -0,0 +1,19 @@
+package com.lat.be.domain.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Phát ra khi thông tin, quyền, mật khẩu hoặc refresh token của người dùng thay đổi
+ * (bản lưu trong bộ nhớ theo email bị xóa sau khi giao dịch commit).
+ * Email null nghĩa là thay đổi ảnh hưởng tới mọi người dùng (ví dụ sửa vai trò).
+ */
+@Getter
+@AllArgsConstructor
+public class UserChangedEvent {
+    private final String email;
+
+    public static UserChangedEvent all() {
+        return new UserChangedEvent(null);
+    }
+}
@@ -0,0 +1,42 @@
+package com.lat.be.domain.request;
+
+import java.util.List;
+
+import com.lat.be.util.constant.CartAction;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCartDTO {
+    @NotEmpty(message = "Danh sách sản phẩm không được để trống")
+    @Size(max = 200, message = "Tối đa 200 dòng cho mỗi lần cập nhật")
+    @Valid
+    private List<Item> items;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        @NotNull(message = "ID sản phẩm không được để trống")
+        private Long productId;
+
+        // ADD: cộng thêm, SET: đặt số lượng (0 là xóa), REMOVE: xóa khỏi giỏ
+        @NotNull(message = "Thao tác không được để trống")
+        private CartAction action;
+
+        @Min(value = 0, message = "Số lượng không được âm")
+        private int quantity;
+    }
+}
@@ -0,0 +1,33 @@
+package com.lat.be.domain.response;
+
+import java.util.List;
+
+import com.lat.be.util.constant.CartAction;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCartResultDTO {
+    private int succeeded;
+    private int failed;
+    private List<LineResult> results;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineResult {
+        private Long productId;
+        private CartAction action;
+        private boolean success;
+        // Số lượng trong giỏ sau thao tác (0 nếu sản phẩm không còn trong giỏ)
+        private int quantity;
+        private String message;
+    }
+}
@@ -12,6 +12,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 @Data
@@ -69,6 +70,47 @@ public class OrderWithItemsDTO {
         private String image;
     }
     
+    /**
+     * Dựng DTO từ một dòng của OrderRepository.findOrderRowsByUserId (chưa có người dùng và danh sách sản phẩm)
+     */
+    public static OrderWithItemsDTO fromRow(Object[] row) {
+        return OrderWithItemsDTO.builder()
+                .id((Long) row[0])
+                .totalPrice((Long) row[1])
+                .paymentMethod((PaymentMethod) row[2])
+                .paymentStatus((PaymentStatus) row[3])
+                .orderStatus((OrderStatus) row[4])
+                .paymentUrl((String) row[5])
+                .transactionNo((String) row[6])
+                .paymentMessage((String) row[7])
+                .createdAt((Instant) row[8])
+                .updatedAt((Instant) row[9])
+                .createdBy((String) row[10])
+                .updatedBy((String) row[11])
+                .phone((String) row[12])
+                .address((String) row[13])
+                .items(new ArrayList<>())
+                .build();
+    }
+    
+    /**
+     * Dựng dòng sản phẩm từ một dòng của OrderDetailRepository.findItemLinesByOrderIds
+     */
+    public static OrderItemDTO itemFromRow(Object[] row) {
+        ProductDTO product = row[5] == null ? null : ProductDTO.builder()
+                .id((Long) row[5])
+                .name((String) row[6])
+                .image((String) row[7])
+                .build();
+        return OrderItemDTO.builder()
+                .id((Long) row[1])
+                .quantity((Integer) row[2])
+                .price((Long) row[3])
+                .totalPrice((Long) row[4])
+                .product(product)
+                .build();
+    }
+    
     public static OrderWithItemsDTO fromOrder(Order order) {
         OrderWithItemsDTO dto = OrderWithItemsDTO.builder()
                 .id(order.getId())
@@ -0,0 +1,54 @@
+package com.lat.be.domain.response;
+
+import com.lat.be.domain.Product;
+import com.lat.be.domain.enumeration.ProductStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Thông tin rút gọn của sản phẩm cho các API danh sách (không có mô tả, chỉ lấy tên danh mục và nhà cung cấp).
+ * Chi tiết đầy đủ lấy qua /products/{id}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductCardDTO {
+    private Long id;
+    private String name;
+    private long sellPrice;
+    private String image;
+    private ProductStatus status;
+    private String categoryName;
+    private String supplierName;
+
+    /**
+     * Dựng từ một dòng [id, name, sellPrice, image, status, categoryName, supplierName]
+     */
+    public static ProductCardDTO fromRow(Object[] row) {
+        return ProductCardDTO.builder()
+                .id((Long) row[0])
+                .name((String) row[1])
+                .sellPrice((Long) row[2])
+                .image((String) row[3])
+                .status((ProductStatus) row[4])
+                .categoryName((String) row[5])
+                .supplierName((String) row[6])
+                .build();
+    }
+
+    public static ProductCardDTO fromProduct(Product product) {
+        return ProductCardDTO.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .sellPrice(product.getSellPrice())
+                .image(product.getImage())
+                .status(product.getStatus())
+                .categoryName(product.getCategory() != null ? product.getCategory().getName() : null)
+                .supplierName(product.getSupplier() != null ? product.getSupplier().getName() : null)
+                .build();
+    }
+}
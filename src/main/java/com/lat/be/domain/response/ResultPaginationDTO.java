@@ -1,5 +1,6 @@
 package com.lat.be.domain.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -11,12 +12,15 @@ public class ResultPaginationDTO {
     private Object result;
 
 
+    // Ở chế độ con trỏ không có page / pages / total mà chỉ có nextCursor
     @Getter
     @Setter
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     public static class Meta {
-        private int page;
+        private Integer page;
         private int pageSize;
-        private int pages;
-        private long total;
+        private Integer pages;
+        private Long total;
+        private String nextCursor;
     }
 }
@@ -1,6 +1,9 @@
 package com.lat.be.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.lat.be.domain.Cart;
@@ -14,4 +17,23 @@ public interface CartDetailRepository extends JpaRepository<CartDetail, Long> {
     CartDetail findByCartAndProduct(Cart cart, Product product);
     List<CartDetail> findByCart(Cart cart);
     void deleteByCart(Cart cart);
+
+    /**
+     * Dòng giỏ hàng dạng gọn: [id, productId, quantity]
+     */
+    @Query("SELECT cd.id, cd.product.id, cd.quantity FROM CartDetail cd WHERE cd.cart.id = :cartId ORDER BY cd.id")
+    List<Object[]> findLinesByCartId(@Param("cartId") Long cartId);
+
+    /**
+     * Dòng giỏ hàng kèm giỏ, người dùng và sản phẩm trong một câu SELECT (không nạp thêm từng sản phẩm)
+     */
+    @Query("SELECT cd FROM CartDetail cd JOIN FETCH cd.cart c LEFT JOIN FETCH c.user u LEFT JOIN FETCH u.role " +
+           "JOIN FETCH cd.product p LEFT JOIN FETCH p.category LEFT JOIN FETCH p.supplier " +
+           "WHERE c.id = :cartId ORDER BY cd.id")
+    List<CartDetail> findWithProductByCartId(@Param("cartId") Long cartId);
+
+    // Xóa toàn bộ dòng của giỏ bằng một câu DELETE
+    @Modifying
+    @Query("DELETE FROM CartDetail cd WHERE cd.cart.id = :cartId")
+    int deleteAllByCartId(@Param("cartId") Long cartId);
 } 
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.lat.be.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.lat.be.domain.DailyOrderRollup;
+import com.lat.be.util.constant.PaymentStatus;
+
+import jakarta.persistence.LockModeType;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DailyOrderRollupRepository extends JpaRepository<DailyOrderRollup, Long> {
+
+    /**
+     * Cộng dồn (hoặc trừ khi delta âm) số đơn và doanh thu trong ngày.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO daily_order_rollups (sales_date, payment_status, order_count, revenue) " +
+            "VALUES (:salesDate, :paymentStatus, :orderCount, :revenue) " +
+            "ON DUPLICATE KEY UPDATE order_count = order_count + VALUES(order_count), " +
+            "revenue = revenue + VALUES(revenue)",
+            nativeQuery = true)
+    int upsert(@Param("salesDate") LocalDate salesDate,
+               @Param("paymentStatus") String paymentStatus,
+               @Param("orderCount") long orderCount,
+               @Param("revenue") long revenue);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM DailyOrderRollup r WHERE r.salesDate = :salesDate AND r.paymentStatus = :paymentStatus")
+    Optional<DailyOrderRollup> findForUpdate(@Param("salesDate") LocalDate salesDate,
+                                             @Param("paymentStatus") PaymentStatus paymentStatus);
+
+    @Modifying
+    @Query("UPDATE DailyOrderRollup r SET r.customerSketch = :customerSketch WHERE r.id = :id")
+    int updateCustomerSketch(@Param("id") Long id, @Param("customerSketch") byte[] customerSketch);
+
+    /**
+     * Trả về một dòng: [doanh thu đã thanh toán, tổng số đơn]
+     */
+    @Query("SELECT COALESCE(SUM(CASE WHEN r.paymentStatus = :paidStatus THEN r.revenue ELSE 0 END), 0), " +
+           "COALESCE(SUM(r.orderCount), 0) " +
+           "FROM DailyOrderRollup r WHERE r.salesDate >= :startDate AND r.salesDate <= :endDate")
+    List<Object[]> sumOrdersInPeriod(@Param("startDate") LocalDate startDate,
+                                     @Param("endDate") LocalDate endDate,
+                                     @Param("paidStatus") PaymentStatus paidStatus);
+
+    @Query("SELECT r.customerSketch FROM DailyOrderRollup r " +
+           "WHERE r.salesDate >= :startDate AND r.salesDate <= :endDate AND r.customerSketch IS NOT NULL")
+    List<byte[]> findCustomerSketchesInPeriod(@Param("startDate") LocalDate startDate,
+                                              @Param("endDate") LocalDate endDate);
+}
@@ -0,0 +1,73 @@
+package com.lat.be.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.lat.be.domain.DailySalesRollup;
+import com.lat.be.util.constant.PaymentStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailySalesRollupRepository extends JpaRepository<DailySalesRollup, Long> {
+
+    /**
+     * Cộng dồn (hoặc trừ khi delta âm) số liệu của một sản phẩm trong ngày.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_rollups " +
+            "(sales_date, product_id, supplier_id, payment_status, revenue, units, order_count) " +
+            "VALUES (:salesDate, :productId, :supplierId, :paymentStatus, :revenue, :units, :orderCount) " +
+            "ON DUPLICATE KEY UPDATE revenue = revenue + VALUES(revenue), " +
+            "units = units + VALUES(units), order_count = order_count + VALUES(order_count)",
+            nativeQuery = true)
+    int upsert(@Param("salesDate") LocalDate salesDate,
+               @Param("productId") Long productId,
+               @Param("supplierId") Long supplierId,
+               @Param("paymentStatus") String paymentStatus,
+               @Param("revenue") long revenue,
+               @Param("units") long units,
+               @Param("orderCount") long orderCount);
+
+    @Query("SELECT COALESCE(SUM(r.units), 0) FROM DailySalesRollup r " +
+           "WHERE r.salesDate >= :startDate AND r.salesDate <= :endDate")
+    Long sumUnitsInPeriod(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * Sản phẩm bán chạy trong khoảng ngày, không tính thanh toán thất bại hoặc chờ hoàn tiền
+     * (dòng của đơn đã hủy đã được trừ khỏi bảng): [productId, totalQuantitySold, totalRevenue]
+     */
+    @Query("SELECT r.productId as productId, SUM(r.units) as totalQuantitySold, SUM(r.revenue) as totalRevenue " +
+           "FROM DailySalesRollup r " +
+           "WHERE r.salesDate >= :startDate AND r.salesDate <= :endDate " +
+           "AND r.paymentStatus NOT IN (com.lat.be.util.constant.PaymentStatus.FAILED, " +
+           "com.lat.be.util.constant.PaymentStatus.REFUND_REQUIRED) " +
+           "GROUP BY r.productId " +
+           "HAVING SUM(r.units) > 0 " +
+           "ORDER BY totalQuantitySold DESC")
+    List<Object[]> findTopSellingProductsInPeriod(@Param("startDate") LocalDate startDate,
+                                                  @Param("endDate") LocalDate endDate,
+                                                  Pageable pageable);
+
+    @Query("SELECT s.name as supplierName, SUM(r.revenue) as totalRevenue " +
+           "FROM DailySalesRollup r JOIN Supplier s ON s.id = r.supplierId " +
+           "WHERE r.paymentStatus = :paymentStatus " +
+           "AND r.salesDate >= :startDate AND r.salesDate <= :endDate " +
+           "GROUP BY s.name " +
+           "ORDER BY totalRevenue DESC")
+    List<Object[]> getSupplierRevenuesInPeriod(@Param("startDate") LocalDate startDate,
+                                               @Param("endDate") LocalDate endDate,
+                                               @Param("paymentStatus") PaymentStatus paymentStatus);
+
+    @Query("SELECT COALESCE(SUM(r.revenue), 0) FROM DailySalesRollup r " +
+           "WHERE r.paymentStatus = :paymentStatus " +
+           "AND r.salesDate >= :startDate AND r.salesDate <= :endDate")
+    Long getTotalRevenueInPeriod(@Param("startDate") LocalDate startDate,
+                                 @Param("endDate") LocalDate endDate,
+                                 @Param("paymentStatus") PaymentStatus paymentStatus);
+}
@@ -1,5 +1,6 @@
 package com.lat.be.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
@@ -12,6 +13,7 @@ import com.lat.be.domain.Product;
 import com.lat.be.util.constant.PaymentStatus;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -19,20 +21,73 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long>,
     List<OrderDetail> findByOrder(Order order);
     List<OrderDetail> findByProduct(Product product);
     
+    /**
+     * Dòng đơn hàng dạng gọn để cộng dồn số liệu: [orderId, productId, supplierId, quantity, totalPrice]
+     */
+    @Query("SELECT od.order.id, od.product.id, s.id, od.quantity, od.totalPrice " +
+           "FROM OrderDetail od LEFT JOIN od.product.supplier s " +
+           "WHERE od.order.id IN :orderIds ORDER BY od.order.id")
+    List<Object[]> findRollupLines(@Param("orderIds") Collection<Long> orderIds);
+    
+    /**
+     * Sản phẩm bán chạy toàn thời gian, không tính đơn đã hủy, thanh toán thất bại hoặc chờ hoàn tiền
+     * (cùng quy tắc với TopSellingTracker): [productId, productName, productImage, totalQuantitySold, totalRevenue]
+     */
     @Query("SELECT od.product.id as productId, od.product.name as productName, od.product.image as productImage, " +
            "SUM(od.quantity) as totalQuantitySold, SUM(od.totalPrice) as totalRevenue " +
            "FROM OrderDetail od " +
+           "WHERE od.order.orderStatus <> com.lat.be.util.constant.OrderStatus.CANCELLED " +
+           "AND od.order.paymentStatus NOT IN (com.lat.be.util.constant.PaymentStatus.FAILED, " +
+           "com.lat.be.util.constant.PaymentStatus.REFUND_REQUIRED) " +
            "GROUP BY od.product.id, od.product.name, od.product.image " +
            "ORDER BY totalQuantitySold DESC")
-    List<Object[]> findTopSellingProducts();
+    List<Object[]> findTopSellingProducts(Pageable pageable);
     
+    /**
+     * Như findTopSellingProducts trong khoảng thời gian tạo đơn:
+     * [productId, productName, productImage, totalQuantitySold, totalRevenue]
+     */
     @Query("SELECT od.product.id as productId, od.product.name as productName, od.product.image as productImage, " +
            "SUM(od.quantity) as totalQuantitySold, SUM(od.totalPrice) as totalRevenue " +
            "FROM OrderDetail od " +
            "WHERE od.order.createdAt >= :startDate AND od.order.createdAt <= :endDate " +
+           "AND od.order.orderStatus <> com.lat.be.util.constant.OrderStatus.CANCELLED " +
+           "AND od.order.paymentStatus NOT IN (com.lat.be.util.constant.PaymentStatus.FAILED, " +
+           "com.lat.be.util.constant.PaymentStatus.REFUND_REQUIRED) " +
            "GROUP BY od.product.id, od.product.name, od.product.image " +
            "ORDER BY totalQuantitySold DESC")
-    List<Object[]> findTopSellingProductsInPeriod(@Param("startDate") Instant startDate, @Param("endDate") Instant endDate);
+    List<Object[]> findTopSellingProductsInPeriod(@Param("startDate") Instant startDate, @Param("endDate") Instant endDate, Pageable pageable);
+    
+    /**
+     * Dòng đơn hàng kèm thông tin sản phẩm để cập nhật bảng xếp hạng bán chạy:
+     * [productId, productName, productImage, quantity, totalPrice]
+     */
+    @Query("SELECT od.product.id, od.product.name, od.product.image, od.quantity, od.totalPrice " +
+           "FROM OrderDetail od WHERE od.order.id = :orderId")
+    List<Object[]> findSalesLinesByOrderId(@Param("orderId") Long orderId);
+
+    /**
+     * Như findSalesLinesByOrderId cho nhiều đơn hàng: [productId, productName, productImage, quantity, totalPrice]
+     */
+    @Query("SELECT od.product.id, od.product.name, od.product.image, od.quantity, od.totalPrice " +
+           "FROM OrderDetail od WHERE od.order.id IN :orderIds")
+    List<Object[]> findSalesLinesByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+    
+    /**
+     * Dòng đơn hàng kèm tóm tắt sản phẩm của nhiều đơn trong một truy vấn:
+     * [orderId, id, quantity, price, totalPrice, productId, productName, productImage]
+     */
+    @Query("SELECT od.order.id, od.id, od.quantity, od.price, od.totalPrice, p.id, p.name, p.image " +
+           "FROM OrderDetail od LEFT JOIN od.product p " +
+           "WHERE od.order.id IN :orderIds ORDER BY od.order.id, od.id")
+    List<Object[]> findItemLinesByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * Tổng số lượng theo sản phẩm của nhiều đơn hàng: [productId, quantity]
+     */
+    @Query("SELECT od.product.id, SUM(od.quantity) FROM OrderDetail od " +
+           "WHERE od.order.id IN :orderIds GROUP BY od.product.id")
+    List<Object[]> sumQuantityByProduct(@Param("orderIds") Collection<Long> orderIds);
     
     @Query("SELECT SUM(od.quantity) FROM OrderDetail od")
     Long countTotalProductsSold();
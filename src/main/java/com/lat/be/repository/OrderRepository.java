@@ -1,24 +1,190 @@
 package com.lat.be.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.lat.be.domain.Order;
 import com.lat.be.domain.User;
+import com.lat.be.util.constant.OrderStatus;
 import com.lat.be.util.constant.PaymentMethod;
 import com.lat.be.util.constant.PaymentStatus;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
     List<Order> findByUser(User user);
     List<Order> findByPaymentMethod(PaymentMethod paymentMethod);
     
+    /**
+     * Đơn hàng của một người dùng dạng gọn (không nạp entity):
+     * [id, totalPrice, paymentMethod, paymentStatus, orderStatus, paymentUrl, transactionNo, paymentMessage,
+     *  createdAt, updatedAt, createdBy, updatedBy, phone, address]
+     */
+    @Query("SELECT o.id, o.totalPrice, o.paymentMethod, o.paymentStatus, o.orderStatus, o.paymentUrl, " +
+           "o.transactionNo, o.paymentMessage, o.createdAt, o.updatedAt, o.createdBy, o.updatedBy, o.phone, o.address " +
+           "FROM Order o WHERE o.user.id = :userId")
+    List<Object[]> findOrderRowsByUserId(@Param("userId") Long userId, Pageable pageable);
+    
+    long countByUserId(Long userId);
+    
+    @Query("SELECT o.paymentStatus FROM Order o WHERE o.id = :id")
+    Optional<PaymentStatus> findPaymentStatusById(@Param("id") Long id);
+
+    /**
+     * Trạng thái của các đơn hàng: [id, orderStatus, paymentStatus]
+     */
+    @Query("SELECT o.id, o.orderStatus, o.paymentStatus FROM Order o WHERE o.id IN :ids")
+    List<Object[]> findStatusRowsByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * ID người đặt đơn hàng (kiểm tra quyền xem đơn)
+     */
+    @Query("SELECT o.user.id FROM Order o WHERE o.id = :id")
+    Optional<Long> findUserIdById(@Param("id") Long id);
+
+    /**
+     * Trạng thái thanh toán và tổng tiền của đơn hàng (kiểm tra IPN): [paymentStatus, totalPrice]
+     */
+    @Query("SELECT o.paymentStatus, o.totalPrice FROM Order o WHERE o.id = :id")
+    List<Object[]> findPaymentCheckRowById(@Param("id") Long id);
+
+    /**
+     * URL thanh toán đang lưu của đơn hàng: [paymentUrl, paymentUrlExpiresAt, paymentStatus]
+     */
+    @Query("SELECT o.paymentUrl, o.paymentUrlExpiresAt, o.paymentStatus FROM Order o WHERE o.id = :id")
+    List<Object[]> findPaymentUrlRowById(@Param("id") Long id);
+
+    /**
+     * Đơn hàng còn chờ thanh toán có URL đã hết hạn, theo ID tăng dần sau afterId (để đối soát theo lô): [id, paymentUrl].
+     * Đơn tạo trước khi có cột paymentUrlExpiresAt được xét theo createdAt.
+     */
+    @Query("SELECT o.id, o.paymentUrl FROM Order o " +
+           "WHERE o.paymentStatus = :status AND o.paymentMethod = :method AND o.id > :afterId " +
+           "AND o.paymentUrl IS NOT NULL " +
+           "AND (o.paymentUrlExpiresAt < :expiredBefore " +
+           "     OR (o.paymentUrlExpiresAt IS NULL AND o.createdAt < :createdBefore)) " +
+           "ORDER BY o.id")
+    List<Object[]> findStalePaymentRows(@Param("status") PaymentStatus status,
+                                        @Param("method") PaymentMethod method,
+                                        @Param("afterId") long afterId,
+                                        @Param("expiredBefore") Instant expiredBefore,
+                                        @Param("createdBefore") Instant createdBefore,
+                                        Pageable pageable);
+
+    /**
+     * Khóa các đơn trong danh sách còn ở trạng thái thanh toán cho trước: [id, paymentUrl, orderStatus]
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o.id, o.paymentUrl, o.orderStatus FROM Order o WHERE o.id IN :ids AND o.paymentStatus = :status")
+    List<Object[]> lockPaymentUrlRowsByPaymentStatus(@Param("ids") Collection<Long> ids,
+                                                     @Param("status") PaymentStatus status);
+
+    /**
+     * Khóa một lô đơn hàng bị bỏ dở (chưa thanh toán, tạo trước createdBefore) theo ID tăng dần;
+     * bỏ qua các dòng instance khác đang khóa (lock.timeout = -2 tương ứng SKIP LOCKED) để không hủy trùng.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT o.id FROM Order o WHERE o.orderStatus = :orderStatus AND o.paymentMethod = :method " +
+           "AND o.paymentStatus IN :paymentStatuses AND o.createdAt < :createdBefore ORDER BY o.id")
+    List<Long> findAbandonedIdsForUpdate(@Param("orderStatus") OrderStatus orderStatus,
+                                         @Param("method") PaymentMethod method,
+                                         @Param("paymentStatuses") Collection<PaymentStatus> paymentStatuses,
+                                         @Param("createdBefore") Instant createdBefore,
+                                         Pageable pageable);
+
+    /**
+     * Khóa các đơn trong danh sách chưa ở trạng thái đơn hàng cho trước, trả về ID các đơn đó
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o.id FROM Order o WHERE o.id IN :ids AND o.orderStatus <> :status")
+    List<Long> lockIdsByOrderStatusNot(@Param("ids") Collection<Long> ids, @Param("status") OrderStatus status);
+
+    /**
+     * Đổi trạng thái đơn hàng hàng loạt (bỏ qua đơn đã ở trạng thái mới); tăng version như updatePaymentStatus
+     */
+    @Modifying
+    @Query("UPDATE Order o SET o.orderStatus = :newStatus, o.paymentMessage = :message, o.updatedAt = :now, " +
+           "o.version = o.version + 1 " +
+           "WHERE o.id IN :ids AND o.orderStatus <> :newStatus")
+    int updateOrderStatus(@Param("ids") Collection<Long> ids,
+                          @Param("newStatus") OrderStatus newStatus,
+                          @Param("message") String message,
+                          @Param("now") Instant now);
+
+    /**
+     * Đổi trạng thái thanh toán hàng loạt; tăng version để các bản đang giữ trong bộ nhớ phải đọc lại
+     */
+    @Modifying
+    @Query("UPDATE Order o SET o.paymentStatus = :newStatus, o.paymentMessage = :message, o.updatedAt = :now, " +
+           "o.version = o.version + 1 " +
+           "WHERE o.id IN :ids AND o.paymentStatus = :currentStatus")
+    int updatePaymentStatus(@Param("ids") Collection<Long> ids,
+                            @Param("currentStatus") PaymentStatus currentStatus,
+                            @Param("newStatus") PaymentStatus newStatus,
+                            @Param("message") String message,
+                            @Param("now") Instant now);
+    
+    /**
+     * Đơn hàng dạng gọn theo ID tăng dần để dựng lại số liệu:
+     * [id, createdAt, paymentStatus, totalPrice, userId, orderStatus]
+     */
+    @Query("SELECT o.id, o.createdAt, o.paymentStatus, o.totalPrice, o.user.id, o.orderStatus FROM Order o " +
+           "WHERE o.id > :afterId ORDER BY o.id")
+    List<Object[]> findRollupOrdersAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Ngày tạo của nhiều đơn hàng: [id, createdAt]
+     */
+    @Query("SELECT o.id, o.createdAt FROM Order o WHERE o.id IN :ids")
+    List<Object[]> findCreatedAtByIds(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT o.id, o.createdAt, o.paymentStatus, o.totalPrice, o.user.id FROM Order o WHERE o.id = :orderId")
+    List<Object[]> findRollupOrder(@Param("orderId") Long orderId);
+    
+    /**
+     * Tính doanh thu (đã thanh toán), số đơn, số sản phẩm đã bán và số khách hàng của hai khoảng thời gian
+     * trong một lần quét, trả về một dòng:
+     * [doanh thu hiện tại, doanh thu trước, số đơn hiện tại, số đơn trước,
+     *  sản phẩm đã bán hiện tại, sản phẩm đã bán trước, khách hàng hiện tại, khách hàng trước]
+     */
+    @Query(value = "SELECT " +
+            "COALESCE(SUM(CASE WHEN o.created_at BETWEEN :startDate AND :endDate AND o.payment_status = :paymentStatus THEN o.total_price END), 0), " +
+            "COALESCE(SUM(CASE WHEN o.created_at BETWEEN :previousStartDate AND :previousEndDate AND o.payment_status = :paymentStatus THEN o.total_price END), 0), " +
+            "COUNT(CASE WHEN o.created_at BETWEEN :startDate AND :endDate THEN 1 END), " +
+            "COUNT(CASE WHEN o.created_at BETWEEN :previousStartDate AND :previousEndDate THEN 1 END), " +
+            "COALESCE(SUM(CASE WHEN o.created_at BETWEEN :startDate AND :endDate THEN d.quantity END), 0), " +
+            "COALESCE(SUM(CASE WHEN o.created_at BETWEEN :previousStartDate AND :previousEndDate THEN d.quantity END), 0), " +
+            "COUNT(DISTINCT CASE WHEN o.created_at BETWEEN :startDate AND :endDate THEN o.user_id END), " +
+            "COUNT(DISTINCT CASE WHEN o.created_at BETWEEN :previousStartDate AND :previousEndDate THEN o.user_id END) " +
+            "FROM orders o " +
+            "LEFT JOIN (SELECT od.order_id, SUM(od.quantity) AS quantity FROM order_details od " +
+            "  JOIN orders o2 ON o2.id = od.order_id " +
+            "  WHERE o2.created_at BETWEEN :rangeStart AND :rangeEnd GROUP BY od.order_id) d ON d.order_id = o.id " +
+            "WHERE o.created_at BETWEEN :rangeStart AND :rangeEnd",
+            nativeQuery = true)
+    List<Object[]> getPerformanceStatistics(@Param("startDate") Instant startDate,
+                                            @Param("endDate") Instant endDate,
+                                            @Param("previousStartDate") Instant previousStartDate,
+                                            @Param("previousEndDate") Instant previousEndDate,
+                                            @Param("rangeStart") Instant rangeStart,
+                                            @Param("rangeEnd") Instant rangeEnd,
+                                            @Param("paymentStatus") String paymentStatus);
+    
     @Query("SELECT COUNT(o) FROM Order o WHERE o.createdAt >= :startDate AND o.createdAt <= :endDate")
     Long countOrdersInPeriod(@Param("startDate") Instant startDate, @Param("endDate") Instant endDate);
     
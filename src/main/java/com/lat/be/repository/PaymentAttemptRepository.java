@@ -0,0 +1,29 @@
+package com.lat.be.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.lat.be.domain.PaymentAttempt;
+
+@Repository
+public interface PaymentAttemptRepository extends JpaRepository<PaymentAttempt, Long> {
+
+    /**
+     * Mọi URL thanh toán đã cấp cho các đơn hàng, mới nhất trước: [orderId, txnRef, transactionDate]
+     */
+    @Query("SELECT a.orderId, a.txnRef, a.transactionDate FROM PaymentAttempt a " +
+           "WHERE a.orderId IN :orderIds ORDER BY a.orderId, a.id DESC")
+    List<Object[]> findTxnRowsByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * Số tiền (VND) đã ký trong URL thanh toán của giao dịch
+     */
+    @Query("SELECT a.amount FROM PaymentAttempt a WHERE a.txnRef = :txnRef")
+    Optional<Long> findAmountByTxnRef(@Param("txnRef") String txnRef);
+}
@@ -0,0 +1,27 @@
+package com.lat.be.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.lat.be.domain.PaymentEvent;
+import com.lat.be.domain.enumeration.PaymentEventStatus;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PaymentEventRepository extends JpaRepository<PaymentEvent, Long> {
+    Optional<PaymentEvent> findByTxnRef(String txnRef);
+
+    /**
+     * Sự kiện còn chờ xử lý được ghi trước thời điểm cho trước (để xếp lại vào hàng đợi): [id, orderId]
+     */
+    @Query("SELECT e.id, e.orderId FROM PaymentEvent e WHERE e.status = :status AND e.createdAt < :before ORDER BY e.id")
+    List<Object[]> findIdsByStatusBefore(@Param("status") PaymentEventStatus status,
+                                         @Param("before") Instant before,
+                                         Pageable pageable);
+}
@@ -4,19 +4,85 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.lat.be.domain.Product;
 import com.lat.be.domain.Category;
 import com.lat.be.domain.Supplier;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product>,
+        ProductRepositoryCustom {
     List<Product> findByCategory(Category category);
     List<Product> findBySupplier(Supplier supplier);
     Product findByName(String name);
     boolean existsByName(String name);
     Page<Product> findAll(Pageable pageable);
+
+    /**
+     * Dữ liệu dựng chỉ mục tìm kiếm theo ID tăng dần: [id, name, description]
+     */
+    @Query("SELECT p.id, p.name, p.description FROM Product p WHERE p.id > :afterId ORDER BY p.id")
+    List<Object[]> findSearchDocumentsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT p.id, p.name, p.description FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findSearchDocumentsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT p.id, p.name, p.image FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findNameAndImageByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Thẻ sản phẩm theo danh mục: [id, name, sellPrice, image, status, categoryName, supplierName]
+     */
+    @Query("SELECT p.id, p.name, p.sellPrice, p.image, p.status, c.name, s.name " +
+           "FROM Product p LEFT JOIN p.category c LEFT JOIN p.supplier s WHERE c.id = :categoryId")
+    List<Object[]> findCardRowsByCategoryId(@Param("categoryId") Long categoryId);
+
+    /**
+     * Thẻ sản phẩm theo nhà cung cấp: [id, name, sellPrice, image, status, categoryName, supplierName]
+     */
+    @Query("SELECT p.id, p.name, p.sellPrice, p.image, p.status, c.name, s.name " +
+           "FROM Product p LEFT JOIN p.category c LEFT JOIN p.supplier s WHERE s.id = :supplierId")
+    List<Object[]> findCardRowsBySupplierId(@Param("supplierId") Long supplierId);
+
+    /**
+     * Thẻ sản phẩm theo danh sách ID (không theo thứ tự): [id, name, sellPrice, image, status, categoryName, supplierName]
+     */
+    @Query("SELECT p.id, p.name, p.sellPrice, p.image, p.status, c.name, s.name " +
+           "FROM Product p LEFT JOIN p.category c LEFT JOIN p.supplier s WHERE p.id IN :ids")
+    List<Object[]> findCardRowsByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Trừ tồn kho có điều kiện: chỉ trừ khi còn đủ hàng và chuyển sang OUT_OF_STOCK
+     * trong cùng câu lệnh khi số lượng về 0.
+     * Gán status trước quantity vì MySQL đánh giá SET từ trái sang phải.
+     * @return 1 nếu trừ thành công, 0 nếu không đủ hàng
+     */
+    @Modifying
+    @Query("UPDATE Product p SET " +
+           "p.status = CASE WHEN p.quantity = :quantity " +
+           "THEN com.lat.be.domain.enumeration.ProductStatus.OUT_OF_STOCK ELSE p.status END, " +
+           "p.quantity = p.quantity - :quantity, " +
+           "p.updatedAt = :now " +
+           "WHERE p.id = :productId AND p.quantity >= :quantity")
+    int decrementStock(@Param("productId") Long productId, @Param("quantity") int quantity, @Param("now") Instant now);
+
+    /**
+     * Trả lại số lượng vào kho, sản phẩm đang OUT_OF_STOCK được mở bán lại.
+     */
+    @Modifying
+    @Query("UPDATE Product p SET " +
+           "p.status = CASE WHEN p.status = com.lat.be.domain.enumeration.ProductStatus.OUT_OF_STOCK " +
+           "THEN com.lat.be.domain.enumeration.ProductStatus.ACTIVE ELSE p.status END, " +
+           "p.quantity = p.quantity + :quantity, " +
+           "p.updatedAt = :now " +
+           "WHERE p.id = :productId")
+    int releaseStock(@Param("productId") Long productId, @Param("quantity") int quantity, @Param("now") Instant now);
 } 
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.lat.be.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.lat.be.domain.Product;
+
+public interface ProductRepositoryCustom {
+    /**
+     * Trừ tồn kho có điều kiện cho nhiều sản phẩm trong một JDBC batch.
+     * @param quantities số lượng cần trừ theo ID sản phẩm
+     * @return danh sách ID sản phẩm không đủ hàng (rỗng nếu tất cả thành công)
+     */
+    List<Long> decrementStockBatch(Map<Long, Integer> quantities, Instant now);
+
+    /**
+     * Gọi ngay sau khi cập nhật tồn kho, trong cùng giao dịch (dòng sản phẩm vẫn đang bị khóa).
+     * @param changes số lượng vừa cộng (dương) hoặc vừa trừ (âm) theo ID sản phẩm
+     * @return các sản phẩm có số lượng vừa về 0 hoặc vừa rời khỏi 0
+     */
+    Set<Long> findStockCrossedZero(Map<Long, Integer> changes);
+
+    /**
+     * Trang thẻ sản phẩm theo bộ lọc, chỉ chọn các cột cần hiển thị:
+     * [id, name, sellPrice, image, status, categoryName, supplierName]
+     */
+    Page<Object[]> findCardRows(Specification<Product> spec, Pageable pageable);
+
+    /**
+     * Tối đa limit dòng thẻ sản phẩm theo bộ lọc và thứ tự, không đếm tổng (dùng cho phân trang con trỏ)
+     */
+    List<Object[]> findCardRows(Specification<Product> spec, Sort sort, int limit);
+}
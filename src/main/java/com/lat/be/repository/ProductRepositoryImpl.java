@@ -0,0 +1,140 @@
+package com.lat.be.repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.lat.be.domain.Category;
+import com.lat.be.domain.Product;
+import com.lat.be.domain.Supplier;
+import com.lat.be.domain.enumeration.ProductStatus;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+    // Cùng ngữ nghĩa với ProductRepository.decrementStock, status được gán trước quantity
+    private static final String DECREMENT_STOCK_SQL =
+            "UPDATE products SET " +
+            "status = CASE WHEN quantity = ? THEN ? ELSE status END, " +
+            "quantity = quantity - ?, " +
+            "updated_at = ? " +
+            "WHERE id = ? AND quantity >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+
+    @Override
+    public List<Long> decrementStockBatch(Map<Long, Integer> quantities, Instant now) {
+        List<Long> productIds = new ArrayList<>(quantities.keySet());
+        Timestamp updatedAt = Timestamp.from(now);
+        List<Object[]> args = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            int quantity = quantities.get(productId);
+            args.add(new Object[] {
+                    quantity, ProductStatus.OUT_OF_STOCK.name(), quantity, updatedAt, productId, quantity
+            });
+        }
+
+        int[] updateCounts = this.jdbcTemplate.batchUpdate(DECREMENT_STOCK_SQL, args);
+
+        List<Long> insufficient = new ArrayList<>();
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == 0) {
+                insufficient.add(productIds.get(i));
+            }
+        }
+        return insufficient;
+    }
+
+    @Override
+    public Set<Long> findStockCrossedZero(Map<Long, Integer> changes) {
+        Set<Long> crossed = new TreeSet<>();
+        if (changes.isEmpty()) {
+            return crossed;
+        }
+        List<Object[]> rows = this.entityManager.createQuery(
+                "SELECT p.id, p.quantity FROM Product p WHERE p.id IN :ids", Object[].class)
+                .setParameter("ids", changes.keySet())
+                .getResultList();
+        for (Object[] row : rows) {
+            int quantity = ((Number) row[1]).intValue();
+            int change = changes.get((Long) row[0]);
+            // Trừ: giờ bằng 0; cộng: trước đó bằng 0
+            if ((change < 0 && quantity == 0) || (change > 0 && quantity == change)) {
+                crossed.add((Long) row[0]);
+            }
+        }
+        return crossed;
+    }
+
+    @Override
+    public Page<Object[]> findCardRows(Specification<Product> spec, Pageable pageable) {
+        TypedQuery<Object[]> query = this.entityManager.createQuery(cardQuery(spec, pageable.getSort()));
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        // Bỏ qua câu COUNT khi trang hiện tại đã cho biết tổng số dòng
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(spec));
+    }
+
+    @Override
+    public List<Object[]> findCardRows(Specification<Product> spec, Sort sort, int limit) {
+        return this.entityManager.createQuery(cardQuery(spec, sort))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private CriteriaQuery<Object[]> cardQuery(Specification<Product> spec, Sort sort) {
+        CriteriaBuilder cb = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<Product> root = query.from(Product.class);
+        Join<Product, Category> category = root.join("category", JoinType.LEFT);
+        Join<Product, Supplier> supplier = root.join("supplier", JoinType.LEFT);
+        query.multiselect(root.get("id"), root.get("name"), root.get("sellPrice"), root.get("image"),
+                root.get("status"), category.get("name"), supplier.get("name"));
+
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return query;
+    }
+
+    private long count(Specification<Product> spec) {
+        CriteriaBuilder cb = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Product> root = query.from(Product.class);
+        query.select(cb.count(root));
+
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return this.entityManager.createQuery(query).getSingleResult();
+    }
+}
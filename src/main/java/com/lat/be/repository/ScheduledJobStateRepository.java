@@ -0,0 +1,45 @@
+package com.lat.be.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.lat.be.domain.ScheduledJobState;
+
+import java.time.Instant;
+
+@Repository
+public interface ScheduledJobStateRepository extends JpaRepository<ScheduledJobState, String> {
+
+    /**
+     * Nhận (hoặc gia hạn) khóa thuê của tác vụ nếu đang trống, đã hết hạn hoặc do chính owner giữ
+     * @return 1 nếu nhận được khóa
+     */
+    @Modifying
+    @Query("UPDATE ScheduledJobState s SET s.lockedBy = :owner, s.lockedUntil = :until, s.updatedAt = :now " +
+           "WHERE s.name = :name AND (s.lockedUntil IS NULL OR s.lockedUntil < :now OR s.lockedBy = :owner)")
+    int tryLock(@Param("name") String name,
+                @Param("owner") String owner,
+                @Param("until") Instant until,
+                @Param("now") Instant now);
+
+    @Modifying
+    @Query("UPDATE ScheduledJobState s SET s.lockedBy = NULL, s.lockedUntil = NULL, s.updatedAt = :now " +
+           "WHERE s.name = :name AND s.lockedBy = :owner")
+    int unlock(@Param("name") String name, @Param("owner") String owner, @Param("now") Instant now);
+
+    /**
+     * Lưu checkpoint và gia hạn khóa, chỉ khi owner vẫn đang giữ khóa
+     * @return 0 nếu khóa đã bị instance khác lấy (lần chạy hiện tại phải dừng)
+     */
+    @Modifying
+    @Query("UPDATE ScheduledJobState s SET s.checkpoint = :checkpoint, s.lockedUntil = :until, s.updatedAt = :now " +
+           "WHERE s.name = :name AND s.lockedBy = :owner")
+    int saveCheckpoint(@Param("name") String name,
+                       @Param("owner") String owner,
+                       @Param("checkpoint") long checkpoint,
+                       @Param("until") Instant until,
+                       @Param("now") Instant now);
+}
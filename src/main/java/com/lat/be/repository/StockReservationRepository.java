@@ -0,0 +1,51 @@
+package com.lat.be.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.lat.be.domain.StockReservation;
+import com.lat.be.domain.enumeration.ReservationStatus;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    /**
+     * Lấy một lô giữ hàng đã hết hạn và khóa lại; bỏ qua các dòng đang bị giao dịch khác khóa
+     * (lock.timeout = -2 tương ứng SKIP LOCKED) để nhiều instance có thể quét song song.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT r FROM StockReservation r WHERE r.status = :status AND r.expiresAt < :now ORDER BY r.expiresAt")
+    List<StockReservation> findExpiredForUpdate(@Param("status") ReservationStatus status,
+                                                @Param("now") Instant now,
+                                                Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockReservation r WHERE r.order.id = :orderId ORDER BY r.product.id")
+    List<StockReservation> findByOrderIdForUpdate(@Param("orderId") Long orderId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockReservation r WHERE r.order.id IN :orderIds ORDER BY r.id")
+    List<StockReservation> findByOrderIdsForUpdate(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.status = :newStatus, r.updatedAt = :now " +
+           "WHERE r.id IN :ids AND r.status IN :currentStatuses")
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("currentStatuses") Collection<ReservationStatus> currentStatuses,
+                     @Param("newStatus") ReservationStatus newStatus,
+                     @Param("now") Instant now);
+}
@@ -1,12 +1,16 @@
 package com.lat.be.repository;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
+
 import com.lat.be.domain.SupplierCategory;
 import com.lat.be.domain.Supplier;
 import com.lat.be.domain.Category;
@@ -15,8 +19,11 @@ import java.util.List;
 
 @Repository
 public interface SupplierCategoryRepository extends JpaRepository<SupplierCategory, Long>, JpaSpecificationExecutor<SupplierCategory> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<SupplierCategory> findBySupplier(Supplier supplier);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<SupplierCategory> findByCategory(Category category);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     SupplierCategory findBySupplierAndCategory(Supplier supplier, Category category);
     
     @Modifying
@@ -11,5 +11,5 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
     User findByEmail(String email);
     boolean existsByEmail(String email);
 
-    User findByRefreshTokenAndEmail(String token, String email);
+    User findByRefreshTokenHash(String refreshTokenHash);
 }
@@ -4,14 +4,21 @@ import com.lat.be.domain.Cart;
 import com.lat.be.domain.CartDetail;
 import com.lat.be.domain.Product;
 import com.lat.be.domain.User;
+import com.lat.be.domain.request.BulkCartDTO;
+import com.lat.be.domain.response.BulkCartResultDTO;
 import com.lat.be.repository.CartDetailRepository;
 import com.lat.be.repository.CartRepository;
-import com.lat.be.repository.ProductRepository;
+import com.lat.be.util.constant.CartAction;
+import com.lat.be.util.error.IdInvalidException;
 
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.stereotype.Service;
@@ -22,8 +29,10 @@ import org.springframework.transaction.annotation.Transactional;
 public class CartService {
     private final CartRepository cartRepository;
     private final CartDetailRepository cartDetailRepository;
-    private final ProductRepository productRepository;
     private final UserService userService;
+    private final ProductService productService;
+    private final CartStore cartStore;
+    private final GuestCartStore guestCartStore;
 
     @Transactional
     public Cart getCurrentUserCart() {
@@ -41,84 +50,268 @@ public class CartService {
         return userCart.get();
     }
 
-    @Transactional
+    /**
+     * Thêm sản phẩm vào giỏ hàng. Chỉ cập nhật giỏ trong bộ nhớ (CartStore); dòng mới chưa được ghi
+     * trả về kèm ID tạm, dùng được cho các API sửa / xóa dòng
+     */
     public CartDetail addProductToCart(Long productId, int quantity) {
         if (quantity <= 0) {
             throw new IllegalArgumentException("Số lượng sản phẩm phải lớn hơn 0");
         }
         
-        // Lấy giỏ hàng hiện tại
-        Cart cart = getCurrentUserCart();
-        
         // Lấy thông tin sản phẩm
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy sản phẩm với ID: " + productId));
+        Product product = findProduct(productId);
         
         // Kiểm tra số lượng tồn kho
         if (product.getQuantity() < quantity) {
             throw new IllegalArgumentException("Số lượng sản phẩm trong kho không đủ");
         }
         
-        // Kiểm tra xem sản phẩm đã có trong giỏ hàng chưa
-        CartDetail existingItem = cartDetailRepository.findByCartAndProduct(cart, product);
-        
-        if (existingItem != null) {
-            // Nếu sản phẩm đã có trong giỏ hàng, cập nhật số lượng
-            existingItem.setQuantity(existingItem.getQuantity() + quantity);
-            return cartDetailRepository.save(existingItem);
-        } else {
-            // Nếu sản phẩm chưa có trong giỏ hàng, thêm mới
-            CartDetail newDetail = CartDetail.builder()
-                    .cart(cart)
-                    .product(product)
-                    .quantity(quantity)
-                    .build();
-            return cartDetailRepository.save(newDetail);
-        }
+        // Cộng dồn nếu sản phẩm đã có trong giỏ hàng, ngược lại thêm mới
+        CartStore.CartLine line = this.cartStore.add(this.userService.getCurrentPrincipal().getId(), productId, quantity);
+        return toCartDetail(line, product);
     }
 
-    @Transactional
     public CartDetail updateCartItemQuantity(Long cartDetailId, int quantity) {
         if (quantity < 0) {
             throw new IllegalArgumentException("Số lượng sản phẩm không thể âm");
         }
         
-        CartDetail cartDetail = this.cartDetailRepository.findById(cartDetailId)
-                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy chi tiết giỏ hàng với ID: " + cartDetailId));
+        Long userId = this.userService.getCurrentPrincipal().getId();
+        Long productId = this.cartStore.findProductId(userId, cartDetailId);
+        if (productId == null) {
+            throw new EntityNotFoundException("Không tìm thấy chi tiết giỏ hàng với ID: " + cartDetailId);
+        }
         
         // Kiểm tra số lượng tồn kho
-        if (cartDetail.getProduct().getQuantity() < quantity) {
+        Product product = findProduct(productId);
+        if (product.getQuantity() < quantity) {
             throw new IllegalArgumentException("Số lượng sản phẩm trong kho không đủ");
         }
         
+        // Số lượng = 0 thì xóa sản phẩm khỏi giỏ hàng
+        CartStore.CartLine line = this.cartStore.setQuantity(userId, cartDetailId, quantity);
+        if (line == null) {
+            throw new EntityNotFoundException("Không tìm thấy chi tiết giỏ hàng với ID: " + cartDetailId);
+        }
+        return quantity == 0 ? null : toCartDetail(line, product);
+    }
+
+    public void removeCartItem(Long cartDetailId) {
+        if (!this.cartStore.remove(this.userService.getCurrentPrincipal().getId(), cartDetailId)) {
+            throw new EntityNotFoundException("Không tìm thấy chi tiết giỏ hàng với ID: " + cartDetailId);
+        }
+    }
+
+    /**
+     * Thêm / đặt / xóa nhiều dòng trong một lần gọi: tải sản phẩm bằng một truy vấn IN, kiểm tra tồn kho
+     * trong một lượt và ghi các dòng hợp lệ thành một lô. Dòng lỗi không làm hỏng các dòng khác.
+     */
+    public BulkCartResultDTO applyBulk(List<BulkCartDTO.Item> items) {
+        Long userId = this.userService.getCurrentPrincipal().getId();
+        List<Long> productIds = items.stream().map(BulkCartDTO.Item::getProductId).distinct().toList();
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : this.productService.getPublicByIds(productIds)) {
+            products.put(product.getId(), product);
+        }
+        Map<Long, Integer> current = this.cartStore.getQuantities(userId);
+
+        // Số lượng cuối cùng theo sản phẩm sau khi áp dụng lần lượt các dòng hợp lệ
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        List<BulkCartResultDTO.LineResult> results = new ArrayList<>(items.size());
+        int failed = 0;
+        for (BulkCartDTO.Item item : items) {
+            Long productId = item.getProductId();
+            int before = quantities.getOrDefault(productId, current.getOrDefault(productId, 0));
+            Product product = products.get(productId);
+            String error = null;
+            int after = 0;
+
+            if (item.getAction() == CartAction.REMOVE) {
+                after = 0;
+            } else if (product == null) {
+                error = "Không tìm thấy sản phẩm với ID: " + productId;
+            } else if (item.getAction() == CartAction.ADD && item.getQuantity() <= 0) {
+                error = "Số lượng sản phẩm phải lớn hơn 0";
+            } else {
+                after = item.getAction() == CartAction.ADD ? before + item.getQuantity() : item.getQuantity();
+                if (product.getQuantity() < after) {
+                    error = "Số lượng sản phẩm trong kho không đủ";
+                }
+            }
+
+            if (error != null) {
+                failed++;
+                after = before;
+            } else {
+                quantities.put(productId, after);
+            }
+            results.add(BulkCartResultDTO.LineResult.builder()
+                    .productId(productId)
+                    .action(item.getAction())
+                    .success(error == null)
+                    .quantity(after)
+                    .message(error)
+                    .build());
+        }
+
+        if (!quantities.isEmpty()) {
+            this.cartStore.setQuantities(userId, quantities);
+        }
+        return BulkCartResultDTO.builder()
+                .succeeded(items.size() - failed)
+                .failed(failed)
+                .results(results)
+                .build();
+    }
+
+    /**
+     * Token còn trỏ tới giỏ của khách hay không (không tạo giỏ mới)
+     */
+    public boolean hasGuestCart(String token) {
+        return this.guestCartStore.exists(token);
+    }
+
+    /**
+     * Token của giỏ hiện có, hoặc giỏ mới nếu token không còn hiệu lực; chỉ gọi khi thêm sản phẩm
+     * @throws IllegalStateException nếu không còn chỗ cho giỏ mới
+     */
+    public String ensureGuestCart(String token) {
+        return this.guestCartStore.exists(token) ? token : this.guestCartStore.create();
+    }
+
+    public long getGuestCartTtlSeconds() {
+        return this.guestCartStore.getTtlSeconds();
+    }
+
+    public List<CartDetail> getGuestCartItems(String token) {
+        Map<Long, Integer> lines = this.guestCartStore.getLines(token);
+        if (lines == null || lines.isEmpty()) {
+            return List.of();
+        }
+        List<CartDetail> items = new ArrayList<>(lines.size());
+        for (Product product : this.productService.getPublicByIds(new ArrayList<>(lines.keySet()))) {
+            items.add(CartDetail.builder()
+                    .product(product)
+                    .quantity(lines.get(product.getId()))
+                    .build());
+        }
+        return items;
+    }
+
+    public CartDetail addProductToGuestCart(String token, Long productId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Số lượng sản phẩm phải lớn hơn 0");
+        }
+        Map<Long, Integer> lines = this.guestCartStore.getLines(token);
+        if (lines == null) {
+            throw new EntityNotFoundException("Giỏ hàng đã hết hạn");
+        }
+        return setGuestQuantity(token, productId, lines.getOrDefault(productId, 0) + quantity);
+    }
+
+    public CartDetail updateGuestCartItemQuantity(String token, Long productId, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Số lượng sản phẩm không thể âm");
+        }
+        Map<Long, Integer> lines = this.guestCartStore.getLines(token);
+        if (lines == null || !lines.containsKey(productId)) {
+            throw new EntityNotFoundException("Không tìm thấy sản phẩm với ID: " + productId + " trong giỏ hàng");
+        }
         if (quantity == 0) {
-            // Nếu số lượng = 0, xóa sản phẩm khỏi giỏ hàng
-            this.cartDetailRepository.delete(cartDetail);
+            removeGuestCartItem(token, productId);
             return null;
-        } else {
-            // Cập nhật số lượng
-            cartDetail.setQuantity(quantity);
-            return cartDetailRepository.save(cartDetail);
         }
+        return setGuestQuantity(token, productId, quantity);
     }
 
-    @Transactional
-    public void removeCartItem(Long cartDetailId) {
-        CartDetail cartDetail = cartDetailRepository.findById(cartDetailId)
-                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy chi tiết giỏ hàng với ID: " + cartDetailId));
-        
-        this.cartDetailRepository.delete(cartDetail);
+    public void removeGuestCartItem(String token, Long productId) {
+        this.guestCartStore.setQuantity(token, productId, 0);
+    }
+
+    public void clearGuestCart(String token) {
+        this.guestCartStore.clear(token);
+    }
+
+    private CartDetail setGuestQuantity(String token, Long productId, int quantity) {
+        Product product = findProduct(productId);
+        if (product.getQuantity() < quantity) {
+            throw new IllegalArgumentException("Số lượng sản phẩm trong kho không đủ");
+        }
+        if (!this.guestCartStore.setQuantity(token, productId, quantity)) {
+            throw new EntityNotFoundException("Giỏ hàng đã hết hạn");
+        }
+        return CartDetail.builder().product(product).quantity(quantity).build();
+    }
+
+    /**
+     * Gộp giỏ khách vào giỏ của người dùng khi đăng nhập: cộng dồn số lượng (không vượt tồn kho),
+     * bỏ sản phẩm không còn tồn tại và ghi xuống CSDL trong một lô
+     */
+    public void mergeGuestCart(Long userId, String token) {
+        Map<Long, Integer> lines = this.guestCartStore.remove(token);
+        if (lines == null || lines.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        Map<Long, Integer> stock = new HashMap<>();
+        for (Product product : this.productService.getPublicByIds(new ArrayList<>(lines.keySet()))) {
+            quantities.put(product.getId(), lines.get(product.getId()));
+            stock.put(product.getId(), product.getQuantity());
+        }
+        if (!quantities.isEmpty()) {
+            this.cartStore.addQuantities(userId, quantities, stock);
+            this.cartStore.flush(userId);
+        }
+    }
+
+    private Product findProduct(Long productId) {
+        try {
+            return this.productService.getPublicById(productId);
+        } catch (IdInvalidException e) {
+            throw new EntityNotFoundException("Không tìm thấy sản phẩm với ID: " + productId);
+        }
     }
 
+    private CartDetail toCartDetail(CartStore.CartLine line, Product product) {
+        return CartDetail.builder()
+                .id(line.getDetailId())
+                .cart(line.getCartId() != null ? Cart.builder().id(line.getCartId()).build() : null)
+                .product(product)
+                .quantity(line.getQuantity())
+                .build();
+    }
+
+    /**
+     * Ghi các thay đổi còn trong bộ nhớ của giỏ người dùng hiện tại. Gọi trước khi mở giao dịch tạo đơn hàng:
+     * việc ghi chạy trong giao dịch riêng, nếu chạy bên trong giao dịch tạo đơn thì mỗi lần thanh toán giữ hai kết nối.
+     */
+    public void flushCurrentCart() {
+        this.cartStore.flush(this.userService.getCurrentPrincipal().getId());
+    }
+
+    // Ghi các thay đổi còn trong bộ nhớ trước khi đọc giỏ từ CSDL (khi đã ghi từ trước thì không làm gì)
     public List<CartDetail> getCartItems() {
-        Cart cart = getCurrentUserCart();
-        return this.cartDetailRepository.findByCart(cart);
+        Long userId = this.userService.getCurrentPrincipal().getId();
+        this.cartStore.flush(userId);
+        return this.cartRepository.findIdByUserId(userId)
+                .map(this.cartDetailRepository::findWithProductByCartId)
+                .orElse(List.of());
     }
 
     @Transactional
     public void clearCart() {
-        Cart cart = getCurrentUserCart();
-        List<CartDetail> cartDetails = cartDetailRepository.findByCart(cart);
-        this.cartDetailRepository.deleteAll(cartDetails);
+        Long userId = this.userService.getCurrentPrincipal().getId();
+        this.cartStore.evict(userId);
+        this.cartRepository.findIdByUserId(userId).ifPresent(this.cartDetailRepository::deleteAllByCartId);
+    }
+
+    /**
+     * Xóa toàn bộ dòng của giỏ đã biết ID (khi tạo đơn hàng) bằng một câu DELETE
+     */
+    @Transactional
+    public void clearCart(Long cartId) {
+        this.cartStore.evict(this.userService.getCurrentPrincipal().getId());
+        this.cartDetailRepository.deleteAllByCartId(cartId);
     }
 } 
\ No newline at end of file
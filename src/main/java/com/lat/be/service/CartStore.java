@@ -0,0 +1,632 @@
+package com.lat.be.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.lat.be.domain.Cart;
+import com.lat.be.domain.CartDetail;
+import com.lat.be.repository.CartDetailRepository;
+import com.lat.be.repository.CartRepository;
+import com.lat.be.repository.ProductRepository;
+import com.lat.be.repository.UserRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Giỏ hàng đang hoạt động giữ trong bộ nhớ theo người dùng, ghi xuống CSDL kiểu write-behind.
+ * Sửa / xóa chỉ cập nhật bộ nhớ; các giỏ có thay đổi được ghi vào cart_details theo lô định kỳ,
+ * khi xem giỏ hàng, khi thanh toán và khi tắt ứng dụng. Dòng mới cũng chờ lần ghi theo lô: trong lúc chưa ghi,
+ * dòng nhận ID tạm (số âm) để client sửa / xóa dòng; ID tạm vẫn dùng được sau khi ghi cho đến khi giỏ bị bỏ khỏi
+ * bộ nhớ, còn xem giỏ hàng luôn trả về ID thật. Số giỏ trong bộ nhớ có giới hạn, giỏ lâu không dùng
+ * nhất bị đẩy ra (LRU); nếu còn thay đổi chưa ghi thì được giữ lại đến lần ghi kế tiếp.
+ * Chỉ đúng khi một instance phục vụ giỏ hàng: chạy nhiều instance thì tắt cart.write-behind.enabled
+ * để mọi thay đổi được ghi ngay.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CartStore {
+    private final CartRepository cartRepository;
+    private final CartDetailRepository cartDetailRepository;
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${cart.write-behind.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cart.write-behind.max-carts:10000}")
+    private int maxCarts;
+
+    @Value("${cart.write-behind.batch-size:100}")
+    private int batchSize;
+
+    // Thứ tự truy cập để đẩy giỏ ít dùng nhất; mọi truy cập đều qua lruLock
+    private final LinkedHashMap<Long, CartState> carts = new LinkedHashMap<>(16, 0.75f, true);
+    private final Object lruLock = new Object();
+    // ID tạm của dòng chưa ghi, duy nhất trong cả instance
+    private final AtomicLong provisionalIds = new AtomicLong();
+    // Giỏ đã bị đẩy khỏi LRU nhưng còn thay đổi chưa ghi
+    private final Map<Long, CartState> evicted = new ConcurrentHashMap<>();
+
+    private TransactionTemplate writeTemplate;
+
+    @PostConstruct
+    void init() {
+        // Ghi trong giao dịch riêng để không bị hủy theo giao dịch của request (ví dụ khi tạo đơn thất bại)
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        this.writeTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Dòng giỏ hàng sau khi thay đổi; detailId là ID tạm (số âm) nếu dòng chưa được ghi, null khi dòng đã bị xóa
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class CartLine {
+        private final Long cartId;
+        private final Long detailId;
+        private final Long productId;
+        private final int quantity;
+    }
+
+    private static final class Line {
+        Long detailId;
+        // Chỉ có ở dòng được tạo trong bộ nhớ
+        final Long provisionalId;
+        int quantity;
+        boolean dirty;
+
+        Line(Long detailId, Long provisionalId, int quantity, boolean dirty) {
+            this.detailId = detailId;
+            this.provisionalId = provisionalId;
+            this.quantity = quantity;
+            this.dirty = dirty;
+        }
+
+        Long id() {
+            return this.detailId != null ? this.detailId : this.provisionalId;
+        }
+    }
+
+    private static final class CartState {
+        final Long userId;
+        Long cartId;
+        // productId -> dòng
+        final Map<Long, Line> lines = new LinkedHashMap<>();
+        final List<Long> removedDetailIds = new ArrayList<>();
+        boolean dirty;
+        // Đã bị bỏ khỏi bộ nhớ: thao tác mới phải nạp lại giỏ
+        boolean detached;
+        // Các lần ghi của cùng một giỏ chạy tuần tự để một dòng mới không bị INSERT hai lần
+        final ReentrantLock writeLock = new ReentrantLock();
+
+        CartState(Long userId, Long cartId) {
+            this.userId = userId;
+            this.cartId = cartId;
+        }
+    }
+
+    // Thay đổi của một giỏ được lấy ra để ghi trong một lô
+    private static final class PendingWrite {
+        final CartState state;
+        final Long userId;
+        Long cartId;
+        final Map<Long, Integer> inserts = new HashMap<>();      // productId -> quantity
+        final Map<Long, Integer> updates = new HashMap<>();      // detailId -> quantity
+        final Map<Long, Long> updatedProducts = new HashMap<>(); // detailId -> productId
+        final List<Long> deletes;
+        final Map<Long, Long> insertedIds = new HashMap<>();     // productId -> detailId mới
+
+        PendingWrite(CartState state, List<Long> deletes) {
+            this.state = state;
+            this.userId = state.userId;
+            this.cartId = state.cartId;
+            this.deletes = deletes;
+        }
+    }
+
+    /**
+     * Cộng thêm số lượng sản phẩm vào giỏ của người dùng
+     */
+    public CartLine add(Long userId, Long productId, int quantity) {
+        while (true) {
+            CartState state = get(userId);
+            synchronized (state) {
+                if (state.detached) {
+                    continue;
+                }
+                Line line = state.lines.get(productId);
+                if (line == null) {
+                    line = newLine();
+                    state.lines.put(productId, line);
+                }
+                line.quantity += quantity;
+                line.dirty = true;
+                state.dirty = true;
+            }
+            afterMutation(state);
+            return view(state, productId);
+        }
+    }
+
+    /**
+     * Sản phẩm của dòng giỏ hàng có ID cho trước, null nếu dòng không thuộc giỏ của người dùng
+     */
+    public Long findProductId(Long userId, Long detailId) {
+        CartState state = get(userId);
+        synchronized (state) {
+            return findByDetailId(state, detailId);
+        }
+    }
+
+    /**
+     * Đặt số lượng cho dòng giỏ hàng (0 là xóa dòng); trả về null nếu dòng không thuộc giỏ của người dùng
+     */
+    public CartLine setQuantity(Long userId, Long detailId, int quantity) {
+        while (true) {
+            CartState state = get(userId);
+            Long productId;
+            synchronized (state) {
+                if (state.detached) {
+                    continue;
+                }
+                productId = findByDetailId(state, detailId);
+                if (productId == null) {
+                    return null;
+                }
+                Line line = state.lines.get(productId);
+                if (quantity == 0) {
+                    state.lines.remove(productId);
+                    if (line.detailId != null) {
+                        state.removedDetailIds.add(line.detailId);
+                    }
+                } else {
+                    line.quantity = quantity;
+                    line.dirty = true;
+                }
+                state.dirty = true;
+            }
+            afterMutation(state);
+            return quantity == 0 ? new CartLine(state.cartId, detailId, productId, 0) : view(state, productId);
+        }
+    }
+
+    /**
+     * Số lượng hiện có trong giỏ của người dùng theo sản phẩm
+     */
+    public Map<Long, Integer> getQuantities(Long userId) {
+        CartState state = get(userId);
+        synchronized (state) {
+            Map<Long, Integer> quantities = new HashMap<>();
+            for (Map.Entry<Long, Line> entry : state.lines.entrySet()) {
+                quantities.put(entry.getKey(), entry.getValue().quantity);
+            }
+            return quantities;
+        }
+    }
+
+    /**
+     * Đặt số lượng cuối cùng cho nhiều sản phẩm trong một lần khóa và một lần ghi (0 là xóa dòng)
+     */
+    public void setQuantities(Long userId, Map<Long, Integer> quantities) {
+        while (true) {
+            CartState state = get(userId);
+            synchronized (state) {
+                if (state.detached) {
+                    continue;
+                }
+                for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                    setProductQuantity(state, entry.getKey(), entry.getValue());
+                }
+            }
+            afterMutation(state);
+            return;
+        }
+    }
+
+    /**
+     * Cộng thêm số lượng cho nhiều sản phẩm trong một lần khóa; giới hạn tối đa theo maxQuantities nếu có
+     */
+    public void addQuantities(Long userId, Map<Long, Integer> quantities, Map<Long, Integer> maxQuantities) {
+        while (true) {
+            CartState state = get(userId);
+            synchronized (state) {
+                if (state.detached) {
+                    continue;
+                }
+                for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                    Line line = state.lines.get(entry.getKey());
+                    int quantity = (line != null ? line.quantity : 0) + entry.getValue();
+                    Integer max = maxQuantities.get(entry.getKey());
+                    setProductQuantity(state, entry.getKey(), max != null ? Math.min(quantity, max) : quantity);
+                }
+            }
+            afterMutation(state);
+            return;
+        }
+    }
+
+    /**
+     * Xóa dòng giỏ hàng; false nếu dòng không thuộc giỏ của người dùng
+     */
+    public boolean remove(Long userId, Long detailId) {
+        return setQuantity(userId, detailId, 0) != null;
+    }
+
+    /**
+     * Ghi ngay các thay đổi chưa ghi của giỏ người dùng (trước khi đọc giỏ từ CSDL hoặc thanh toán)
+     */
+    public void flush(Long userId) {
+        CartState state;
+        synchronized (lruLock) {
+            state = this.carts.get(userId);
+        }
+        if (state == null) {
+            state = this.evicted.get(userId);
+        }
+        if (state != null) {
+            flushStates(List.of(state), true);
+        }
+    }
+
+    /**
+     * Bỏ giỏ của người dùng khỏi bộ nhớ, kể cả thay đổi chưa ghi (dùng khi giỏ bị xóa trực tiếp trong CSDL)
+     */
+    public void evict(Long userId) {
+        CartState state;
+        synchronized (lruLock) {
+            state = this.carts.remove(userId);
+        }
+        CartState pending = this.evicted.remove(userId);
+        for (CartState s : new CartState[] { state, pending }) {
+            if (s != null) {
+                synchronized (s) {
+                    s.detached = true;
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.write-behind.flush-interval-ms:2000}")
+    public void flushDirty() {
+        List<CartState> dirty = new ArrayList<>();
+        synchronized (lruLock) {
+            for (CartState state : this.carts.values()) {
+                if (state.dirty) {
+                    dirty.add(state);
+                }
+            }
+        }
+        dirty.addAll(this.evicted.values());
+        for (int from = 0; from < dirty.size(); from += batchSize) {
+            flushStates(dirty.subList(from, Math.min(from + batchSize, dirty.size())), false);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushDirty();
+    }
+
+    private CartState get(Long userId) {
+        synchronized (lruLock) {
+            CartState state = this.carts.get(userId);
+            if (state == null) {
+                state = this.evicted.remove(userId);
+                if (state != null) {
+                    put(userId, state);
+                }
+            }
+            if (state != null) {
+                return state;
+            }
+        }
+
+        // Nạp từ CSDL ngoài khóa; nếu luồng khác đã nạp trước thì dùng bản đó
+        CartState loaded = load(userId);
+        synchronized (lruLock) {
+            CartState existing = this.carts.get(userId);
+            if (existing != null) {
+                return existing;
+            }
+            CartState pending = this.evicted.remove(userId);
+            CartState state = pending != null ? pending : loaded;
+            put(userId, state);
+            return state;
+        }
+    }
+
+    // Gọi khi đang giữ lruLock
+    private void put(Long userId, CartState state) {
+        this.carts.put(userId, state);
+        if (this.carts.size() <= maxCarts) {
+            return;
+        }
+        Iterator<CartState> eldest = this.carts.values().iterator();
+        CartState victim = eldest.next();
+        eldest.remove();
+        synchronized (victim) {
+            if (victim.dirty) {
+                this.evicted.put(victim.userId, victim);
+            } else {
+                victim.detached = true;
+            }
+        }
+    }
+
+    private CartState load(Long userId) {
+        Optional<Long> cartId = this.cartRepository.findIdByUserId(userId);
+        CartState state = new CartState(userId, cartId.orElse(null));
+        if (cartId.isPresent()) {
+            for (Object[] row : this.cartDetailRepository.findLinesByCartId(cartId.get())) {
+                Long detailId = (Long) row[0];
+                Long productId = (Long) row[1];
+                int quantity = row[2] != null ? (Integer) row[2] : 0;
+                Line existing = state.lines.get(productId);
+                if (existing == null) {
+                    state.lines.put(productId, new Line(detailId, null, quantity, false));
+                } else {
+                    // Gộp dòng trùng sản phẩm còn sót lại từ trước
+                    existing.quantity += quantity;
+                    existing.dirty = true;
+                    state.removedDetailIds.add(detailId);
+                    state.dirty = true;
+                }
+            }
+        }
+        return state;
+    }
+
+    private void afterMutation(CartState state) {
+        if (!enabled) {
+            // Chế độ ghi ngay: ghi đồng bộ và không giữ giỏ trong bộ nhớ
+            try {
+                flushStates(List.of(state), true);
+            } finally {
+                evict(state.userId);
+            }
+        }
+    }
+
+    private CartLine view(CartState state, Long productId) {
+        synchronized (state) {
+            Line line = state.lines.get(productId);
+            return line == null
+                    ? new CartLine(state.cartId, null, productId, 0)
+                    : new CartLine(state.cartId, line.id(), productId, line.quantity);
+        }
+    }
+
+    private Line newLine() {
+        return new Line(null, this.provisionalIds.decrementAndGet(), 0, true);
+    }
+
+    // Gọi khi đang giữ khóa của giỏ
+    private void setProductQuantity(CartState state, Long productId, int quantity) {
+        Line line = state.lines.get(productId);
+        if (quantity == 0) {
+            if (line != null) {
+                state.lines.remove(productId);
+                if (line.detailId != null) {
+                    state.removedDetailIds.add(line.detailId);
+                }
+                state.dirty = true;
+            }
+            return;
+        }
+        if (line == null) {
+            line = newLine();
+            state.lines.put(productId, line);
+        }
+        if (line.quantity != quantity || line.detailId == null) {
+            line.quantity = quantity;
+            line.dirty = true;
+            state.dirty = true;
+        }
+    }
+
+    // Tìm theo ID thật hoặc ID tạm của dòng
+    private static Long findByDetailId(CartState state, Long detailId) {
+        for (Map.Entry<Long, Line> entry : state.lines.entrySet()) {
+            Line line = entry.getValue();
+            if (detailId.equals(line.detailId) || detailId.equals(line.provisionalId)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Khóa theo từng giỏ: ghi theo yêu cầu (rethrow) chờ lần ghi đang chạy của chính giỏ đó,
+     * ghi theo lô bỏ qua giỏ đang được ghi ở luồng khác (giỏ còn thay đổi sẽ vào lô kế tiếp)
+     */
+    private void flushStates(List<CartState> states, boolean rethrow) {
+        List<CartState> locked = new ArrayList<>(states.size());
+        try {
+            for (CartState state : states) {
+                if (rethrow) {
+                    state.writeLock.lock();
+                } else if (!state.writeLock.tryLock()) {
+                    continue;
+                }
+                locked.add(state);
+            }
+            doFlush(locked, rethrow);
+        } finally {
+            for (CartState state : locked) {
+                state.writeLock.unlock();
+            }
+        }
+    }
+
+    private void doFlush(List<CartState> states, boolean rethrow) {
+        List<PendingWrite> pending = new ArrayList<>();
+        for (CartState state : states) {
+            PendingWrite write = takeChanges(state);
+            if (write != null) {
+                pending.add(write);
+            }
+        }
+        if (!pending.isEmpty()) {
+            try {
+                this.writeTemplate.executeWithoutResult(status -> write(pending));
+                for (PendingWrite write : pending) {
+                    applyWritten(write);
+                }
+            } catch (RuntimeException e) {
+                for (PendingWrite write : pending) {
+                    restore(write);
+                }
+                if (pending.size() > 1) {
+                    // Một giỏ lỗi không được làm hỏng cả lô: ghi lại từng giỏ
+                    for (PendingWrite write : pending) {
+                        doFlush(List.of(write.state), false);
+                    }
+                } else if (rethrow) {
+                    throw e;
+                } else {
+                    // CSDL là nguồn gốc: bỏ bản trong bộ nhớ để lần sau nạp lại
+                    log.error("Could not flush cart of user {}, discarding in-memory changes", pending.get(0).userId, e);
+                    evict(pending.get(0).userId);
+                }
+            }
+        }
+
+        // Giỏ đã bị đẩy khỏi LRU và đã ghi xong thì bỏ hẳn
+        for (CartState state : states) {
+            synchronized (state) {
+                if (!state.dirty && this.evicted.remove(state.userId, state)) {
+                    state.detached = true;
+                }
+            }
+        }
+    }
+
+    private PendingWrite takeChanges(CartState state) {
+        synchronized (state) {
+            if (!state.dirty || state.detached) {
+                return null;
+            }
+            PendingWrite write = new PendingWrite(state, new ArrayList<>(state.removedDetailIds));
+            for (Map.Entry<Long, Line> entry : state.lines.entrySet()) {
+                Line line = entry.getValue();
+                if (!line.dirty) {
+                    continue;
+                }
+                if (line.detailId == null) {
+                    write.inserts.put(entry.getKey(), line.quantity);
+                } else {
+                    write.updates.put(line.detailId, line.quantity);
+                    write.updatedProducts.put(line.detailId, entry.getKey());
+                }
+                line.dirty = false;
+            }
+            state.removedDetailIds.clear();
+            state.dirty = false;
+            return write;
+        }
+    }
+
+    private void write(List<PendingWrite> pending) {
+        List<CartDetail> inserts = new ArrayList<>();
+        List<PendingWrite> insertWrites = new ArrayList<>();
+        List<Long> insertProductIds = new ArrayList<>();
+        Map<Long, Integer> updates = new HashMap<>();
+        List<Long> deletes = new ArrayList<>();
+
+        for (PendingWrite write : pending) {
+            if (write.cartId == null && !write.inserts.isEmpty()) {
+                // Giỏ có thể đã được tạo ở nơi khác sau khi nạp vào bộ nhớ
+                write.cartId = this.cartRepository.findIdByUserId(write.userId)
+                        .orElseGet(() -> this.cartRepository.save(Cart.builder()
+                                .user(this.userRepository.getReferenceById(write.userId))
+                                .build()).getId());
+            }
+            for (Map.Entry<Long, Integer> entry : write.inserts.entrySet()) {
+                inserts.add(CartDetail.builder()
+                        .cart(this.cartRepository.getReferenceById(write.cartId))
+                        .product(this.productRepository.getReferenceById(entry.getKey()))
+                        .quantity(entry.getValue())
+                        .build());
+                insertWrites.add(write);
+                insertProductIds.add(entry.getKey());
+            }
+            updates.putAll(write.updates);
+            deletes.addAll(write.deletes);
+        }
+
+        if (!deletes.isEmpty()) {
+            this.cartDetailRepository.deleteAllByIdInBatch(deletes);
+        }
+        if (!updates.isEmpty()) {
+            // Một câu SELECT ... IN, các câu UPDATE được Hibernate gộp thành batch khi flush
+            for (CartDetail detail : this.cartDetailRepository.findAllById(updates.keySet())) {
+                detail.setQuantity(updates.get(detail.getId()));
+            }
+        }
+        if (!inserts.isEmpty()) {
+            List<CartDetail> saved = this.cartDetailRepository.saveAll(inserts);
+            for (int i = 0; i < saved.size(); i++) {
+                insertWrites.get(i).insertedIds.put(insertProductIds.get(i), saved.get(i).getId());
+            }
+        }
+    }
+
+    private void applyWritten(PendingWrite write) {
+        CartState state = write.state;
+        synchronized (state) {
+            state.cartId = write.cartId;
+            for (Map.Entry<Long, Long> entry : write.insertedIds.entrySet()) {
+                Line line = state.lines.get(entry.getKey());
+                if (line != null && line.detailId == null) {
+                    line.detailId = entry.getValue();
+                } else {
+                    // Dòng bị xóa trong lúc đang ghi: xóa nốt ở lần ghi sau
+                    state.removedDetailIds.add(entry.getValue());
+                    state.dirty = true;
+                }
+            }
+        }
+    }
+
+    private void restore(PendingWrite write) {
+        CartState state = write.state;
+        synchronized (state) {
+            state.removedDetailIds.addAll(write.deletes);
+            for (Long productId : write.inserts.keySet()) {
+                Line line = state.lines.get(productId);
+                if (line != null) {
+                    line.dirty = true;
+                }
+            }
+            for (Long productId : write.updatedProducts.values()) {
+                Line line = state.lines.get(productId);
+                if (line != null) {
+                    line.dirty = true;
+                }
+            }
+            state.dirty = true;
+        }
+    }
+}
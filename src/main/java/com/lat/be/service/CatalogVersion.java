@@ -0,0 +1,77 @@
+package com.lat.be.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.lat.be.domain.event.CatalogChangedEvent;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Bộ đếm phiên bản danh mục (sản phẩm, danh mục, nhà cung cấp), tăng sau mỗi giao dịch ghi đã commit.
+ * Dùng làm ETag / Last-Modified cho các API đọc công khai để trả 304 mà không cần truy vấn CSDL.
+ * Thay đổi tồn kho không làm sản phẩm hết / có hàng lại chỉ tăng phiên bản của trang chi tiết sản phẩm đó
+ * (thẻ sản phẩm không có số lượng), nên mỗi lần thanh toán không làm mất ETag của toàn bộ danh mục;
+ * các thay đổi khác (kể cả sửa mô tả, ảnh hưởng kết quả tìm kiếm) tăng phiên bản chung.
+ * Bộ đếm nằm trong bộ nhớ của từng instance; thời điểm khởi động được đưa vào ETag để ETag cũ không khớp sau khi khởi động lại.
+ */
+@Component
+public class CatalogVersion {
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private volatile Snapshot current = new Snapshot(0, System.currentTimeMillis(), "\"" + epoch + "-0\"");
+    // Thay đổi riêng của từng sản phẩm từ lần tăng phiên bản chung gần nhất
+    private final Map<Long, Snapshot> productChanges = new ConcurrentHashMap<>();
+    private long sequence;
+    private long lastIssued = this.current.getLastModified();
+
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+        private final long version;
+        private final long lastModified;
+        private final String eTag;
+    }
+
+    /**
+     * Phiên bản chung cho các API danh sách, danh mục và nhà cung cấp
+     */
+    public Snapshot current() {
+        return this.current;
+    }
+
+    /**
+     * Phiên bản của trang chi tiết sản phẩm: phiên bản chung cộng thay đổi riêng của sản phẩm đó
+     */
+    public Snapshot forProduct(Long productId) {
+        Snapshot listing = this.current;
+        Snapshot own = this.productChanges.get(productId);
+        if (own == null || own.getVersion() < listing.getVersion()) {
+            return listing;
+        }
+        return own;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onCatalogChanged(CatalogChangedEvent event) {
+        long version = ++this.sequence;
+        // Last-Modified chỉ chính xác tới giây nên luôn tăng ít nhất 1 giây để If-Modified-Since không bỏ sót thay đổi
+        long lastModified = Math.max(System.currentTimeMillis(), this.lastIssued + 1000);
+        this.lastIssued = lastModified;
+
+        if (event.getScope() != CatalogChangedEvent.Scope.STOCK || event.isListingChanged()) {
+            this.current = new Snapshot(version, lastModified, "\"" + epoch + "-" + version + "\"");
+            // Phiên bản chung mới hơn mọi thay đổi riêng đã ghi
+            this.productChanges.clear();
+            return;
+        }
+        String listingVersion = epoch + "-" + this.current.getVersion();
+        for (Long productId : event.getProductIds()) {
+            this.productChanges.put(productId,
+                    new Snapshot(version, lastModified, "\"" + listingVersion + "-p" + version + "\""));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.lat.be.service;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -8,6 +9,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.lat.be.domain.Category;
+import com.lat.be.domain.event.CatalogChangedEvent;
 import com.lat.be.domain.response.ResultPaginationDTO;
 import com.lat.be.repository.CategoryRepository;
 
@@ -20,6 +22,7 @@ import java.util.Optional;
 public class CategoryService {
     private final CategoryRepository categoryRepository;
     private final CloudinaryService cloudinaryService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public Category handleCreateCategory(Category category, MultipartFile imageFile) {
@@ -27,12 +30,16 @@ public class CategoryService {
             String imageUrl = this.cloudinaryService.uploadImage(imageFile);
             category.setImage(imageUrl);
         }      
-        return categoryRepository.save(category);
+        Category savedCategory = categoryRepository.save(category);
+        this.eventPublisher.publishEvent(CatalogChangedEvent.all());
+        return savedCategory;
     }
 
     @Transactional
     public void handleDeleteCategory(Long id) {
         this.categoryRepository.deleteById(id);
+        // Sản phẩm trong cache danh mục sản phẩm nhúng thông tin danh mục
+        this.eventPublisher.publishEvent(CatalogChangedEvent.all());
     }
 
     public Category fetchCategoryById(Long id) {
@@ -70,7 +77,9 @@ public class CategoryService {
                 existingCategory.setImage(imageUrl);
             }
             
-            return this.categoryRepository.save(existingCategory);
+            Category savedCategory = this.categoryRepository.save(existingCategory);
+            this.eventPublisher.publishEvent(CatalogChangedEvent.all());
+            return savedCategory;
         }
         return null;
     }
@@ -0,0 +1,83 @@
+package com.lat.be.service;
+
+import java.util.Map;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+import com.lat.be.domain.User;
+import com.lat.be.domain.response.ResLoginDTO;
+import com.lat.be.repository.UserRepository;
+import com.lat.be.util.SecurityUtil;
+
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Xác định người dùng hiện tại một lần cho mỗi request.
+ * Thông tin gọn (id, email, tên) lấy từ claim "user" của access token nên không cần truy vấn;
+ * entity đầy đủ chỉ được tải khi cần, qua UserCache, và được dùng lại trong suốt request.
+ */
+@Component
+@RequestScope
+@RequiredArgsConstructor
+public class CurrentUserResolver {
+    private final UserRepository userRepository;
+    private final UserCache userCache;
+
+    private ResLoginDTO.UserInsideToken principal;
+    private User user;
+
+    /**
+     * Thông tin gọn của người dùng hiện tại; tên có thể cũ hơn dữ liệu trong DB cho đến khi token được làm mới
+     */
+    public ResLoginDTO.UserInsideToken getPrincipal() {
+        if (this.principal == null) {
+            this.principal = fromClaims();
+            if (this.principal == null) {
+                // Token cũ không có claim "user" hoặc xác thực không qua JWT
+                User current = getUser();
+                this.principal = new ResLoginDTO.UserInsideToken(current.getId(), current.getEmail(), current.getName());
+            }
+        }
+        return this.principal;
+    }
+
+    /**
+     * Entity người dùng hiện tại (bản tách khỏi phiên, không được sửa trực tiếp)
+     */
+    public User getUser() {
+        if (this.user == null) {
+            String email = SecurityUtil.getCurrentUserLogin()
+                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy thông tin người dùng hiện tại"));
+            User current = this.userCache.get(email, this.userRepository::findByEmail);
+            if (current == null) {
+                throw new EntityNotFoundException("Không tìm thấy người dùng với email: " + email);
+            }
+            this.user = current;
+        }
+        return this.user;
+    }
+
+    private ResLoginDTO.UserInsideToken fromClaims() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof Jwt jwt)) {
+            return null;
+        }
+        Object claim = jwt.getClaim("user");
+        if (!(claim instanceof Map<?, ?> userClaim)) {
+            return null;
+        }
+        Object id = userClaim.get("id");
+        Object email = userClaim.get("email");
+        // Chỉ tin claim khi khớp với subject của token
+        if (!(id instanceof Number number) || email == null || !email.equals(jwt.getSubject())) {
+            return null;
+        }
+        Object name = userClaim.get("name");
+        return new ResLoginDTO.UserInsideToken(number.longValue(), email.toString(), name != null ? name.toString() : null);
+    }
+}
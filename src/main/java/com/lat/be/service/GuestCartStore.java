@@ -0,0 +1,246 @@
+package com.lat.be.service;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Giỏ hàng của khách chưa đăng nhập, giữ hoàn toàn trong bộ nhớ bằng các mảng nguyên thủy cấp phát sẵn
+ * (không tạo đối tượng hay dòng CSDL cho mỗi khách). Mỗi giỏ là một ô cố định gồm tối đa max-lines cặp
+ * (productId, quantity). Token trong cookie mã hóa chỉ số ô kèm 128 bit ngẫu nhiên nên tra cứu không cần bảng băm.
+ * Giỏ hết hạn sau ttl-minutes kể từ lần truy cập cuối. Giỏ chỉ được tạo khi khách thêm sản phẩm lần đầu;
+ * khi hết ô trống thì thu hồi các giỏ đã hết hạn (tối đa một lần quét mỗi giây), giỏ còn hạn không bao giờ bị lấy lại.
+ */
+@Component
+@Slf4j
+public class GuestCartStore {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final int TOKEN_BYTES = 4 + 8 + 8;
+
+    @Value("${cart.guest.max-carts:20000}")
+    private int maxCarts;
+
+    @Value("${cart.guest.max-lines:30}")
+    private int maxLines;
+
+    @Value("${cart.guest.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    private final SecureRandom random = new SecureRandom();
+
+    // Theo ô: bí mật của token, thời điểm hết hạn (0 = ô trống) và số dòng đang dùng
+    private long[] secretHigh;
+    private long[] secretLow;
+    private long[] expiresAt;
+    private int[] lineCounts;
+    // Theo dòng: ô i dùng các chỉ số [i * maxLines, i * maxLines + lineCounts[i])
+    private long[] productIds;
+    private int[] quantities;
+    // Ngăn xếp các ô trống
+    private int[] freeSlots;
+    private int freeCount;
+    // Lần quét giỏ hết hạn gần nhất khi hết ô trống, để không quét toàn bộ mảng ở mỗi lần tạo giỏ
+    private long lastFullSweepAt;
+
+    @PostConstruct
+    void init() {
+        this.secretHigh = new long[maxCarts];
+        this.secretLow = new long[maxCarts];
+        this.expiresAt = new long[maxCarts];
+        this.lineCounts = new int[maxCarts];
+        this.productIds = new long[maxCarts * maxLines];
+        this.quantities = new int[maxCarts * maxLines];
+        this.freeSlots = new int[maxCarts];
+        for (int slot = maxCarts - 1; slot >= 0; slot--) {
+            this.freeSlots[freeCount++] = slot;
+        }
+    }
+
+    public long getTtlSeconds() {
+        return ttlMinutes * 60;
+    }
+
+    /**
+     * Tạo giỏ mới và trả về token để đặt vào cookie
+     * @throws IllegalStateException nếu mọi ô đều đang được giỏ còn hạn sử dụng
+     */
+    public synchronized String create() {
+        if (freeCount == 0) {
+            reclaimExpired();
+        }
+        int slot = freeSlots[--freeCount];
+        long high = random.nextLong();
+        long low = random.nextLong();
+        this.secretHigh[slot] = high;
+        this.secretLow[slot] = low;
+        this.lineCounts[slot] = 0;
+        this.expiresAt[slot] = System.currentTimeMillis() + ttlMinutes * 60_000;
+
+        ByteBuffer buffer = ByteBuffer.allocate(TOKEN_BYTES);
+        buffer.putInt(slot).putLong(high).putLong(low);
+        return ENCODER.encodeToString(buffer.array());
+    }
+
+    /**
+     * Token còn hiệu lực hay không (đồng thời gia hạn giỏ)
+     */
+    public synchronized boolean exists(String token) {
+        return resolve(token) >= 0;
+    }
+
+    /**
+     * Các dòng của giỏ theo thứ tự thêm vào: productId -> quantity; null nếu token không hợp lệ hoặc đã hết hạn
+     */
+    public synchronized Map<Long, Integer> getLines(String token) {
+        int slot = resolve(token);
+        return slot < 0 ? null : copyLines(slot);
+    }
+
+    /**
+     * Đặt số lượng của một sản phẩm (0 là xóa dòng)
+     * @return false nếu token không hợp lệ
+     * @throws IllegalArgumentException nếu giỏ đã đủ số dòng tối đa
+     */
+    public synchronized boolean setQuantity(String token, long productId, int quantity) {
+        int slot = resolve(token);
+        if (slot < 0) {
+            return false;
+        }
+        int base = slot * maxLines;
+        int count = this.lineCounts[slot];
+        for (int i = base; i < base + count; i++) {
+            if (this.productIds[i] == productId) {
+                if (quantity > 0) {
+                    this.quantities[i] = quantity;
+                } else {
+                    // Dời các dòng phía sau lên để giữ thứ tự
+                    System.arraycopy(this.productIds, i + 1, this.productIds, i, base + count - i - 1);
+                    System.arraycopy(this.quantities, i + 1, this.quantities, i, base + count - i - 1);
+                    this.lineCounts[slot] = count - 1;
+                }
+                return true;
+            }
+        }
+        if (quantity > 0) {
+            if (count == maxLines) {
+                throw new IllegalArgumentException("Giỏ hàng đã đạt số sản phẩm tối đa (" + maxLines + ")");
+            }
+            this.productIds[base + count] = productId;
+            this.quantities[base + count] = quantity;
+            this.lineCounts[slot] = count + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Xóa mọi dòng nhưng giữ giỏ (token vẫn dùng được)
+     */
+    public synchronized boolean clear(String token) {
+        int slot = resolve(token);
+        if (slot < 0) {
+            return false;
+        }
+        this.lineCounts[slot] = 0;
+        return true;
+    }
+
+    /**
+     * Lấy các dòng và giải phóng giỏ (dùng khi gộp vào giỏ của người dùng lúc đăng nhập);
+     * null nếu token không hợp lệ
+     */
+    public synchronized Map<Long, Integer> remove(String token) {
+        int slot = resolve(token);
+        if (slot < 0) {
+            return null;
+        }
+        Map<Long, Integer> lines = copyLines(slot);
+        free(slot);
+        return lines;
+    }
+
+    @Scheduled(fixedDelayString = "${cart.guest.sweep-interval-ms:60000}")
+    public synchronized void releaseExpired() {
+        int released = freeExpired(System.currentTimeMillis());
+        if (released > 0) {
+            log.debug("Released {} expired guest carts", released);
+        }
+    }
+
+    // Trả về chỉ số ô của token còn hiệu lực và gia hạn, -1 nếu không hợp lệ
+    private int resolve(String token) {
+        if (token == null) {
+            return -1;
+        }
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(token);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+        if (bytes.length != TOKEN_BYTES) {
+            return -1;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int slot = buffer.getInt();
+        long high = buffer.getLong();
+        long low = buffer.getLong();
+        long now = System.currentTimeMillis();
+        if (slot < 0 || slot >= maxCarts || this.expiresAt[slot] <= now
+                || this.secretHigh[slot] != high || this.secretLow[slot] != low) {
+            return -1;
+        }
+        this.expiresAt[slot] = now + ttlMinutes * 60_000;
+        return slot;
+    }
+
+    private Map<Long, Integer> copyLines(int slot) {
+        int base = slot * maxLines;
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        for (int i = base; i < base + this.lineCounts[slot]; i++) {
+            lines.put(this.productIds[i], this.quantities[i]);
+        }
+        return lines;
+    }
+
+    private void free(int slot) {
+        this.expiresAt[slot] = 0;
+        this.secretHigh[slot] = 0;
+        this.secretLow[slot] = 0;
+        this.lineCounts[slot] = 0;
+        this.freeSlots[freeCount++] = slot;
+    }
+
+    private int freeExpired(long now) {
+        int released = 0;
+        for (int slot = 0; slot < maxCarts; slot++) {
+            if (this.expiresAt[slot] != 0 && this.expiresAt[slot] <= now) {
+                free(slot);
+                released++;
+            }
+        }
+        return released;
+    }
+
+    // Hết ô trống: thu hồi các giỏ đã hết hạn trước lần quét định kỳ; không có thì từ chối thay vì lấy giỏ còn hạn
+    private void reclaimExpired() {
+        long now = System.currentTimeMillis();
+        if (now - this.lastFullSweepAt >= 1000) {
+            this.lastFullSweepAt = now;
+            freeExpired(now);
+        }
+        if (freeCount == 0) {
+            log.warn("Guest cart store is full ({} live carts), rejecting new cart", maxCarts);
+            throw new IllegalStateException("Giỏ hàng tạm thời không khả dụng, vui lòng thử lại sau");
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.lat.be.service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import com.lat.be.config.VNPayConfig;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Gọi API querydr của VNPay (vnpay.api-url) với chữ ký HMAC-SHA512 theo tài liệu merchant_webapi.
+ */
+@Component
+@ConditionalOnProperty(name = "vnpay.reconciliation.client", havingValue = "http", matchIfMissing = true)
+@RequiredArgsConstructor
+public class HttpVNPayTransactionClient implements VNPayTransactionClient {
+    private static final String COMMAND_QUERY = "querydr";
+    // Thứ tự các trường ghép (bằng "|") để kiểm tra chữ ký phản hồi
+    private static final String[] RESPONSE_HASH_FIELDS = {
+            "vnp_ResponseId", "vnp_Command", "vnp_ResponseCode", "vnp_Message", "vnp_TmnCode", "vnp_TxnRef",
+            "vnp_Amount", "vnp_BankCode", "vnp_PayDate", "vnp_TransactionNo", "vnp_TransactionType",
+            "vnp_TransactionStatus", "vnp_OrderInfo", "vnp_PromotionCode", "vnp_PromotionAmount"
+    };
+
+    private final VNPayConfig vnPayConfig;
+
+    @Value("${vnpay.reconciliation.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+
+    @Value("${vnpay.reconciliation.read-timeout-ms:10000}")
+    private int readTimeoutMs;
+
+    private RestClient restClient;
+
+    @PostConstruct
+    void init() {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMs);
+        requestFactory.setReadTimeout(readTimeoutMs);
+        this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+    }
+
+    @Override
+    public Map<String, String> queryTransaction(String txnRef, String transactionDate) {
+        String requestId = UUID.randomUUID().toString().replace("-", "");
+        String createDate = LocalDateTime.now(VNPayConfig.VIETNAM_ZONE).format(VNPayConfig.VNP_DATE_FORMAT);
+        String orderInfo = "Doi soat giao dich " + txnRef;
+        String ipAddr = vnPayConfig.getVnpIpAddr();
+
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("vnp_RequestId", requestId);
+        body.put("vnp_Version", vnPayConfig.getVnpVersion());
+        body.put("vnp_Command", COMMAND_QUERY);
+        body.put("vnp_TmnCode", vnPayConfig.getVnpTmnCode());
+        body.put("vnp_TxnRef", txnRef);
+        body.put("vnp_OrderInfo", orderInfo);
+        body.put("vnp_TransactionDate", transactionDate);
+        body.put("vnp_CreateDate", createDate);
+        body.put("vnp_IpAddr", ipAddr);
+        String hashData = String.join("|", requestId, vnPayConfig.getVnpVersion(), COMMAND_QUERY,
+                vnPayConfig.getVnpTmnCode(), txnRef, transactionDate, createDate, ipAddr, orderInfo);
+        body.put("vnp_SecureHash", vnPayConfig.getSigner().sign(hashData));
+
+        Map<String, Object> raw;
+        try {
+            raw = this.restClient.post()
+                    .uri(vnPayConfig.getVnpApiUrl())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(body)
+                    .retrieve()
+                    .body(new ParameterizedTypeReference<Map<String, Object>>() {});
+        } catch (RestClientException e) {
+            throw new IllegalStateException("Không gọi được VNPay querydr cho giao dịch " + txnRef, e);
+        }
+        if (raw == null) {
+            throw new IllegalStateException("VNPay querydr không trả dữ liệu cho giao dịch " + txnRef);
+        }
+
+        Map<String, String> response = new HashMap<>();
+        raw.forEach((key, value) -> response.put(key, value == null ? null : String.valueOf(value)));
+        String secureHash = response.get("vnp_SecureHash");
+        if (secureHash == null
+                || !vnPayConfig.getSigner().verify(responseHashData(response), secureHash.toLowerCase(Locale.ROOT))) {
+            throw new IllegalStateException("Chữ ký phản hồi querydr không hợp lệ cho giao dịch " + txnRef);
+        }
+        return response;
+    }
+
+    private static String responseHashData(Map<String, String> response) {
+        StringBuilder data = new StringBuilder(256);
+        for (int i = 0; i < RESPONSE_HASH_FIELDS.length; i++) {
+            if (i > 0) {
+                data.append('|');
+            }
+            String value = response.get(RESPONSE_HASH_FIELDS[i]);
+            if (value != null) {
+                data.append(value);
+            }
+        }
+        return data.toString();
+    }
+}
@@ -0,0 +1,109 @@
+package com.lat.be.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.lat.be.domain.event.OrderCancelledEvent;
+import com.lat.be.repository.OrderRepository;
+import com.lat.be.util.constant.OrderStatus;
+import com.lat.be.util.constant.PaymentMethod;
+import com.lat.be.util.constant.PaymentStatus;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hủy đơn hàng và trả hàng về kho.
+ * Định kỳ hủy theo lô các đơn chuyển khoản chưa thanh toán (PENDING / FAILED) quá order.expiry.window-minutes:
+ * mỗi lô khóa các đơn bằng SKIP LOCKED nên nhiều instance chạy song song vẫn không hủy hay trả kho trùng,
+ * trả số lượng bằng một câu UPDATE cho mỗi sản phẩm rồi đổi trạng thái cả lô bằng một câu UPDATE.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderCancellationService {
+    public static final String MESSAGE_EXPIRED = "Đơn hàng đã bị hủy do quá hạn thanh toán";
+    public static final String MESSAGE_CANCELLED = "Đơn hàng đã bị hủy";
+
+    private final OrderRepository orderRepository;
+    private final StockReservationService stockReservationService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${order.expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${order.expiry.window-minutes:120}")
+    private long windowMinutes;
+
+    @Value("${order.expiry.batch-size:200}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${order.expiry.sweep-interval-ms:300000}")
+    public void cancelAbandonedOrders() {
+        if (!enabled) {
+            return;
+        }
+        int total = 0;
+        int cancelled;
+        do {
+            Integer count = this.transactionTemplate.execute(status -> cancelAbandonedBatch());
+            cancelled = count != null ? count : 0;
+            total += cancelled;
+        } while (cancelled == batchSize);
+
+        if (total > 0) {
+            log.info("Cancelled {} unpaid orders older than {} minutes", total, windowMinutes);
+        }
+    }
+
+    /**
+     * Hủy một đơn hàng và trả hàng về kho
+     * @return false nếu đơn hàng không tồn tại hoặc đã bị hủy trước đó
+     */
+    @Transactional
+    public boolean cancel(Long orderId) {
+        List<Long> ids = this.orderRepository.lockIdsByOrderStatusNot(List.of(orderId), OrderStatus.CANCELLED);
+        if (ids.isEmpty()) {
+            return false;
+        }
+        cancelLocked(ids, MESSAGE_CANCELLED, Instant.now());
+        return true;
+    }
+
+    private int cancelAbandonedBatch() {
+        Instant now = Instant.now();
+        List<Long> ids = this.orderRepository.findAbandonedIdsForUpdate(
+                OrderStatus.PENDING, PaymentMethod.TRANSFER,
+                List.of(PaymentStatus.PENDING, PaymentStatus.FAILED),
+                now.minus(Duration.ofMinutes(windowMinutes)),
+                PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        cancelLocked(ids, MESSAGE_EXPIRED, now);
+        return ids.size();
+    }
+
+    // Các đơn trong ids đã được khóa trong giao dịch hiện tại
+    private void cancelLocked(List<Long> ids, String message, Instant now) {
+        Map<Long, PaymentStatus> paymentStatuses = new HashMap<>();
+        for (Object[] row : this.orderRepository.findStatusRowsByIds(ids)) {
+            paymentStatuses.put((Long) row[0], (PaymentStatus) row[2]);
+        }
+        this.stockReservationService.releaseForCancelledOrders(ids);
+        this.orderRepository.updateOrderStatus(ids, OrderStatus.CANCELLED, message, now);
+        this.eventPublisher.publishEvent(new OrderCancelledEvent(paymentStatuses));
+    }
+}
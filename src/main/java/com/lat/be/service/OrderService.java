@@ -2,12 +2,18 @@ package com.lat.be.service;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,32 +22,46 @@ import com.lat.be.domain.Order;
 import com.lat.be.domain.OrderDetail;
 import com.lat.be.domain.Product;
 import com.lat.be.domain.User;
-import com.lat.be.domain.enumeration.ProductStatus;
 import com.lat.be.domain.CartDetail;
+import com.lat.be.domain.event.CatalogChangedEvent;
+import com.lat.be.domain.event.OrderCreatedEvent;
+import com.lat.be.domain.event.OrderPaymentStatusChangedEvent;
 import com.lat.be.domain.request.CreateOrderDTO;
+import com.lat.be.domain.response.OrderWithItemsDTO;
+import com.lat.be.domain.response.ResLoginDTO;
 import com.lat.be.domain.response.ResultPaginationDTO;
 import com.lat.be.repository.OrderDetailRepository;
 import com.lat.be.repository.OrderRepository;
 import com.lat.be.repository.ProductRepository;
+import com.lat.be.util.CursorPagination;
+import com.lat.be.util.constant.PaymentMethod;
 import com.lat.be.util.constant.PaymentStatus;
 import com.lat.be.util.constant.OrderStatus;
+import com.lat.be.util.error.IdInvalidException;
 import lombok.RequiredArgsConstructor;
 
 @Service
 @RequiredArgsConstructor
 public class OrderService {
+    private static final int ITEM_BATCH_SIZE = 500;
+    // Thuộc tính được phép sắp xếp khi phân trang theo con trỏ
+    private static final Set<String> CURSOR_SORTS = Set.of("createdAt", "updatedAt", "totalPrice");
+
     private final OrderRepository orderRepository;
     private final OrderDetailRepository orderDetailRepository;
     private final ProductRepository productRepository;
     private final CartService cartService;
     private final UserService userService;
+    private final StockReservationService stockReservationService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public Order createOrder(CreateOrderDTO createOrderDTO) {
         // Lấy thông tin người dùng hiện tại
         User currentUser = this.userService.getCurrentUser();
         
-        // Lấy danh sách sản phẩm từ giỏ hàng
+        // Lấy danh sách sản phẩm từ giỏ hàng (một câu SELECT kèm sản phẩm);
+        // giỏ đã được ghi xuống CSDL trước giao dịch (CartService.flushCurrentCart) nên không mở thêm kết nối
         List<CartDetail> cartItems = this.cartService.getCartItems();
         
         if (cartItems.isEmpty()) {
@@ -71,37 +91,53 @@ public class OrderService {
         
         Order savedOrder = orderRepository.save(order);
         
-        // Tạo và lưu chi tiết đơn hàng
+        // Gộp số lượng theo sản phẩm, theo thứ tự ID để các giao dịch đồng thời khóa dòng cùng thứ tự, tránh deadlock
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (CartDetail item : cartItems) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        
+        // Trừ tồn kho nguyên tử trong một batch, thất bại nếu có sản phẩm không còn đủ hàng (rollback toàn bộ đơn hàng)
+        Instant now = Instant.now();
+        List<Long> insufficient = this.productRepository.decrementStockBatch(quantities, now);
+        if (!insufficient.isEmpty()) {
+            String productName = cartItems.stream()
+                    .filter(item -> insufficient.contains(item.getProduct().getId()))
+                    .map(item -> item.getProduct().getName())
+                    .findFirst()
+                    .orElse("");
+            throw new RuntimeException("Số lượng sản phẩm " + productName + " không đủ");
+        }
+        Map<Long, Integer> decrements = new TreeMap<>();
+        quantities.forEach((productId, quantity) -> decrements.put(productId, -quantity));
+        this.eventPublisher.publishEvent(CatalogChangedEvent.stock(quantities.keySet(),
+                this.productRepository.findStockCrossedZero(decrements)));
+        
+        // Tạo chi tiết đơn hàng và lưu theo batch (rewriteBatchedStatements gộp thành một INSERT nhiều dòng)
         List<OrderDetail> orderDetails = new ArrayList<>();
         for (CartDetail item : cartItems) {
             Product product = item.getProduct();
-            
-            // Cập nhật số lượng tồn kho
-            int currentStock = product.getQuantity();
-            if (currentStock < item.getQuantity()) {
-                throw new RuntimeException("Số lượng sản phẩm " + product.getName() + " không đủ");
-            }
-            product.setQuantity(currentStock - item.getQuantity());
-            if(product.getQuantity() == 0) {
-                product.setStatus(ProductStatus.OUT_OF_STOCK);
-            }
-            this.productRepository.save(product);
-            
-            OrderDetail orderDetail = OrderDetail.builder()
+            orderDetails.add(OrderDetail.builder()
                     .order(savedOrder)
                     .product(product)
                     .price(product.getSellPrice())
                     .quantity(item.getQuantity())
                     .totalPrice(product.getSellPrice() * item.getQuantity())
-                    .createdAt(Instant.now())
+                    .createdAt(now)
                     .createdBy(currentUser.getEmail())
-                    .build();
-            
-            orderDetails.add(orderDetailRepository.save(orderDetail));
+                    .build());
+        }
+        orderDetails = this.orderDetailRepository.saveAll(orderDetails);
+        
+        // Đơn chuyển khoản chỉ giữ hàng trong thời hạn thanh toán VNPay
+        if (createOrderDTO.getPaymentMethod() == PaymentMethod.TRANSFER) {
+            this.stockReservationService.holdForOrder(savedOrder, orderDetails);
         }
         
-        // Xóa giỏ hàng sau khi đặt hàng thành công
-        cartService.clearCart();
+        // Xóa giỏ hàng sau khi đặt hàng thành công bằng một câu DELETE
+        cartService.clearCart(cartItems.get(0).getCart().getId());
+        
+        this.eventPublisher.publishEvent(new OrderCreatedEvent(savedOrder.getId(), savedOrder.getPaymentStatus()));
         
         return savedOrder;
     }
@@ -110,6 +146,35 @@ public class OrderService {
         return orderRepository.save(order);
     }
     
+    /**
+     * Cập nhật trạng thái thanh toán và phát sự kiện nếu trạng thái thay đổi.
+     * Chuyển sang PAID thì chốt các phiếu giữ hàng của đơn để hàng không bị trả lại kho khi phiếu hết hạn.
+     * @throws IdInvalidException nếu giữ hàng đã hết hạn và sản phẩm không còn đủ hàng
+     */
+    @Transactional
+    public Order updatePaymentStatus(Order order, PaymentStatus paymentStatus, String paymentMessage)
+            throws IdInvalidException {
+        PaymentStatus oldStatus = order.getPaymentStatus();
+        // Đơn đã hủy thì hàng đã được trả lại kho, không trừ lại
+        if (paymentStatus == PaymentStatus.PAID && oldStatus != PaymentStatus.PAID
+                && order.getOrderStatus() != OrderStatus.CANCELLED) {
+            List<Long> insufficient = this.stockReservationService.commitForOrder(order.getId());
+            if (!insufficient.isEmpty()) {
+                throw new IdInvalidException("Đơn hàng đã hết hạn giữ hàng, sản phẩm không còn đủ hàng: " + insufficient);
+            }
+        }
+        order.setPaymentStatus(paymentStatus);
+        if (paymentMessage != null) {
+            order.setPaymentMessage(paymentMessage);
+        }
+        Order savedOrder = orderRepository.save(order);
+        if (oldStatus != paymentStatus) {
+            this.eventPublisher.publishEvent(new OrderPaymentStatusChangedEvent(order.getId(), oldStatus, paymentStatus,
+                    order.getOrderStatus() == OrderStatus.CANCELLED));
+        }
+        return savedOrder;
+    }
+    
     public Optional<Order> getOrderById(Long id) {
         return this.orderRepository.findById(id);
     }
@@ -133,26 +198,71 @@ public class OrderService {
         return result;
     }
     
+    public ResultPaginationDTO getAllOrdersByCursor(Specification<Order> orderSpec, Pageable pageable, String cursor)
+            throws IdInvalidException {
+        return CursorPagination.fetch(this.orderRepository, orderSpec, pageable, cursor, CURSOR_SORTS, orders -> orders);
+    }
+    
     public List<Order> getOrdersByUser(User user) {
         return orderRepository.findByUser(user);
     }
     
     /**
-     * Lấy danh sách đơn hàng kèm theo thông tin chi tiết về các sản phẩm
-     * @param user Người dùng
+     * Lấy toàn bộ đơn hàng của người dùng kèm sản phẩm, dựng DTO trực tiếp từ projection
+     * (một truy vấn đơn hàng và một truy vấn dòng sản phẩm cho mỗi lô ID thay vì một truy vấn cho mỗi đơn)
+     * @param user Người dùng (thông tin gọn từ access token)
      * @return Danh sách đơn hàng
      */
-    public List<Order> getOrdersWithDetailsByUser(User user) {
-        List<Order> orders = orderRepository.findByUser(user);
+    public List<OrderWithItemsDTO> getOrdersWithDetailsByUser(ResLoginDTO.UserInsideToken user) {
+        List<Object[]> rows = this.orderRepository.findOrderRowsByUserId(user.getId(), Pageable.unpaged(Sort.by("id")));
+        return this.toOrderWithItems(rows, user);
+    }
+    
+    /**
+     * Lấy đơn hàng của người dùng theo trang, mới nhất trước: đếm, một trang đơn hàng và dòng sản phẩm của trang
+     */
+    public ResultPaginationDTO getMyOrders(ResLoginDTO.UserInsideToken user, Pageable pageable) {
+        Pageable newestFirst = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                Sort.by(Sort.Direction.DESC, "id"));
+        long total = this.orderRepository.countByUserId(user.getId());
+        List<OrderWithItemsDTO> orders = total > newestFirst.getOffset()
+                ? this.toOrderWithItems(this.orderRepository.findOrderRowsByUserId(user.getId(), newestFirst), user)
+                : List.of();
         
-        // Đảm bảo rằng danh sách chi tiết đơn hàng được khởi tạo
-        for (Order order : orders) {
-            if (order.getOrderDetails() == null || order.getOrderDetails().isEmpty()) {
-                order.setOrderDetails(orderDetailRepository.findByOrder(order));
-            }
+        ResultPaginationDTO result = new ResultPaginationDTO();
+        ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
+        meta.setPage(pageable.getPageNumber() + 1);
+        meta.setPageSize(pageable.getPageSize());
+        meta.setPages((int) ((total + pageable.getPageSize() - 1) / pageable.getPageSize()));
+        meta.setTotal(total);
+        
+        result.setMeta(meta);
+        result.setResult(orders);
+        return result;
+    }
+    
+    private List<OrderWithItemsDTO> toOrderWithItems(List<Object[]> rows, ResLoginDTO.UserInsideToken user) {
+        Map<Long, OrderWithItemsDTO> byId = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            OrderWithItemsDTO dto = OrderWithItemsDTO.fromRow(row);
+            dto.setUser(OrderWithItemsDTO.UserDTO.builder()
+                    .id(user.getId())
+                    .email(user.getEmail())
+                    .name(user.getName())
+                    .phone(dto.getPhone())
+                    .build());
+            byId.put(dto.getId(), dto);
         }
         
-        return orders;
+        // Nạp dòng sản phẩm theo lô để danh sách IN không quá dài khi lấy toàn bộ đơn hàng
+        List<Long> orderIds = new ArrayList<>(byId.keySet());
+        for (int from = 0; from < orderIds.size(); from += ITEM_BATCH_SIZE) {
+            List<Long> batch = orderIds.subList(from, Math.min(from + ITEM_BATCH_SIZE, orderIds.size()));
+            for (Object[] line : this.orderDetailRepository.findItemLinesByOrderIds(batch)) {
+                byId.get((Long) line[0]).getItems().add(OrderWithItemsDTO.itemFromRow(line));
+            }
+        }
+        return new ArrayList<>(byId.values());
     }
     
     public List<OrderDetail> getOrderDetails(Long orderId) {
@@ -0,0 +1,301 @@
+package com.lat.be.service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.lat.be.domain.Order;
+import com.lat.be.domain.PaymentEvent;
+import com.lat.be.domain.enumeration.PaymentEventStatus;
+import com.lat.be.domain.event.OrderCancelledEvent;
+import com.lat.be.domain.event.OrderPaymentStatusChangedEvent;
+import com.lat.be.repository.OrderRepository;
+import com.lat.be.repository.PaymentEventRepository;
+import com.lat.be.util.constant.OrderStatus;
+import com.lat.be.util.constant.PaymentStatus;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hàng đợi bền cho kết quả thanh toán VNPay.
+ * Mỗi kết quả (đã kiểm tra chữ ký) được ghi vào bảng payment_events theo vnp_TxnRef trước khi xử lý;
+ * các sự kiện của cùng một đơn hàng luôn được xử lý tuần tự trên cùng một luồng, và việc cập nhật đơn hàng
+ * dùng khóa lạc quan (@Version) nên IPN, redirect trùng lặp hay chạy trên nhiều instance chỉ đổi trạng thái một lần.
+ * Sự kiện còn PENDING (ví dụ do khởi động lại giữa chừng) được quét định kỳ và xếp lại vào hàng đợi.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentEventService {
+    public static final String SOURCE_IPN = "IPN";
+    public static final String SOURCE_RETURN = "RETURN";
+    // Kết quả lấy từ VNPay querydr khi đối soát
+    public static final String SOURCE_QUERY = "QUERY";
+
+    static final String MESSAGE_PAID_AFTER_CANCEL = "Thanh toán về sau khi đơn hàng đã bị hủy, đơn hàng cần được hoàn tiền";
+    static final String MESSAGE_PAID_OUT_OF_STOCK = "Thanh toán về sau khi hết hạn giữ hàng và sản phẩm đã hết, đơn hàng đã bị hủy và cần được hoàn tiền";
+
+    private final PaymentEventRepository paymentEventRepository;
+    private final OrderRepository orderRepository;
+    private final StockReservationService stockReservationService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${payment.events.workers:4}")
+    private int workers;
+
+    @Value("${payment.events.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${payment.events.recovery-delay-seconds:10}")
+    private long recoveryDelaySeconds;
+
+    @Value("${payment.events.recovery-batch-size:200}")
+    private int recoveryBatchSize;
+
+    // Mỗi luồng một hàng đợi; đơn hàng được gán cố định vào một luồng theo ID
+    private ExecutorService[] lanes;
+
+    @PostConstruct
+    void init() {
+        this.lanes = new ExecutorService[workers];
+        for (int i = 0; i < workers; i++) {
+            String name = "payment-events-" + i;
+            this.lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Sự kiện chưa xử lý vẫn còn PENDING trong CSDL và sẽ được quét lại sau khi khởi động
+        for (ExecutorService lane : this.lanes) {
+            lane.shutdown();
+        }
+    }
+
+    /**
+     * Ghi nhận kết quả thanh toán đã kiểm tra chữ ký; vnp_TxnRef đã có thì trả về bản ghi cũ
+     * @throws IllegalArgumentException nếu vnp_TxnRef không hợp lệ
+     */
+    public PaymentEvent record(Map<String, String> vnpParams, String source) {
+        String txnRef = vnpParams.get("vnp_TxnRef");
+        Long orderId = parseOrderId(txnRef);
+        Optional<PaymentEvent> existing = this.paymentEventRepository.findByTxnRef(txnRef);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        PaymentEvent event = PaymentEvent.builder()
+                .txnRef(txnRef)
+                .orderId(orderId)
+                .source(source)
+                .responseCode(vnpParams.get("vnp_ResponseCode"))
+                .transactionStatus(vnpParams.get("vnp_TransactionStatus"))
+                .transactionNo(vnpParams.get("vnp_TransactionNo"))
+                .amount(parseAmount(vnpParams.get("vnp_Amount")))
+                .bankCode(vnpParams.get("vnp_BankCode"))
+                .payDate(vnpParams.get("vnp_PayDate"))
+                .status(PaymentEventStatus.PENDING)
+                .build();
+        try {
+            return this.transactionTemplate.execute(status -> this.paymentEventRepository.saveAndFlush(event));
+        } catch (DataIntegrityViolationException e) {
+            // Callback khác với cùng vnp_TxnRef vừa ghi trước
+            return this.paymentEventRepository.findByTxnRef(txnRef).orElseThrow(() -> e);
+        }
+    }
+
+    /**
+     * Xếp sự kiện vào hàng đợi của đơn hàng để xử lý nền
+     */
+    public void enqueue(PaymentEvent event) {
+        enqueue(event.getId(), event.getOrderId());
+    }
+
+    /**
+     * Xử lý sự kiện ngay trên luồng gọi (dùng khi cần trả kết quả cho người dùng)
+     * @return đơn hàng sau khi áp dụng, rỗng nếu không tìm thấy đơn hàng
+     */
+    public Optional<Order> applyNow(PaymentEvent event) {
+        return Optional.ofNullable(process(event.getId()));
+    }
+
+    @Scheduled(fixedDelayString = "${payment.events.recovery-interval-ms:30000}")
+    public void requeuePending() {
+        Instant before = Instant.now().minusSeconds(recoveryDelaySeconds);
+        List<Object[]> rows = this.paymentEventRepository.findIdsByStatusBefore(
+                PaymentEventStatus.PENDING, before, PageRequest.of(0, recoveryBatchSize));
+        for (Object[] row : rows) {
+            enqueue((Long) row[0], (Long) row[1]);
+        }
+        if (!rows.isEmpty()) {
+            log.info("Requeued {} pending payment events", rows.size());
+        }
+    }
+
+    private void enqueue(Long eventId, Long orderId) {
+        ExecutorService lane = this.lanes[(int) Math.floorMod(orderId, (long) this.lanes.length)];
+        try {
+            lane.execute(() -> {
+                try {
+                    process(eventId);
+                } catch (RuntimeException e) {
+                    log.error("Failed to apply payment event {} for order {}", eventId, orderId, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Payment event {} not queued (shutting down), it stays pending", eventId);
+        }
+    }
+
+    private Order process(Long eventId) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return this.transactionTemplate.execute(status -> applyOnce(eventId));
+            } catch (OptimisticLockingFailureException e) {
+                // Đơn hàng hoặc sự kiện vừa được ghi bởi callback khác: đọc lại và thử lại
+                if (attempt >= maxAttempts) {
+                    recordFailure(eventId, e);
+                    throw e;
+                }
+                log.debug("Optimistic lock conflict applying payment event {}, retry {}", eventId, attempt);
+            } catch (RuntimeException e) {
+                recordFailure(eventId, e);
+                throw e;
+            }
+        }
+    }
+
+    private Order applyOnce(Long eventId) {
+        PaymentEvent event = this.paymentEventRepository.findById(eventId).orElse(null);
+        if (event == null) {
+            return null;
+        }
+        Order order = this.orderRepository.findById(event.getOrderId()).orElse(null);
+        if (event.getStatus() != PaymentEventStatus.PENDING) {
+            return order;
+        }
+
+        Instant now = Instant.now();
+        event.setProcessedAt(now);
+        if (order == null) {
+            event.setStatus(PaymentEventStatus.IGNORED);
+            event.setLastError("Không tìm thấy đơn hàng với ID: " + event.getOrderId());
+            return null;
+        }
+        if (order.getPaymentStatus() == PaymentStatus.PAID || order.getPaymentStatus() == PaymentStatus.REFUND_REQUIRED) {
+            // Đơn hàng đã thanh toán qua giao dịch khác (hoặc đã chờ hoàn tiền), không chuyển trạng thái lần nữa
+            event.setStatus(PaymentEventStatus.IGNORED);
+            return order;
+        }
+
+        PaymentStatus oldStatus = order.getPaymentStatus();
+        boolean wasCancelled = order.getOrderStatus() == OrderStatus.CANCELLED;
+        if (event.isSuccess()) {
+            if (event.getTransactionNo() != null) {
+                order.setTransactionNo(event.getTransactionNo());
+            }
+            if (wasCancelled) {
+                // Đơn đã bị hủy (quá hạn hoặc bởi quản trị) nhưng tiền vẫn về: không mở lại đơn, chờ hoàn tiền
+                order.setPaymentStatus(PaymentStatus.REFUND_REQUIRED);
+                order.setPaymentMessage(MESSAGE_PAID_AFTER_CANCEL);
+                log.error("Order {} was paid after being cancelled (txnRef {}), refund required",
+                        order.getId(), event.getTxnRef());
+            } else if (!this.stockReservationService.commitForOrder(order.getId()).isEmpty()) {
+                // Hết hạn giữ hàng và sản phẩm đã bán cho người khác: hủy đơn, trả phần còn giữ và chờ hoàn tiền
+                order.setPaymentStatus(PaymentStatus.REFUND_REQUIRED);
+                order.setPaymentMessage(MESSAGE_PAID_OUT_OF_STOCK);
+                order.setOrderStatus(OrderStatus.CANCELLED);
+                this.stockReservationService.releaseForCancelledOrders(List.of(order.getId()));
+                log.error("Order {} was paid after its stock was sold (txnRef {}), cancelled and refund required",
+                        order.getId(), event.getTxnRef());
+            } else {
+                order.setPaymentStatus(PaymentStatus.PAID);
+                order.setPaymentMessage("Thanh toán thành công " + order.getTotalPrice() + " đồng");
+                log.info("Payment successful for order: {} (txnRef {}, {})", order.getId(), event.getTxnRef(), event.getSource());
+            }
+        } else {
+            order.setPaymentStatus(PaymentStatus.FAILED);
+            order.setPaymentMessage(VNPayService.getPaymentErrorMessage(event.getResponseCode()));
+            log.info("Payment failed for order: {} with response code: {}", order.getId(), event.getResponseCode());
+        }
+        event.setStatus(PaymentEventStatus.APPLIED);
+
+        // Cả đơn hàng và sự kiện đều được kiểm tra version khi commit
+        Order savedOrder = this.orderRepository.save(order);
+        if (oldStatus != savedOrder.getPaymentStatus()) {
+            this.eventPublisher.publishEvent(
+                    new OrderPaymentStatusChangedEvent(savedOrder.getId(), oldStatus, savedOrder.getPaymentStatus(), wasCancelled));
+        }
+        if (!wasCancelled && savedOrder.getOrderStatus() == OrderStatus.CANCELLED) {
+            // Đơn bị hủy ngay trong lần xử lý này (hết hàng); trạng thái lúc hủy là trạng thái vừa ghi
+            this.eventPublisher.publishEvent(
+                    new OrderCancelledEvent(Map.of(savedOrder.getId(), savedOrder.getPaymentStatus())));
+        }
+        return savedOrder;
+    }
+
+    private void recordFailure(Long eventId, RuntimeException error) {
+        try {
+            this.transactionTemplate.executeWithoutResult(status ->
+                    this.paymentEventRepository.findById(eventId).ifPresent(event -> {
+                        if (event.getStatus() != PaymentEventStatus.PENDING) {
+                            return;
+                        }
+                        event.setAttempts(event.getAttempts() + 1);
+                        String message = String.valueOf(error.getMessage());
+                        event.setLastError(message.length() > 500 ? message.substring(0, 500) : message);
+                        if (event.getAttempts() >= maxAttempts) {
+                            event.setStatus(PaymentEventStatus.FAILED);
+                            event.setProcessedAt(Instant.now());
+                        }
+                    }));
+        } catch (RuntimeException e) {
+            log.warn("Could not record failure of payment event {}: {}", eventId, e.getMessage());
+        }
+    }
+
+    // vnp_TxnRef có dạng orderId-timestamp
+    private static Long parseOrderId(String txnRef) {
+        if (txnRef == null || txnRef.isEmpty()) {
+            throw new IllegalArgumentException("Mã giao dịch không hợp lệ");
+        }
+        try {
+            return Long.parseLong(txnRef.split("-")[0]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Mã giao dịch không hợp lệ: " + txnRef);
+        }
+    }
+
+    // VNPay gửi số tiền nhân 100
+    private static Long parseAmount(String amount) {
+        if (amount == null || amount.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(amount) / 100;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.lat.be.service;
+
+import java.lang.management.ManagementFactory;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.lat.be.domain.PaymentEvent;
+import com.lat.be.domain.ScheduledJobState;
+import com.lat.be.domain.event.OrderPaymentStatusChangedEvent;
+import com.lat.be.repository.OrderRepository;
+import com.lat.be.repository.PaymentAttemptRepository;
+import com.lat.be.repository.ScheduledJobStateRepository;
+import com.lat.be.util.constant.OrderStatus;
+import com.lat.be.util.constant.PaymentMethod;
+import com.lat.be.util.constant.PaymentStatus;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Đối soát các đơn chuyển khoản còn PENDING sau khi URL thanh toán đã hết hạn (người dùng đóng trình duyệt
+ * trước khi về vnpayReturn và IPN không tới). Đơn được quét theo lô ID tăng dần từ checkpoint lưu trong
+ * scheduled_job_states, mỗi lô truy vấn VNPay song song với số luồng giới hạn (mọi vnp_TxnRef đã cấp cho đơn,
+ * xem payment_attempts) rồi áp dụng kết quả:
+ * giao dịch thành công đi qua hàng đợi payment_events như IPN, còn đơn thất bại / hết hạn được cập nhật
+ * hàng loạt bằng một câu UPDATE. Khóa thuê trên cùng dòng trạng thái bảo đảm chỉ một instance chạy.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentReconciliationService {
+    static final String JOB_NAME = "vnpay-reconciliation";
+
+    // Mã phản hồi querydr / trạng thái giao dịch theo tài liệu VNPay
+    private static final String RESPONSE_OK = "00";
+    private static final String RESPONSE_NOT_FOUND = "91";
+    private static final String TRANSACTION_SUCCESS = "00";
+    private static final String TRANSACTION_INCOMPLETE = "01";
+    private static final String TRANSACTION_ERROR = "02";
+
+    private static final String MESSAGE_EXPIRED = "Hết hạn thanh toán";
+    private static final String MESSAGE_FAILED = "Thanh toán không thành công";
+
+    private final OrderRepository orderRepository;
+    private final PaymentAttemptRepository paymentAttemptRepository;
+    private final ScheduledJobStateRepository jobStateRepository;
+    private final VNPayTransactionClient transactionClient;
+    private final PaymentEventService paymentEventService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    @Value("${vnpay.reconciliation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${vnpay.reconciliation.batch-size:200}")
+    private int batchSize;
+
+    @Value("${vnpay.reconciliation.max-batches-per-run:50}")
+    private int maxBatchesPerRun;
+
+    @Value("${vnpay.reconciliation.concurrency:8}")
+    private int concurrency;
+
+    @Value("${vnpay.reconciliation.grace-minutes:10}")
+    private long graceMinutes;
+
+    @Value("${vnpay.reconciliation.lease-seconds:600}")
+    private long leaseSeconds;
+
+    @Value("${vnpay.payment-ttl-minutes:15}")
+    private long paymentTtlMinutes;
+
+    private ExecutorService queryPool;
+
+    // Kết quả đối soát một đơn; khi gộp nhiều giao dịch của cùng đơn, kết quả đứng sau được ưu tiên (trừ PAID)
+    private enum Outcome { PAID, EXPIRED, FAILED, UNRESOLVED }
+
+    private record Checked(Long orderId, String paymentUrl, Outcome outcome, Map<String, String> response) {
+    }
+
+    @PostConstruct
+    void init() {
+        AtomicInteger counter = new AtomicInteger();
+        this.queryPool = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "vnpay-reconcile-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        this.queryPool.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${vnpay.reconciliation.interval-ms:300000}",
+               initialDelayString = "${vnpay.reconciliation.initial-delay-ms:60000}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        Long checkpoint = acquire();
+        if (checkpoint == null) {
+            log.debug("VNPay reconciliation is running on another instance");
+            return;
+        }
+
+        int batches = 0;
+        int[] totals = new int[Outcome.values().length];
+        try {
+            while (batches < maxBatchesPerRun) {
+                Instant expiredBefore = Instant.now().minus(Duration.ofMinutes(graceMinutes));
+                List<Object[]> rows = this.orderRepository.findStalePaymentRows(
+                        PaymentStatus.PENDING, PaymentMethod.TRANSFER, checkpoint,
+                        expiredBefore, expiredBefore.minus(Duration.ofMinutes(paymentTtlMinutes)),
+                        PageRequest.of(0, batchSize));
+                if (rows.isEmpty()) {
+                    // Hết một lượt quét: lần chạy sau bắt đầu lại từ đầu
+                    saveCheckpoint(0L);
+                    break;
+                }
+
+                for (Checked checked : reconcileBatch(rows)) {
+                    totals[checked.outcome().ordinal()]++;
+                }
+                checkpoint = (Long) rows.get(rows.size() - 1)[0];
+                batches++;
+                if (!saveCheckpoint(checkpoint)) {
+                    log.warn("Lost VNPay reconciliation lease at checkpoint {}, stopping", checkpoint);
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("VNPay reconciliation stopped at checkpoint {}", checkpoint, e);
+        } finally {
+            release();
+        }
+
+        if (batches > 0) {
+            log.info("VNPay reconciliation: {} batches, paid={}, failed={}, expired={}, unresolved={}, checkpoint={}",
+                    batches, totals[Outcome.PAID.ordinal()], totals[Outcome.FAILED.ordinal()],
+                    totals[Outcome.EXPIRED.ordinal()], totals[Outcome.UNRESOLVED.ordinal()], checkpoint);
+        }
+    }
+
+    private List<Checked> reconcileBatch(List<Object[]> rows) {
+        List<Long> orderIds = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            orderIds.add((Long) row[0]);
+        }
+        // Mọi vnp_TxnRef đã cấp cho các đơn trong lô: URL hiện tại có thể đã được ký lại sau URL người dùng thanh toán
+        Map<Long, List<String[]>> issued = new HashMap<>();
+        for (Object[] row : this.paymentAttemptRepository.findTxnRowsByOrderIds(orderIds)) {
+            issued.computeIfAbsent((Long) row[0], id -> new ArrayList<>())
+                    .add(new String[] { (String) row[1], (String) row[2] });
+        }
+
+        // Truy vấn VNPay song song, tối đa `concurrency` lời gọi cùng lúc
+        List<CompletableFuture<Checked>> futures = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Long orderId = (Long) row[0];
+            String paymentUrl = (String) row[1];
+            List<String[]> txns = issued.getOrDefault(orderId, List.of());
+            futures.add(CompletableFuture.supplyAsync(() -> check(orderId, paymentUrl, txns), this.queryPool));
+        }
+        List<Checked> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<Checked> future : futures) {
+            results.add(future.join());
+        }
+
+        List<Checked> failed = new ArrayList<>();
+        List<Checked> expired = new ArrayList<>();
+        for (Checked checked : results) {
+            switch (checked.outcome()) {
+                case PAID -> {
+                    // Cùng đường xử lý với IPN: ghi theo vnp_TxnRef rồi áp dụng trên luồng của đơn hàng
+                    try {
+                        PaymentEvent event = this.paymentEventService.record(
+                                checked.response(), PaymentEventService.SOURCE_QUERY);
+                        this.paymentEventService.enqueue(event);
+                    } catch (RuntimeException e) {
+                        log.error("Could not record reconciled payment for order {}", checked.orderId(), e);
+                    }
+                }
+                case FAILED -> failed.add(checked);
+                case EXPIRED -> expired.add(checked);
+                default -> {
+                }
+            }
+        }
+        markFailed(failed, MESSAGE_FAILED);
+        markFailed(expired, MESSAGE_EXPIRED);
+        return results;
+    }
+
+    /**
+     * Đối soát một đơn qua mọi vnp_TxnRef đã cấp: chỉ một giao dịch thành công là đủ để coi là đã thanh toán,
+     * còn thất bại / hết hạn chỉ được kết luận khi không còn giao dịch nào chưa rõ kết quả
+     */
+    private Checked check(Long orderId, String paymentUrl, List<String[]> issuedTxns) {
+        List<String[]> txns = issuedTxns;
+        if (txns.isEmpty()) {
+            // Đơn có URL từ trước khi ghi payment_attempts: chỉ biết vnp_TxnRef của URL hiện tại
+            Map<String, String> urlParams = queryParams(paymentUrl);
+            String txnRef = urlParams.get("vnp_TxnRef");
+            String transactionDate = urlParams.get("vnp_CreateDate");
+            if (txnRef == null || transactionDate == null) {
+                log.warn("Order {} has a payment URL without vnp_TxnRef / vnp_CreateDate, skipping", orderId);
+                return new Checked(orderId, paymentUrl, Outcome.UNRESOLVED, null);
+            }
+            txns = Collections.singletonList(new String[] { txnRef, transactionDate });
+        }
+
+        Outcome outcome = Outcome.EXPIRED;
+        Map<String, String> lastResponse = null;
+        for (String[] txn : txns) {
+            Checked checked = query(orderId, paymentUrl, txn[0], txn[1]);
+            if (checked.outcome() == Outcome.PAID) {
+                return checked;
+            }
+            if (checked.outcome().ordinal() > outcome.ordinal()) {
+                outcome = checked.outcome();
+            }
+            lastResponse = checked.response();
+        }
+        return new Checked(orderId, paymentUrl, outcome, lastResponse);
+    }
+
+    private Checked query(Long orderId, String paymentUrl, String txnRef, String transactionDate) {
+        Map<String, String> response;
+        try {
+            response = new HashMap<>(this.transactionClient.queryTransaction(txnRef, transactionDate));
+        } catch (RuntimeException e) {
+            log.warn("VNPay query failed for order {} (txnRef {}): {}", orderId, txnRef, e.getMessage());
+            return new Checked(orderId, paymentUrl, Outcome.UNRESOLVED, null);
+        }
+        response.putIfAbsent("vnp_TxnRef", txnRef);
+
+        String responseCode = response.get("vnp_ResponseCode");
+        String transactionStatus = response.get("vnp_TransactionStatus");
+        if (RESPONSE_NOT_FOUND.equals(responseCode)) {
+            // URL đã hết hạn mà VNPay không có giao dịch: người dùng chưa thanh toán
+            return new Checked(orderId, paymentUrl, Outcome.EXPIRED, response);
+        }
+        if (!RESPONSE_OK.equals(responseCode)) {
+            log.warn("VNPay query for order {} (txnRef {}) returned code {}", orderId, txnRef, responseCode);
+            return new Checked(orderId, paymentUrl, Outcome.UNRESOLVED, response);
+        }
+        if (TRANSACTION_SUCCESS.equals(transactionStatus)) {
+            return new Checked(orderId, paymentUrl, Outcome.PAID, response);
+        }
+        if (TRANSACTION_INCOMPLETE.equals(transactionStatus)) {
+            // Giao dịch bỏ dở trên cổng VNPay và URL đã hết hạn
+            return new Checked(orderId, paymentUrl, Outcome.EXPIRED, response);
+        }
+        if (TRANSACTION_ERROR.equals(transactionStatus)) {
+            return new Checked(orderId, paymentUrl, Outcome.FAILED, response);
+        }
+        // Hoàn tiền, nghi ngờ gian lận, ...: cần xử lý thủ công
+        log.info("Order {} (txnRef {}) has VNPay transaction status {}, left pending", orderId, txnRef, transactionStatus);
+        return new Checked(orderId, paymentUrl, Outcome.UNRESOLVED, response);
+    }
+
+    private void markFailed(List<Checked> checkedOrders, String message) {
+        if (checkedOrders.isEmpty()) {
+            return;
+        }
+        Map<Long, String> queriedUrls = new HashMap<>();
+        for (Checked checked : checkedOrders) {
+            queriedUrls.put(checked.orderId(), checked.paymentUrl());
+        }
+        this.transactionTemplate.executeWithoutResult(status -> {
+            // Khóa trước rồi chỉ đổi các đơn còn PENDING và vẫn giữ đúng URL đã đối soát: IPN có thể vừa cập nhật
+            // một số đơn, hoặc người dùng vừa nhận URL mới (còn hạn, chưa được truy vấn) trong lúc gọi VNPay
+            List<Long> lockedIds = new ArrayList<>();
+            Set<Long> cancelledIds = new HashSet<>();
+            for (Object[] row : this.orderRepository.lockPaymentUrlRowsByPaymentStatus(
+                    queriedUrls.keySet(), PaymentStatus.PENDING)) {
+                Long orderId = (Long) row[0];
+                if (Objects.equals(row[1], queriedUrls.get(orderId))) {
+                    lockedIds.add(orderId);
+                    if (row[2] == OrderStatus.CANCELLED) {
+                        cancelledIds.add(orderId);
+                    }
+                }
+            }
+            if (lockedIds.isEmpty()) {
+                return;
+            }
+            this.orderRepository.updatePaymentStatus(lockedIds, PaymentStatus.PENDING, PaymentStatus.FAILED,
+                    message, Instant.now());
+            for (Long orderId : lockedIds) {
+                this.eventPublisher.publishEvent(new OrderPaymentStatusChangedEvent(
+                        orderId, PaymentStatus.PENDING, PaymentStatus.FAILED, cancelledIds.contains(orderId)));
+            }
+        });
+    }
+
+    /**
+     * Nhận khóa thuê của tác vụ
+     * @return checkpoint hiện tại, null nếu instance khác đang giữ khóa
+     */
+    private Long acquire() {
+        if (!this.jobStateRepository.existsById(JOB_NAME)) {
+            try {
+                this.transactionTemplate.executeWithoutResult(status ->
+                        this.jobStateRepository.saveAndFlush(ScheduledJobState.builder().name(JOB_NAME).build()));
+            } catch (DataIntegrityViolationException e) {
+                // Instance khác vừa tạo dòng trạng thái
+            }
+        }
+        return this.transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            if (this.jobStateRepository.tryLock(JOB_NAME, owner, now.plusSeconds(leaseSeconds), now) == 0) {
+                return null;
+            }
+            return this.jobStateRepository.findById(JOB_NAME).map(ScheduledJobState::getCheckpoint).orElse(0L);
+        });
+    }
+
+    private boolean saveCheckpoint(long checkpoint) {
+        Integer updated = this.transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            return this.jobStateRepository.saveCheckpoint(JOB_NAME, owner, checkpoint, now.plusSeconds(leaseSeconds), now);
+        });
+        return updated != null && updated > 0;
+    }
+
+    private void release() {
+        try {
+            this.transactionTemplate.executeWithoutResult(status ->
+                    this.jobStateRepository.unlock(JOB_NAME, owner, Instant.now()));
+        } catch (RuntimeException e) {
+            log.warn("Could not release VNPay reconciliation lease: {}", e.getMessage());
+        }
+    }
+
+    private static Map<String, String> queryParams(String url) {
+        Map<String, String> params = new HashMap<>();
+        int start = url.indexOf('?');
+        if (start < 0) {
+            return params;
+        }
+        for (String pair : url.substring(start + 1).split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.US_ASCII));
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,218 @@
+package com.lat.be.service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.lat.be.domain.event.OrderPaymentStatusChangedEvent;
+import com.lat.be.repository.OrderRepository;
+import com.lat.be.util.constant.PaymentStatus;
+import com.lat.be.util.error.IdInvalidException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Đẩy trạng thái thanh toán của đơn hàng tới client qua Server-Sent Events thay cho việc hỏi lại liên tục.
+ * Mỗi kết nối chỉ là một SseEmitter (request bất đồng bộ, không giữ luồng servlet) nằm trong danh sách theo ID đơn hàng;
+ * trạng thái mới được gửi ngay sau khi giao dịch cập nhật thanh toán commit, trên luồng gửi riêng của đơn hàng
+ * (không chặn luồng xử lý thanh toán khi client chậm, vẫn giữ thứ tự theo từng đơn). Một luồng riêng gửi heartbeat
+ * định kỳ để proxy không cắt kết nối rảnh và để phát hiện client đã đóng. Danh sách nằm trong bộ nhớ của từng instance.
+ * Chỉ chủ đơn hàng hoặc admin được theo dõi.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentStatusBroadcaster {
+    public static final String EVENT_NAME = "payment-status";
+
+    private final OrderRepository orderRepository;
+
+    @Value("${payment.sse.timeout-ms:900000}")
+    private long timeoutMs;
+
+    @Value("${payment.sse.heartbeat-interval-ms:20000}")
+    private long heartbeatIntervalMs;
+
+    @Value("${payment.sse.max-subscriptions:50000}")
+    private int maxSubscriptions;
+
+    @Value("${payment.sse.retry-ms:5000}")
+    private long retryMs;
+
+    @Value("${payment.sse.sender-threads:2}")
+    private int senderThreads;
+
+    private final Map<Long, List<SseEmitter>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private ScheduledExecutorService heartbeat;
+    // Mỗi luồng một hàng đợi; đơn hàng được gán cố định vào một luồng theo ID
+    private ExecutorService[] senders;
+
+    @PostConstruct
+    void init() {
+        this.senders = new ExecutorService[senderThreads];
+        for (int i = 0; i < senderThreads; i++) {
+            String name = "payment-sse-sender-" + i;
+            this.senders[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-sse-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.heartbeat.scheduleWithFixedDelay(this::sendHeartbeats,
+                heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        this.heartbeat.shutdownNow();
+        for (ExecutorService sender : this.senders) {
+            sender.shutdownNow();
+        }
+        this.subscriptions.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        this.subscriptions.clear();
+    }
+
+    /**
+     * Đăng ký nhận trạng thái thanh toán của đơn hàng. Trạng thái hiện tại được gửi ngay;
+     * kết nối tự đóng khi đơn hàng không còn chờ thanh toán hoặc hết thời gian chờ (client sẽ tự kết nối lại).
+     * @param userId người dùng hiện tại
+     * @param admin người dùng hiện tại có quyền admin (được theo dõi mọi đơn hàng)
+     * @throws IdInvalidException nếu không tìm thấy đơn hàng hoặc đơn hàng không thuộc về người dùng
+     */
+    public SseEmitter subscribe(Long orderId, Long userId, boolean admin) throws IdInvalidException {
+        // Đơn của người khác được báo như không tồn tại để không lộ ID đơn hàng
+        boolean allowed = admin
+                ? this.orderRepository.existsById(orderId)
+                : this.orderRepository.findUserIdById(orderId).filter(userId::equals).isPresent();
+        if (!allowed) {
+            throw new IdInvalidException("Không tìm thấy đơn hàng với ID: " + orderId);
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        boolean registered = register(orderId, emitter);
+
+        // Đọc trạng thái sau khi đăng ký để không bỏ lỡ thay đổi xảy ra ở giữa
+        PaymentStatus current = this.orderRepository.findPaymentStatusById(orderId).orElse(null);
+        if (!send(emitter, orderId, current) || current != PaymentStatus.PENDING) {
+            emitter.complete();
+        } else if (!registered) {
+            // Quá số kết nối cho phép: trả trạng thái hiện tại rồi để client thử lại sau
+            log.warn("Payment status subscriptions full ({}), order {} must retry", maxSubscriptions, orderId);
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentStatusChanged(OrderPaymentStatusChangedEvent event) {
+        Long orderId = event.getOrderId();
+        if (!this.subscriptions.containsKey(orderId)) {
+            return;
+        }
+        ExecutorService sender = this.senders[(int) Math.floorMod(orderId, (long) this.senders.length)];
+        try {
+            sender.execute(() -> push(orderId, event.getNewStatus()));
+        } catch (RejectedExecutionException e) {
+            log.debug("Payment status for order {} not pushed (shutting down)", orderId);
+        }
+    }
+
+    private void push(Long orderId, PaymentStatus status) {
+        List<SseEmitter> emitters = this.subscriptions.get(orderId);
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            if (send(emitter, orderId, status) && status != PaymentStatus.PENDING) {
+                emitter.complete();
+            }
+        }
+    }
+
+    public int getSubscriptionCount() {
+        return this.count.get();
+    }
+
+    private boolean register(Long orderId, SseEmitter emitter) {
+        if (this.count.incrementAndGet() > maxSubscriptions) {
+            this.count.decrementAndGet();
+            return false;
+        }
+        this.subscriptions.computeIfAbsent(orderId, id -> new CopyOnWriteArrayList<>()).add(emitter);
+        Runnable remove = () -> unregister(orderId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> remove.run());
+        return true;
+    }
+
+    private void unregister(Long orderId, SseEmitter emitter) {
+        // computeIfPresent để bỏ danh sách rỗng mà không xóa nhầm emitter vừa được thêm bởi luồng khác
+        this.subscriptions.computeIfPresent(orderId, (id, emitters) -> {
+            if (emitters.remove(emitter)) {
+                this.count.decrementAndGet();
+            }
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private boolean send(SseEmitter emitter, Long orderId, PaymentStatus status) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("orderId", orderId);
+        data.put("paymentStatus", status);
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(EVENT_NAME)
+                    .reconnectTime(retryMs)
+                    .data(data, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Client đã đóng kết nối hoặc emitter đã hoàn tất
+            unregister(orderId, emitter);
+            return false;
+        }
+    }
+
+    private void sendHeartbeats() {
+        int dropped = 0;
+        for (Map.Entry<Long, List<SseEmitter>> entry : this.subscriptions.entrySet()) {
+            for (SseEmitter emitter : entry.getValue()) {
+                try {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                } catch (IOException | IllegalStateException e) {
+                    unregister(entry.getKey(), emitter);
+                    dropped++;
+                } catch (RuntimeException e) {
+                    log.warn("Payment status heartbeat failed for order {}: {}", entry.getKey(), e.getMessage());
+                }
+            }
+        }
+        if (dropped > 0) {
+            log.debug("Dropped {} closed payment status subscriptions", dropped);
+        }
+    }
+}
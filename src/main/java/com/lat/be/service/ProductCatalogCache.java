@@ -0,0 +1,201 @@
+package com.lat.be.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lat.be.domain.Product;
+import com.lat.be.domain.event.CatalogChangedEvent;
+import com.lat.be.domain.response.ProductCardDTO;
+import com.lat.be.domain.response.ResultPaginationDTO;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bản đọc danh mục sản phẩm trong bộ nhớ cho các API công khai.
+ * Sản phẩm đầy đủ được lưu theo ID (cho trang chi tiết), kèm danh sách thẻ sản phẩm theo danh mục / nhà cung cấp
+ * và các trang không lọc.
+ * Mọi cache đều giới hạn kích thước và thời gian sống; dữ liệu bị xóa ngay sau khi giao dịch ghi commit:
+ * thay đổi tồn kho chỉ xóa sản phẩm đó, danh sách và trang chỉ bị xóa khi thay đổi hiện ra trên thẻ sản phẩm.
+ * Bản tải xong sau một lần xóa nhưng đọc dữ liệu từ trước đó bị bỏ nhờ so thế hệ (listGeneration).
+ * Đối tượng trong cache chỉ dùng để trả về client, không được sửa hoặc truyền vào luồng ghi.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductCatalogCache {
+    private final MeterRegistry meterRegistry;
+
+    @Value("${catalog.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${catalog.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${catalog.cache.max-products:10000}")
+    private long maxProducts;
+
+    @Value("${catalog.cache.max-lists:1000}")
+    private long maxLists;
+
+    @Value("${catalog.cache.max-pages:500}")
+    private long maxPages;
+
+    private Cache<Long, Product> productsById;
+    private Cache<Long, List<ProductCardDTO>> cardsByCategory;
+    private Cache<Long, List<ProductCardDTO>> cardsBySupplier;
+    private Cache<String, ResultPaginationDTO> pages;
+    // Tăng trước mỗi lần xóa danh sách / trang; bản tải bắt đầu ở thế hệ cũ không được giữ lại
+    private final AtomicLong listGeneration = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        this.productsById = Caffeine.newBuilder().maximumSize(maxProducts).expireAfterWrite(ttl).recordStats().build();
+        this.cardsByCategory = Caffeine.newBuilder().maximumSize(maxLists).expireAfterWrite(ttl).recordStats().build();
+        this.cardsBySupplier = Caffeine.newBuilder().maximumSize(maxLists).expireAfterWrite(ttl).recordStats().build();
+        this.pages = Caffeine.newBuilder().maximumSize(maxPages).expireAfterWrite(ttl).recordStats().build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, productsById, "catalog.products");
+        CaffeineCacheMetrics.monitor(meterRegistry, cardsByCategory, "catalog.category");
+        CaffeineCacheMetrics.monitor(meterRegistry, cardsBySupplier, "catalog.supplier");
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "catalog.pages");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Lấy sản phẩm theo ID, gọi loader khi chưa có trong cache (loader trả về null thì không lưu)
+     */
+    public Product getProduct(Long id, Function<Long, Product> loader) {
+        // Xóa theo ID chờ lần tải đang chạy nên chỉ cần so thế hệ cho lần xóa toàn bộ
+        long generation = this.listGeneration.get();
+        Product product = this.productsById.get(id, loader);
+        discardIfStale(this.productsById, id, product, generation);
+        return product;
+    }
+
+    /**
+     * Thế hệ hiện tại, đọc trước khi tải danh sách rồi truyền lại cho putCategoryCards / putSupplierCards
+     */
+    public long listGeneration() {
+        return this.listGeneration.get();
+    }
+
+    /**
+     * Thẻ sản phẩm của danh mục, null nếu chưa có trong cache
+     */
+    public List<ProductCardDTO> getCategoryCards(Long categoryId) {
+        return this.cardsByCategory.getIfPresent(categoryId);
+    }
+
+    public void putCategoryCards(Long categoryId, List<ProductCardDTO> cards, long generation) {
+        List<ProductCardDTO> copy = List.copyOf(cards);
+        this.cardsByCategory.put(categoryId, copy);
+        discardIfStale(this.cardsByCategory, categoryId, copy, generation);
+    }
+
+    /**
+     * Thẻ sản phẩm của nhà cung cấp, null nếu chưa có trong cache
+     */
+    public List<ProductCardDTO> getSupplierCards(Long supplierId) {
+        return this.cardsBySupplier.getIfPresent(supplierId);
+    }
+
+    public void putSupplierCards(Long supplierId, List<ProductCardDTO> cards, long generation) {
+        List<ProductCardDTO> copy = List.copyOf(cards);
+        this.cardsBySupplier.put(supplierId, copy);
+        discardIfStale(this.cardsBySupplier, supplierId, copy, generation);
+    }
+
+    /**
+     * Lấy các sản phẩm theo danh sách ID (giữ thứ tự); sản phẩm đã bị đẩy khỏi cache được tải lại bằng một truy vấn IN
+     */
+    public List<Product> getProducts(List<Long> ids, Function<List<Long>, List<Product>> bulkLoader) {
+        long generation = this.listGeneration.get();
+        Map<Long, Product> cached = this.productsById.getAll(ids, missing -> {
+            Map<Long, Product> loaded = new HashMap<>();
+            for (Product product : bulkLoader.apply(new ArrayList<>(missing))) {
+                loaded.put(product.getId(), product);
+            }
+            return loaded;
+        });
+        cached.forEach((id, product) -> discardIfStale(this.productsById, id, product, generation));
+        List<Product> products = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Product product = cached.get(id);
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Lấy trang sản phẩm không có bộ lọc, khóa theo số trang, kích thước và thứ tự sắp xếp
+     */
+    public ResultPaginationDTO getPage(Pageable pageable, Supplier<ResultPaginationDTO> loader) {
+        String key = pageable.getPageNumber() + ":" + pageable.getPageSize() + ":" + pageable.getSort();
+        long generation = this.listGeneration.get();
+        ResultPaginationDTO page = this.pages.get(key, k -> loader.get());
+        discardIfStale(this.pages, key, page, generation);
+        return page;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        switch (event.getScope()) {
+            case STOCK:
+            case PRODUCT:
+                // Trang chi tiết có số lượng nên luôn bị xóa; thẻ sản phẩm chỉ cũ khi trạng thái, giá... thay đổi
+                this.productsById.invalidateAll(event.getProductIds());
+                if (event.isListingChanged()) {
+                    invalidateListings();
+                }
+                break;
+            case ALL:
+            default:
+                invalidateAll();
+        }
+    }
+
+    public void invalidateAll() {
+        invalidateListings();
+        this.productsById.invalidateAll();
+    }
+
+    private void invalidateListings() {
+        this.listGeneration.incrementAndGet();
+        this.cardsByCategory.invalidateAll();
+        this.cardsBySupplier.invalidateAll();
+        this.pages.invalidateAll();
+    }
+
+    /**
+     * Bỏ giá trị vừa lưu nếu có lần xóa xảy ra trong lúc tải (giá trị có thể được đọc trước khi giao dịch ghi commit).
+     * Lần xóa sau khi lưu tự xóa giá trị này nên chỉ cần kiểm tra sau khi lưu.
+     */
+    private <K, V> void discardIfStale(Cache<K, V> cache, K key, V value, long generation) {
+        if (value != null && this.listGeneration.get() != generation) {
+            cache.asMap().remove(key, value);
+        }
+    }
+}
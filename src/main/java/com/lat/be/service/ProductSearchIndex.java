@@ -0,0 +1,271 @@
+package com.lat.be.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.lat.be.domain.event.CatalogChangedEvent;
+import com.lat.be.repository.ProductRepository;
+import com.lat.be.util.TextNormalizer;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chỉ mục ngược trong bộ nhớ cho tên và mô tả sản phẩm, xếp hạng bằng BM25.
+ * Mỗi từ trong truy vấn khớp chính xác hoặc theo tiền tố (giới hạn số từ mở rộng),
+ * sản phẩm phải khớp tất cả các từ. Chi phí tìm kiếm phụ thuộc số sản phẩm chứa các từ truy vấn,
+ * không phụ thuộc tổng số sản phẩm.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Từ trong tên sản phẩm được tính nặng hơn từ trong mô tả
+    private static final int NAME_WEIGHT = 3;
+    private static final double PREFIX_WEIGHT = 0.5;
+
+    private final ProductRepository productRepository;
+
+    @Value("${search.max-prefix-expansions:50}")
+    private int maxPrefixExpansions;
+
+    @Value("${search.build-batch-size:1000}")
+    private int buildBatchSize;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // term -> (productId -> tần suất có trọng số)
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    // Từ điển có thứ tự để tìm theo tiền tố
+    private final TreeSet<String> terms = new TreeSet<>();
+    private final Map<Long, Set<String>> documentTerms = new HashMap<>();
+    private final Map<Long, Integer> documentLengths = new HashMap<>();
+    private long totalLength;
+
+    @Getter
+    @AllArgsConstructor
+    public static class SearchPage {
+        private final List<Long> productIds;
+        private final long total;
+    }
+
+    private static class ScoredDocument {
+        final Long productId;
+        final double score;
+
+        ScoredDocument(Long productId, double score) {
+            this.productId = productId;
+            this.score = score;
+        }
+    }
+
+    private static final Comparator<ScoredDocument> BY_SCORE = Comparator
+            .comparingDouble((ScoredDocument document) -> document.score)
+            .thenComparing(document -> document.productId);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        try {
+            long count = 0;
+            Long afterId = 0L;
+            while (true) {
+                List<Object[]> rows = this.productRepository.findSearchDocumentsAfter(afterId, PageRequest.of(0, buildBatchSize));
+                if (rows.isEmpty()) {
+                    break;
+                }
+                index(rows);
+                count += rows.size();
+                afterId = (Long) rows.get(rows.size() - 1)[0];
+            }
+            log.info("Product search index built with {} products", count);
+        } catch (Exception e) {
+            log.error("Failed to build product search index", e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        // Thay đổi tồn kho, danh mục hay nhà cung cấp không ảnh hưởng tên / mô tả
+        if (event.getScope() != CatalogChangedEvent.Scope.PRODUCT) {
+            return;
+        }
+        try {
+            List<Object[]> rows = this.productRepository.findSearchDocumentsByIds(event.getProductIds());
+            Set<Long> found = new HashSet<>();
+            for (Object[] row : rows) {
+                found.add((Long) row[0]);
+            }
+            this.lock.writeLock().lock();
+            try {
+                for (Long productId : event.getProductIds()) {
+                    if (!found.contains(productId)) {
+                        remove(productId);
+                    }
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+            index(rows);
+        } catch (Exception e) {
+            log.error("Failed to update product search index for {}", event.getProductIds(), e);
+        }
+    }
+
+    /**
+     * Tìm sản phẩm, trả về ID theo thứ tự điểm giảm dần cho trang yêu cầu và tổng số kết quả
+     */
+    public SearchPage search(String query, int offset, int limit) {
+        List<String> tokens = TextNormalizer.tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return new SearchPage(List.of(), 0);
+        }
+
+        this.lock.readLock().lock();
+        try {
+            int documentCount = this.documentLengths.size();
+            if (documentCount == 0) {
+                return new SearchPage(List.of(), 0);
+            }
+            double averageLength = (double) this.totalLength / documentCount;
+
+            Map<Long, Double> scores = null;
+            for (String token : new HashSet<>(tokens)) {
+                Map<Long, Double> tokenScores = scoreToken(token, documentCount, averageLength);
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                        entry.setValue(entry.getValue() + tokenScores.get(entry.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return new SearchPage(List.of(), 0);
+                }
+            }
+
+            // Chỉ giữ offset + limit kết quả tốt nhất trong min-heap thay vì sắp xếp toàn bộ
+            int keep = offset + limit;
+            PriorityQueue<ScoredDocument> top = new PriorityQueue<>(BY_SCORE);
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                ScoredDocument document = new ScoredDocument(entry.getKey(), entry.getValue());
+                if (top.size() < keep) {
+                    top.add(document);
+                } else if (BY_SCORE.compare(document, top.peek()) > 0) {
+                    top.poll();
+                    top.add(document);
+                }
+            }
+            List<ScoredDocument> ranked = new ArrayList<>(top);
+            ranked.sort(BY_SCORE.reversed());
+
+            List<Long> productIds = new ArrayList<>();
+            for (int i = offset; i < ranked.size(); i++) {
+                productIds.add(ranked.get(i).productId);
+            }
+            return new SearchPage(productIds, scores.size());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Double> scoreToken(String token, int documentCount, double averageLength) {
+        Map<Long, Double> tokenScores = new HashMap<>();
+        int expansions = 0;
+        for (String term : this.terms.tailSet(token, true)) {
+            if (!term.startsWith(token) || expansions >= maxPrefixExpansions) {
+                break;
+            }
+            expansions++;
+            double weight = term.equals(token) ? 1.0 : PREFIX_WEIGHT;
+            Map<Long, Integer> termPostings = this.postings.get(term);
+            int documentFrequency = termPostings.size();
+            double idf = Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+            for (Map.Entry<Long, Integer> posting : termPostings.entrySet()) {
+                int frequency = posting.getValue();
+                int length = this.documentLengths.get(posting.getKey());
+                double score = weight * idf * (frequency * (K1 + 1))
+                        / (frequency + K1 * (1 - B + B * length / averageLength));
+                tokenScores.merge(posting.getKey(), score, Math::max);
+            }
+        }
+        return tokenScores;
+    }
+
+    private void index(Collection<Object[]> rows) {
+        // Tách từ ngoài khóa ghi để không chặn tìm kiếm lâu
+        Map<Long, Map<String, Integer>> documents = new HashMap<>();
+        for (Object[] row : rows) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String token : TextNormalizer.tokenize((String) row[1])) {
+                frequencies.merge(token, NAME_WEIGHT, Integer::sum);
+            }
+            for (String token : TextNormalizer.tokenize((String) row[2])) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+            documents.put((Long) row[0], frequencies);
+        }
+
+        this.lock.writeLock().lock();
+        try {
+            for (Map.Entry<Long, Map<String, Integer>> document : documents.entrySet()) {
+                Long productId = document.getKey();
+                remove(productId);
+                int length = 0;
+                for (Map.Entry<String, Integer> term : document.getValue().entrySet()) {
+                    this.postings.computeIfAbsent(term.getKey(), key -> {
+                        this.terms.add(key);
+                        return new HashMap<>();
+                    }).put(productId, term.getValue());
+                    length += term.getValue();
+                }
+                this.documentTerms.put(productId, document.getValue().keySet());
+                this.documentLengths.put(productId, length);
+                this.totalLength += length;
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    // Gọi khi đang giữ khóa ghi
+    private void remove(Long productId) {
+        Set<String> previousTerms = this.documentTerms.remove(productId);
+        if (previousTerms == null) {
+            return;
+        }
+        for (String term : previousTerms) {
+            Map<Long, Integer> termPostings = this.postings.get(term);
+            if (termPostings != null) {
+                termPostings.remove(productId);
+                if (termPostings.isEmpty()) {
+                    this.postings.remove(term);
+                    this.terms.remove(term);
+                }
+            }
+        }
+        Integer length = this.documentLengths.remove(productId);
+        if (length != null) {
+            this.totalLength -= length;
+        }
+    }
+}
@@ -4,14 +4,18 @@ import com.lat.be.domain.Category;
 import com.lat.be.domain.Product;
 import com.lat.be.domain.Supplier;
 import com.lat.be.domain.enumeration.ProductStatus;
+import com.lat.be.domain.event.CatalogChangedEvent;
 import com.lat.be.domain.mapper.ProductMapper;
 import com.lat.be.domain.request.CreateProductDTO;
+import com.lat.be.domain.response.ProductCardDTO;
 import com.lat.be.domain.response.ResultPaginationDTO;
 import com.lat.be.repository.CategoryRepository;
 import com.lat.be.repository.ProductRepository;
 import com.lat.be.repository.SupplierRepository;
+import com.lat.be.util.CursorPagination;
 import com.lat.be.util.error.IdInvalidException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -19,17 +23,27 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
+    // Thuộc tính của thẻ sản phẩm được phép sắp xếp khi phân trang theo con trỏ
+    private static final Set<String> CURSOR_SORTS = Set.of("name", "sellPrice");
+
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final SupplierRepository supplierRepository;
     private final CloudinaryService cloudinaryService;
     private final ProductMapper productMapper;
+    private final ProductCatalogCache catalogCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProductSearchIndex searchIndex;
 
     // Lấy tất cả sản phẩm
     public List<Product> getAll() {
@@ -38,10 +52,28 @@ public class ProductService {
 
     // Lấy danh sách sản phẩm phân trang
     public ResultPaginationDTO getAll(Specification<Product> productSpec, Pageable pageable) {
+        // Chỉ cache các trang không có bộ lọc
+        if (productSpec == null && this.catalogCache.isEnabled()) {
+            return this.catalogCache.getPage(pageable, () -> this.findPage(null, pageable));
+        }
+        return this.findPage(productSpec, pageable);
+    }
+
+    // Lấy danh sách sản phẩm theo con trỏ (không đếm tổng số)
+    public ResultPaginationDTO getAllByCursor(Specification<Product> productSpec, Pageable pageable, String cursor)
+            throws IdInvalidException {
+        return CursorPagination.fetch(productSpec, pageable, cursor, CURSOR_SORTS,
+                (spec, sort, limit) -> toCards(this.productRepository.findCardRows(spec, sort, limit)),
+                cards -> cards);
+    }
+
+    // Các API danh sách chỉ trả về thẻ sản phẩm, chi tiết đầy đủ lấy qua getPublicById
+    private ResultPaginationDTO findPage(Specification<Product> productSpec, Pageable pageable) {
         int pageNumber = pageable.getPageNumber();
         
         // Sử dụng pageable trực tiếp
-        Page<Product> orderPage = this.productRepository.findAll(productSpec, pageable);
+        Page<ProductCardDTO> orderPage = this.productRepository.findCardRows(productSpec, pageable)
+                .map(ProductCardDTO::fromRow);
         
         ResultPaginationDTO result = new ResultPaginationDTO();
         ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
@@ -56,12 +88,83 @@ public class ProductService {
         return result;
     }
 
+    // Tìm kiếm sản phẩm theo tên và mô tả (không phân biệt dấu)
+    public ResultPaginationDTO search(String query, Pageable pageable) {
+        ProductSearchIndex.SearchPage searchPage = this.searchIndex.search(
+                query, (int) pageable.getOffset(), pageable.getPageSize());
+        List<Long> productIds = searchPage.getProductIds();
+        List<ProductCardDTO> cards = productIds.isEmpty() ? List.of() : this.findCardsByIds(productIds);
+
+        ResultPaginationDTO result = new ResultPaginationDTO();
+        ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
+        meta.setPage(pageable.getPageNumber() + 1);
+        meta.setPageSize(pageable.getPageSize());
+        meta.setPages((int) ((searchPage.getTotal() + pageable.getPageSize() - 1) / pageable.getPageSize()));
+        meta.setTotal(searchPage.getTotal());
+
+        result.setMeta(meta);
+        result.setResult(cards);
+        return result;
+    }
+
+    // Thẻ sản phẩm theo thứ tự ID cho trước (bỏ qua ID không tồn tại); dùng bản trong cache nếu có
+    private List<ProductCardDTO> findCardsByIds(List<Long> ids) {
+        if (this.catalogCache.isEnabled()) {
+            List<ProductCardDTO> cards = new ArrayList<>(ids.size());
+            for (Product product : this.catalogCache.getProducts(ids, this.productRepository::findAllById)) {
+                cards.add(ProductCardDTO.fromProduct(product));
+            }
+            return cards;
+        }
+        Map<Long, ProductCardDTO> byId = new HashMap<>();
+        for (Object[] row : this.productRepository.findCardRowsByIds(ids)) {
+            ProductCardDTO card = ProductCardDTO.fromRow(row);
+            byId.put(card.getId(), card);
+        }
+        List<ProductCardDTO> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            if (byId.containsKey(id)) {
+                ordered.add(byId.get(id));
+            }
+        }
+        return ordered;
+    }
+
+    private List<ProductCardDTO> toCards(List<Object[]> rows) {
+        List<ProductCardDTO> cards = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            cards.add(ProductCardDTO.fromRow(row));
+        }
+        return cards;
+    }
+
     // Lấy sản phẩm theo ID
     public Product getById(Long id) throws IdInvalidException {
         return productRepository.findById(id)
                 .orElseThrow(() -> new IdInvalidException("Không tìm thấy sản phẩm với ID: " + id));
     }
 
+    // Lấy sản phẩm theo ID cho API công khai (có thể trả về bản trong cache, không dùng để cập nhật)
+    public Product getPublicById(Long id) throws IdInvalidException {
+        Product product = this.catalogCache.isEnabled()
+                ? this.catalogCache.getProduct(id, key -> this.productRepository.findById(key).orElse(null))
+                : this.productRepository.findById(id).orElse(null);
+        if (product == null) {
+            throw new IdInvalidException("Không tìm thấy sản phẩm với ID: " + id);
+        }
+        return product;
+    }
+
+    // Lấy nhiều sản phẩm theo ID cho API công khai bằng một truy vấn IN (bỏ qua ID không tồn tại)
+    public List<Product> getPublicByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return this.catalogCache.isEnabled()
+                ? this.catalogCache.getProducts(ids, this.productRepository::findAllById)
+                : this.productRepository.findAllById(ids);
+    }
+
     // Kiểm tra xem sản phẩm có tồn tại không
     public Product fetchProductById(Long id) {
         Optional<Product> productOptional = this.productRepository.findById(id);
@@ -100,7 +203,9 @@ public class ProductService {
             product.setImage(imageUrl);
         }
 
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        this.eventPublisher.publishEvent(CatalogChangedEvent.product(savedProduct.getId()));
+        return savedProduct;
     }
 
     // Cập nhật sản phẩm
@@ -123,6 +228,8 @@ public class ProductService {
             throw new IdInvalidException("Không tìm thấy nhà cung cấp với ID: " + product.getSupplier().getId());
         }
 
+        // Chỉ mô tả / số lượng thay đổi thì các danh sách thẻ sản phẩm trong cache vẫn đúng
+        ProductCardDTO cardBefore = ProductCardDTO.fromProduct(existingProduct);
         existingProduct.setName(product.getName());
         existingProduct.setDescription(product.getDescription());
         existingProduct.setSellPrice(product.getSellPrice());
@@ -141,7 +248,10 @@ public class ProductService {
             existingProduct.setImage(imageUrl);
         }
         
-        return this.productRepository.save(existingProduct);
+        Product savedProduct = this.productRepository.save(existingProduct);
+        this.eventPublisher.publishEvent(CatalogChangedEvent.product(id,
+                !cardBefore.equals(ProductCardDTO.fromProduct(savedProduct))));
+        return savedProduct;
     }
 
     // Xóa sản phẩm
@@ -151,23 +261,41 @@ public class ProductService {
             throw new IdInvalidException("Không tìm thấy sản phẩm với ID: " + id);
         }
         this.productRepository.deleteById(id);
+        this.eventPublisher.publishEvent(CatalogChangedEvent.product(id));
     }
 
-    // Lấy sản phẩm theo danh mục
-    public List<Product> getByCategory(Long categoryId) throws IdInvalidException {
-        Optional<Category> categoryOptional = this.categoryRepository.findById(categoryId);
-        if (categoryOptional.isEmpty()) {
+    // Lấy thẻ sản phẩm theo danh mục
+    public List<ProductCardDTO> getByCategory(Long categoryId) throws IdInvalidException {
+        // Danh sách đã có trong cache nghĩa là danh mục tồn tại nên chỉ kiểm tra khi tải mới
+        List<ProductCardDTO> cachedCards = this.catalogCache.isEnabled() ? this.catalogCache.getCategoryCards(categoryId) : null;
+        if (cachedCards != null) {
+            return cachedCards;
+        }
+        long generation = this.catalogCache.listGeneration();
+        if (this.categoryRepository.findById(categoryId).isEmpty()) {
             throw new IdInvalidException("Không tìm thấy danh mục với ID: " + categoryId);
         }
-        return this.productRepository.findByCategory(categoryOptional.get());
+        List<ProductCardDTO> cards = toCards(this.productRepository.findCardRowsByCategoryId(categoryId));
+        if (this.catalogCache.isEnabled()) {
+            this.catalogCache.putCategoryCards(categoryId, cards, generation);
+        }
+        return cards;
     }
 
-    // Lấy sản phẩm theo nhà cung cấp
-    public List<Product> getBySupplier(Long supplierId) throws IdInvalidException {
-        Optional<Supplier> supplierOptional = supplierRepository.findById(supplierId);
-        if (supplierOptional.isEmpty()) {
+    // Lấy thẻ sản phẩm theo nhà cung cấp
+    public List<ProductCardDTO> getBySupplier(Long supplierId) throws IdInvalidException {
+        List<ProductCardDTO> cachedCards = this.catalogCache.isEnabled() ? this.catalogCache.getSupplierCards(supplierId) : null;
+        if (cachedCards != null) {
+            return cachedCards;
+        }
+        long generation = this.catalogCache.listGeneration();
+        if (this.supplierRepository.findById(supplierId).isEmpty()) {
             throw new IdInvalidException("Không tìm thấy nhà cung cấp với ID: " + supplierId);
         }
-        return this.productRepository.findBySupplier(supplierOptional.get());
+        List<ProductCardDTO> cards = toCards(this.productRepository.findCardRowsBySupplierId(supplierId));
+        if (this.catalogCache.isEnabled()) {
+            this.catalogCache.putSupplierCards(supplierId, cards, generation);
+        }
+        return cards;
     }
 } 
\ No newline at end of file
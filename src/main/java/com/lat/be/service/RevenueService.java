@@ -6,9 +6,11 @@ import com.lat.be.repository.OrderDetailRepository;
 import com.lat.be.util.constant.PaymentStatus;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
@@ -19,13 +21,26 @@ import java.util.List;
 public class RevenueService {
 
     private final OrderDetailRepository orderDetailRepository;
+    private final SalesRollupService salesRollupService;
+    
+    @Value("${statistics.use-rollups:true}")
+    private boolean useRollups;
     
     // Múi giờ UTC+7 (Asia/Ho_Chi_Minh)
     private static final ZoneId VIETNAM_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
 
     public SupplierRevenueResponseDTO getSupplierRevenues() {
-        List<Object[]> supplierRevenueData = orderDetailRepository.getSupplierRevenues(PaymentStatus.PAID);
-        Long totalRevenue = orderDetailRepository.getTotalRevenue(PaymentStatus.PAID);
+        List<Object[]> supplierRevenueData;
+        Long totalRevenue;
+        if (useRollups) {
+            LocalDate startDate = LocalDate.of(1970, 1, 1);
+            LocalDate endDate = LocalDate.now(VIETNAM_ZONE);
+            supplierRevenueData = salesRollupService.getSupplierRevenues(startDate, endDate);
+            totalRevenue = salesRollupService.getTotalRevenue(startDate, endDate);
+        } else {
+            supplierRevenueData = orderDetailRepository.getSupplierRevenues(PaymentStatus.PAID);
+            totalRevenue = orderDetailRepository.getTotalRevenue(PaymentStatus.PAID);
+        }
         
         if (totalRevenue == null) {
             totalRevenue = 0L;
@@ -52,12 +67,20 @@ public class RevenueService {
     }
     
     public SupplierRevenueResponseDTO getSupplierRevenuesInPeriod(LocalDateTime startDateTime, LocalDateTime endDateTime) {
-        // Chuyển đổi LocalDateTime sang Instant sử dụng múi giờ UTC+7
-        Instant startDate = startDateTime.atZone(VIETNAM_ZONE).toInstant();
-        Instant endDate = endDateTime.atZone(VIETNAM_ZONE).toInstant();
-        
-        List<Object[]> supplierRevenueData = orderDetailRepository.getSupplierRevenuesInPeriod(startDate, endDate, PaymentStatus.PAID);
-        Long totalRevenue = orderDetailRepository.getTotalRevenueInPeriod(startDate, endDate, PaymentStatus.PAID);
+        List<Object[]> supplierRevenueData;
+        Long totalRevenue;
+        if (useRollups) {
+            // Các khoảng thời gian luôn bắt đầu và kết thúc trọn ngày nên đọc thẳng từ số liệu theo ngày
+            supplierRevenueData = salesRollupService.getSupplierRevenues(startDateTime.toLocalDate(), endDateTime.toLocalDate());
+            totalRevenue = salesRollupService.getTotalRevenue(startDateTime.toLocalDate(), endDateTime.toLocalDate());
+        } else {
+            // Chuyển đổi LocalDateTime sang Instant sử dụng múi giờ UTC+7
+            Instant startDate = startDateTime.atZone(VIETNAM_ZONE).toInstant();
+            Instant endDate = endDateTime.atZone(VIETNAM_ZONE).toInstant();
+            
+            supplierRevenueData = orderDetailRepository.getSupplierRevenuesInPeriod(startDate, endDate, PaymentStatus.PAID);
+            totalRevenue = orderDetailRepository.getTotalRevenueInPeriod(startDate, endDate, PaymentStatus.PAID);
+        }
         
         if (totalRevenue == null) {
             totalRevenue = 0L;
@@ -1,11 +1,13 @@
 package com.lat.be.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import com.lat.be.domain.Role;
+import com.lat.be.domain.event.UserChangedEvent;
 import com.lat.be.domain.response.ResultPaginationDTO;
 import com.lat.be.repository.RoleRepository;
 import java.util.Optional;
@@ -14,6 +16,7 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class RoleService {
     private final RoleRepository roleRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public Role createRole(Role role) {
         return this.roleRepository.save(role);
@@ -28,6 +31,8 @@ public class RoleService {
         roleDB.setName(role.getName());
         roleDB.setDescription(role.getDescription());
         roleDB = this.roleRepository.save(roleDB);
+        // Người dùng trong cache nhúng vai trò nên xóa toàn bộ
+        this.eventPublisher.publishEvent(UserChangedEvent.all());
         return roleDB;
     }
 
@@ -67,5 +72,6 @@ public class RoleService {
 
     public void deleteById(long id){
         this.roleRepository.deleteById(id);
+        this.eventPublisher.publishEvent(UserChangedEvent.all());
     }
 }
@@ -0,0 +1,69 @@
+package com.lat.be.service;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.lat.be.domain.event.OrderCancelledEvent;
+import com.lat.be.domain.event.OrderCreatedEvent;
+import com.lat.be.domain.event.OrderPaymentStatusChangedEvent;
+import com.lat.be.repository.OrderRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cập nhật số liệu cộng dồn sau khi giao dịch của đơn hàng đã commit.
+ * Lỗi ở đây không được làm hỏng request đặt hàng / thanh toán; số liệu lệch có thể sửa bằng cách dựng lại.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SalesRollupListener {
+    private final SalesRollupService salesRollupService;
+    private final OrderRepository orderRepository;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        try {
+            this.salesRollupService.applyOrderCreated(event.getOrderId(), event.getPaymentStatus());
+        } catch (Exception e) {
+            log.error("Failed to update sales rollups for new order {}", event.getOrderId(), e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentStatusChanged(OrderPaymentStatusChangedEvent event) {
+        try {
+            this.salesRollupService.applyPaymentStatusChanged(event.getOrderId(), event.getOldStatus(), event.getNewStatus(),
+                    event.isOrderCancelled());
+        } catch (Exception e) {
+            log.error("Failed to update sales rollups for order {} ({} -> {})",
+                    event.getOrderId(), event.getOldStatus(), event.getNewStatus(), e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrdersCancelled(OrderCancelledEvent event) {
+        try {
+            this.salesRollupService.applyOrdersCancelled(event.getPaymentStatuses());
+        } catch (Exception e) {
+            log.error("Failed to update sales rollups for cancelled orders {}", event.getPaymentStatuses().keySet(), e);
+        }
+    }
+
+    /**
+     * Lần đầu triển khai: dựng số liệu từ đơn hàng hiện có nếu bảng cộng dồn còn trống
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        try {
+            if (this.salesRollupService.isEmpty() && this.orderRepository.count() > 0) {
+                this.salesRollupService.rebuild();
+            }
+        } catch (Exception e) {
+            log.error("Failed to build initial sales rollups", e);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.lat.be.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.lat.be.domain.DailyOrderRollup;
+import com.lat.be.repository.DailyOrderRollupRepository;
+import com.lat.be.repository.DailySalesRollupRepository;
+import com.lat.be.repository.OrderDetailRepository;
+import com.lat.be.repository.OrderRepository;
+import com.lat.be.util.HyperLogLog;
+import com.lat.be.util.constant.OrderStatus;
+import com.lat.be.util.constant.PaymentStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Duy trì bảng số liệu cộng dồn theo ngày để thống kê không phải quét lại toàn bộ đơn hàng.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SalesRollupService {
+    private final DailySalesRollupRepository salesRollupRepository;
+    private final DailyOrderRollupRepository orderRollupRepository;
+    private final OrderRepository orderRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Múi giờ UTC+7 (Asia/Ho_Chi_Minh)
+    private static final ZoneId VIETNAM_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    @Value("${statistics.rollup.rebuild-batch-size:500}")
+    private int rebuildBatchSize;
+
+    /**
+     * Số liệu tổng hợp của một khoảng ngày
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Totals {
+        private final Long revenue;
+        private final Long orders;
+        private final Long productsSold;
+        private final Long customers;
+    }
+
+    /**
+     * Cộng đơn hàng mới vào số liệu của ngày tạo đơn
+     * @param status trạng thái thanh toán lúc tạo đơn: nếu đọc trạng thái hiện tại thì thay đổi đã commit trước khi
+     *               hàm này chạy sẽ bị tính hai lần (một lần ở đây, một lần qua applyPaymentStatusChanged)
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void applyOrderCreated(Long orderId, PaymentStatus status) {
+        List<Object[]> rows = this.orderRepository.findRollupOrder(orderId);
+        if (rows.isEmpty()) {
+            log.warn("Order {} not found when updating sales rollups", orderId);
+            return;
+        }
+        Object[] row = rows.get(0);
+        LocalDate salesDate = toSalesDate((Instant) row[1]);
+        long totalPrice = row[3] != null ? ((Number) row[3]).longValue() : 0L;
+        Long userId = (Long) row[4];
+
+        this.orderRollupRepository.upsert(salesDate, status.name(), 1, totalPrice);
+        if (userId != null) {
+            addCustomer(salesDate, status, userId);
+        }
+        applyLines(salesDate, status, orderId, 1);
+    }
+
+    /**
+     * Chuyển số liệu của đơn hàng từ trạng thái thanh toán cũ sang trạng thái mới
+     * @param orderCancelled đơn đã bị hủy từ trước: dòng sản phẩm đã được trừ khi hủy, chỉ chuyển số liệu đơn hàng
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void applyPaymentStatusChanged(Long orderId, PaymentStatus oldStatus, PaymentStatus newStatus,
+                                          boolean orderCancelled) {
+        if (oldStatus == null || newStatus == null || oldStatus == newStatus) {
+            return;
+        }
+        List<Object[]> rows = this.orderRepository.findRollupOrder(orderId);
+        if (rows.isEmpty()) {
+            log.warn("Order {} not found when updating sales rollups", orderId);
+            return;
+        }
+        Object[] row = rows.get(0);
+        LocalDate salesDate = toSalesDate((Instant) row[1]);
+        long totalPrice = row[3] != null ? ((Number) row[3]).longValue() : 0L;
+
+        this.orderRollupRepository.upsert(salesDate, oldStatus.name(), -1, -totalPrice);
+        this.orderRollupRepository.upsert(salesDate, newStatus.name(), 1, totalPrice);
+        if (!orderCancelled) {
+            applyLines(salesDate, oldStatus, orderId, -1);
+            applyLines(salesDate, newStatus, orderId, 1);
+        }
+        // Sketch khách hàng được gộp trên mọi trạng thái khi đọc nên không cần di chuyển
+    }
+
+    /**
+     * Trừ dòng sản phẩm của các đơn vừa bị hủy khỏi số liệu bán hàng (số đơn theo trạng thái thanh toán giữ nguyên)
+     * @param paymentStatuses trạng thái thanh toán của từng đơn lúc hủy, là nhóm đang chứa dòng của đơn
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void applyOrdersCancelled(Map<Long, PaymentStatus> paymentStatuses) {
+        if (paymentStatuses.isEmpty()) {
+            return;
+        }
+        Map<Long, LocalDate> salesDates = new HashMap<>();
+        for (Object[] row : this.orderRepository.findCreatedAtByIds(paymentStatuses.keySet())) {
+            salesDates.put((Long) row[0], toSalesDate((Instant) row[1]));
+        }
+
+        // Gộp theo (ngày, trạng thái, sản phẩm); mỗi đơn chỉ tính một lần cho một sản phẩm
+        Map<String, long[]> lineTotals = new HashMap<>();
+        Map<String, Long> suppliers = new HashMap<>();
+        Map<String, Long> lastOrder = new HashMap<>();
+        for (Object[] line : this.orderDetailRepository.findRollupLines(new ArrayList<>(salesDates.keySet()))) {
+            Long orderId = (Long) line[0];
+            String key = salesDates.get(orderId) + "|" + paymentStatuses.get(orderId).name() + "|" + line[1];
+            long[] totals = lineTotals.computeIfAbsent(key, k -> new long[3]);
+            totals[0] += line[4] != null ? ((Number) line[4]).longValue() : 0L;
+            totals[1] += line[3] != null ? ((Number) line[3]).longValue() : 0L;
+            if (!orderId.equals(lastOrder.put(key, orderId))) {
+                totals[2]++;
+            }
+            suppliers.put(key, (Long) line[2]);
+        }
+        for (Map.Entry<String, long[]> entry : lineTotals.entrySet()) {
+            String[] key = entry.getKey().split("\\|");
+            long[] totals = entry.getValue();
+            this.salesRollupRepository.upsert(LocalDate.parse(key[0]), Long.parseLong(key[2]),
+                    suppliers.get(entry.getKey()), key[1], -totals[0], -totals[1], -totals[2]);
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ số liệu từ đơn hàng, duyệt theo ID để không giữ khóa lâu.
+     * Nên chạy lúc ít tải; đơn hàng phát sinh trong lúc dựng lại có thể cần chạy lại lần nữa.
+     */
+    public long rebuild() {
+        this.transactionTemplate.executeWithoutResult(status -> {
+            this.salesRollupRepository.deleteAllInBatch();
+            this.orderRollupRepository.deleteAllInBatch();
+        });
+
+        long processed = 0;
+        Long afterId = 0L;
+        while (true) {
+            List<Object[]> orders = this.orderRepository.findRollupOrdersAfter(afterId, PageRequest.of(0, this.rebuildBatchSize));
+            if (orders.isEmpty()) {
+                break;
+            }
+            this.transactionTemplate.executeWithoutResult(status -> applyBatch(orders));
+            processed += orders.size();
+            afterId = (Long) orders.get(orders.size() - 1)[0];
+        }
+        log.info("Rebuilt sales rollups from {} orders", processed);
+        return processed;
+    }
+
+    public boolean isEmpty() {
+        return this.orderRollupRepository.count() == 0;
+    }
+
+    public Totals getTotals(LocalDate startDate, LocalDate endDate) {
+        List<Object[]> rows = this.orderRollupRepository.sumOrdersInPeriod(startDate, endDate, PaymentStatus.PAID);
+        Object[] row = rows.isEmpty() ? new Object[] {0L, 0L} : rows.get(0);
+        Long units = this.salesRollupRepository.sumUnitsInPeriod(startDate, endDate);
+
+        HyperLogLog customers = new HyperLogLog();
+        for (byte[] sketch : this.orderRollupRepository.findCustomerSketchesInPeriod(startDate, endDate)) {
+            customers.merge(HyperLogLog.fromBytes(sketch));
+        }
+
+        return new Totals(
+                ((Number) row[0]).longValue(),
+                ((Number) row[1]).longValue(),
+                units,
+                customers.estimate());
+    }
+
+    public List<Object[]> getSupplierRevenues(LocalDate startDate, LocalDate endDate) {
+        return this.salesRollupRepository.getSupplierRevenuesInPeriod(startDate, endDate, PaymentStatus.PAID);
+    }
+
+    public Long getTotalRevenue(LocalDate startDate, LocalDate endDate) {
+        return this.salesRollupRepository.getTotalRevenueInPeriod(startDate, endDate, PaymentStatus.PAID);
+    }
+
+    public static LocalDate toSalesDate(Instant instant) {
+        return (instant != null ? instant : Instant.now()).atZone(VIETNAM_ZONE).toLocalDate();
+    }
+
+    private void applyBatch(List<Object[]> orders) {
+        Map<Long, Object[]> ordersById = new HashMap<>();
+        // Gộp số liệu đơn hàng và khách hàng theo (ngày, trạng thái) trước khi ghi
+        Map<String, long[]> orderTotals = new HashMap<>();
+        Map<String, HyperLogLog> sketches = new HashMap<>();
+        for (Object[] order : orders) {
+            ordersById.put((Long) order[0], order);
+            LocalDate salesDate = toSalesDate((Instant) order[1]);
+            PaymentStatus status = (PaymentStatus) order[2];
+            String key = salesDate + "|" + status.name();
+            long[] totals = orderTotals.computeIfAbsent(key, k -> new long[2]);
+            totals[0]++;
+            totals[1] += order[3] != null ? ((Number) order[3]).longValue() : 0L;
+            if (order[4] != null) {
+                sketches.computeIfAbsent(key, k -> new HyperLogLog()).add((Long) order[4]);
+            }
+        }
+        for (Map.Entry<String, long[]> entry : orderTotals.entrySet()) {
+            String[] key = entry.getKey().split("\\|");
+            LocalDate salesDate = LocalDate.parse(key[0]);
+            PaymentStatus status = PaymentStatus.valueOf(key[1]);
+            this.orderRollupRepository.upsert(salesDate, status.name(), entry.getValue()[0], entry.getValue()[1]);
+            HyperLogLog sketch = sketches.get(entry.getKey());
+            if (sketch != null) {
+                mergeSketch(salesDate, status, sketch);
+            }
+        }
+
+        // Gộp dòng đơn hàng theo (ngày, sản phẩm, trạng thái)
+        Map<String, long[]> lineTotals = new HashMap<>();
+        Map<String, Long> suppliers = new HashMap<>();
+        Map<String, Long> lastOrder = new HashMap<>();
+        for (Object[] line : this.orderDetailRepository.findRollupLines(new ArrayList<>(ordersById.keySet()))) {
+            Object[] order = ordersById.get((Long) line[0]);
+            if (order[5] == OrderStatus.CANCELLED) {
+                // Đơn đã hủy chỉ được tính ở số liệu đơn hàng, như khi cập nhật tăng dần
+                continue;
+            }
+            String key = toSalesDate((Instant) order[1]) + "|" + ((PaymentStatus) order[2]).name() + "|" + line[1];
+            long[] totals = lineTotals.computeIfAbsent(key, k -> new long[3]);
+            totals[0] += line[4] != null ? ((Number) line[4]).longValue() : 0L;
+            totals[1] += line[3] != null ? ((Number) line[3]).longValue() : 0L;
+            // Mỗi đơn chỉ tính một lần cho một sản phẩm
+            if (!line[0].equals(lastOrder.put(key, (Long) line[0]))) {
+                totals[2]++;
+            }
+            suppliers.put(key, (Long) line[2]);
+        }
+        for (Map.Entry<String, long[]> entry : lineTotals.entrySet()) {
+            String[] key = entry.getKey().split("\\|");
+            long[] totals = entry.getValue();
+            this.salesRollupRepository.upsert(LocalDate.parse(key[0]), Long.parseLong(key[2]),
+                    suppliers.get(entry.getKey()), key[1], totals[0], totals[1], totals[2]);
+        }
+    }
+
+    private void applyLines(LocalDate salesDate, PaymentStatus status, Long orderId, int sign) {
+        // Gộp theo sản phẩm để một đơn chỉ được tính một lần cho mỗi sản phẩm
+        Map<Long, long[]> byProduct = new HashMap<>();
+        Map<Long, Long> suppliers = new HashMap<>();
+        for (Object[] line : this.orderDetailRepository.findRollupLines(List.of(orderId))) {
+            Long productId = (Long) line[1];
+            long[] totals = byProduct.computeIfAbsent(productId, k -> new long[2]);
+            totals[0] += line[4] != null ? ((Number) line[4]).longValue() : 0L;
+            totals[1] += line[3] != null ? ((Number) line[3]).longValue() : 0L;
+            suppliers.put(productId, (Long) line[2]);
+        }
+        for (Map.Entry<Long, long[]> entry : byProduct.entrySet()) {
+            long[] totals = entry.getValue();
+            this.salesRollupRepository.upsert(salesDate, entry.getKey(), suppliers.get(entry.getKey()),
+                    status.name(), sign * totals[0], sign * totals[1], sign);
+        }
+    }
+
+    private void addCustomer(LocalDate salesDate, PaymentStatus status, Long userId) {
+        HyperLogLog sketch = new HyperLogLog();
+        sketch.add(userId);
+        mergeSketch(salesDate, status, sketch);
+    }
+
+    private void mergeSketch(LocalDate salesDate, PaymentStatus status, HyperLogLog sketch) {
+        // Dòng đã được upsert trước đó nên luôn tồn tại; khóa dòng để hai đơn đồng thời không ghi đè sketch của nhau
+        DailyOrderRollup rollup = this.orderRollupRepository.findForUpdate(salesDate, status).orElse(null);
+        if (rollup == null) {
+            return;
+        }
+        HyperLogLog merged = HyperLogLog.fromBytes(rollup.getCustomerSketch());
+        merged.merge(sketch);
+        this.orderRollupRepository.updateCustomerSketch(rollup.getId(), merged.toBytes());
+    }
+}
@@ -1,13 +1,18 @@
 package com.lat.be.service;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import com.lat.be.domain.response.GrowthDTO;
 import com.lat.be.domain.response.ProductStatDTO;
 import com.lat.be.domain.response.StatisticsDTO;
+import com.lat.be.repository.DailySalesRollupRepository;
 import com.lat.be.repository.OrderDetailRepository;
 import com.lat.be.repository.OrderRepository;
+import com.lat.be.repository.ProductRepository;
 import com.lat.be.util.constant.PaymentStatus;
 
 import java.time.Instant;
@@ -17,32 +22,92 @@ import java.time.ZoneId;
 import java.time.DayOfWeek;
 import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class StatisticsService {
 
     private final OrderDetailRepository orderDetailRepository;
     private final OrderRepository orderRepository;
+    private final SalesRollupService salesRollupService;
+    private final ThreadPoolTaskExecutor statisticsExecutor;
+    private final TopSellingTracker topSellingTracker;
+    private final DailySalesRollupRepository dailySalesRollupRepository;
+    private final ProductRepository productRepository;
+    
+    @Value("${statistics.use-rollups:true}")
+    private boolean useRollups;
     
     // Múi giờ UTC+7 (Asia/Ho_Chi_Minh)
     private static final ZoneId VIETNAM_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
 
     /**
-     * Lấy danh sách 3 sản phẩm bán chạy nhất
+     * Lấy danh sách sản phẩm bán chạy nhất
+     * @param limit Số sản phẩm cần lấy
+     * @param period Khoảng thời gian (today, week, month, year, all)
      */
-    public List<ProductStatDTO> getTopSellingProducts() {
-        List<Object[]> results = orderDetailRepository.findTopSellingProducts();
-        List<ProductStatDTO> topProducts = new ArrayList<>();
+    public List<ProductStatDTO> getTopSellingProducts(int limit, String period) {
+        if (period.equalsIgnoreCase("all")) {
+            // Toàn thời gian: đọc ảnh chụp top K trong bộ nhớ, không truy vấn CSDL
+            if (topSellingTracker.isReady() && limit <= topSellingTracker.getCapacity()) {
+                return topSellingTracker.getTop(limit);
+            }
+            return toProductStats(orderDetailRepository.findTopSellingProducts(PageRequest.of(0, limit)));
+        }
+        
+        LocalDateTime now = LocalDateTime.now(VIETNAM_ZONE);
+        LocalDateTime startDateTime = getStartDateTime(period, now);
+        LocalDateTime endDateTime = getEndDateTime(period, now);
+        
+        if (useRollups) {
+            return getTopSellingProductsFromRollups(startDateTime.toLocalDate(), endDateTime.toLocalDate(), limit);
+        }
+        
+        Instant startDate = startDateTime.atZone(VIETNAM_ZONE).toInstant();
+        Instant endDate = endDateTime.atZone(VIETNAM_ZONE).toInstant();
+        return toProductStats(orderDetailRepository.findTopSellingProductsInPeriod(startDate, endDate, PageRequest.of(0, limit)));
+    }
+    
+    private List<ProductStatDTO> getTopSellingProductsFromRollups(LocalDate startDate, LocalDate endDate, int limit) {
+        List<Object[]> results = dailySalesRollupRepository.findTopSellingProductsInPeriod(startDate, endDate, PageRequest.of(0, limit));
+        if (results.isEmpty()) {
+            return new ArrayList<>();
+        }
         
-        int count = 0;
+        // Chỉ lấy tên và ảnh của K sản phẩm trong kết quả
+        List<Long> productIds = results.stream().map(result -> (Long) result[0]).toList();
+        Map<Long, Object[]> products = new HashMap<>();
+        for (Object[] product : productRepository.findNameAndImageByIds(productIds)) {
+            products.put((Long) product[0], product);
+        }
+        
+        List<ProductStatDTO> topProducts = new ArrayList<>();
+        for (Object[] result : results) {
+            Object[] product = products.get((Long) result[0]);
+            topProducts.add(ProductStatDTO.builder()
+                .productId((Long) result[0])
+                .productName(product != null ? (String) product[1] : null)
+                .productImage(product != null ? (String) product[2] : null)
+                .totalQuantitySold(result[1] != null ? ((Number) result[1]).longValue() : 0L)
+                .totalRevenue(result[2] != null ? ((Number) result[2]).longValue() : 0L)
+                .build());
+        }
+        return topProducts;
+    }
+    
+    private List<ProductStatDTO> toProductStats(List<Object[]> results) {
+        List<ProductStatDTO> topProducts = new ArrayList<>();
         for (Object[] result : results) {
-            if (count >= 3) break;
-            
             ProductStatDTO productStat = ProductStatDTO.builder()
                 .productId(result[0] != null ? ((Number) result[0]).longValue() : null)
                 .productName((String) result[1])
@@ -52,9 +117,7 @@ public class StatisticsService {
                 .build();
             
             topProducts.add(productStat);
-            count++;
         }
-        
         return topProducts;
     }
 
@@ -74,27 +137,48 @@ public class StatisticsService {
         LocalDateTime previousStartDateTime = getPreviousStartDateTime(period, startDateTime);
         LocalDateTime previousEndDateTime = getPreviousEndDateTime(period, startDateTime);
         
-        // Chuyển đổi sang Instant
-        Instant startDate = startDateTime.atZone(VIETNAM_ZONE).toInstant();
-        Instant endDate = endDateTime.atZone(VIETNAM_ZONE).toInstant();
-        Instant previousStartDate = previousStartDateTime.atZone(VIETNAM_ZONE).toInstant();
-        Instant previousEndDate = previousEndDateTime.atZone(VIETNAM_ZONE).toInstant();
-        
-        // Lấy số liệu doanh thu
-        Long currentRevenue = orderRepository.sumRevenueInPeriod(startDate, endDate, PaymentStatus.PAID);
-        Long previousRevenue = orderRepository.sumRevenueInPeriod(previousStartDate, previousEndDate, PaymentStatus.PAID);
-        
-        // Lấy số liệu đơn hàng
-        Long currentOrders = orderRepository.countOrdersInPeriod(startDate, endDate);
-        Long previousOrders = orderRepository.countOrdersInPeriod(previousStartDate, previousEndDate);
+        Long currentRevenue;
+        Long previousRevenue;
+        Long currentOrders;
+        Long previousOrders;
+        Long currentProductsSold;
+        Long previousProductsSold;
+        Long currentCustomers;
+        Long previousCustomers;
         
-        // Lấy số liệu sản phẩm đã bán
-        Long currentProductsSold = orderDetailRepository.countProductsSoldInPeriod(startDate, endDate);
-        Long previousProductsSold = orderDetailRepository.countProductsSoldInPeriod(previousStartDate, previousEndDate);
-        
-        // Lấy số liệu khách hàng
-        Long currentCustomers = orderRepository.countCustomersInPeriod(startDate, endDate);
-        Long previousCustomers = orderRepository.countCustomersInPeriod(previousStartDate, previousEndDate);
+        if (useRollups) {
+            // Đọc từ số liệu cộng dồn theo ngày, không phụ thuộc số lượng đơn hàng
+            SalesRollupService.Totals current = salesRollupService.getTotals(
+                    startDateTime.toLocalDate(), endDateTime.toLocalDate());
+            SalesRollupService.Totals previous = previousEndDateTime.isAfter(previousStartDateTime)
+                    ? salesRollupService.getTotals(previousStartDateTime.toLocalDate(), previousEndDateTime.toLocalDate())
+                    : new SalesRollupService.Totals(0L, 0L, 0L, 0L);
+            
+            currentRevenue = current.getRevenue();
+            previousRevenue = previous.getRevenue();
+            currentOrders = current.getOrders();
+            previousOrders = previous.getOrders();
+            currentProductsSold = current.getProductsSold();
+            previousProductsSold = previous.getProductsSold();
+            currentCustomers = current.getCustomers();
+            previousCustomers = previous.getCustomers();
+        } else {
+            // Chuyển đổi sang Instant
+            Instant startDate = startDateTime.atZone(VIETNAM_ZONE).toInstant();
+            Instant endDate = endDateTime.atZone(VIETNAM_ZONE).toInstant();
+            Instant previousStartDate = previousStartDateTime.atZone(VIETNAM_ZONE).toInstant();
+            Instant previousEndDate = previousEndDateTime.atZone(VIETNAM_ZONE).toInstant();
+            
+            Long[] values = getLiveStatistics(startDate, endDate, previousStartDate, previousEndDate);
+            currentRevenue = values[0];
+            previousRevenue = values[1];
+            currentOrders = values[2];
+            previousOrders = values[3];
+            currentProductsSold = values[4];
+            previousProductsSold = values[5];
+            currentCustomers = values[6];
+            previousCustomers = values[7];
+        }
         
         // Tính toán tăng trưởng
         GrowthDTO revenueGrowth = calculateGrowth(currentRevenue, previousRevenue);
@@ -110,6 +194,43 @@ public class StatisticsService {
                 .build();
     }
     
+    /**
+     * Tính số liệu của hai khoảng thời gian trực tiếp từ đơn hàng bằng một truy vấn gộp.
+     * Nếu CSDL không chạy được truy vấn gộp thì chạy song song các truy vấn riêng lẻ.
+     * Thứ tự: doanh thu, số đơn, sản phẩm đã bán, khách hàng (mỗi chỉ số gồm hiện tại, trước đó)
+     */
+    private Long[] getLiveStatistics(Instant startDate, Instant endDate, Instant previousStartDate, Instant previousEndDate) {
+        Instant rangeStart = startDate.isBefore(previousStartDate) ? startDate : previousStartDate;
+        Instant rangeEnd = endDate.isAfter(previousEndDate) ? endDate : previousEndDate;
+        try {
+            List<Object[]> rows = orderRepository.getPerformanceStatistics(startDate, endDate,
+                    previousStartDate, previousEndDate, rangeStart, rangeEnd, PaymentStatus.PAID.name());
+            Object[] row = rows.get(0);
+            Long[] values = new Long[row.length];
+            for (int i = 0; i < row.length; i++) {
+                values[i] = row[i] != null ? ((Number) row[i]).longValue() : 0L;
+            }
+            return values;
+        } catch (DataAccessException e) {
+            log.warn("Combined statistics query failed, falling back to separate queries: {}", e.getMessage());
+        }
+        
+        List<CompletableFuture<Long>> futures = List.of(
+                supplyAsync(() -> orderRepository.sumRevenueInPeriod(startDate, endDate, PaymentStatus.PAID)),
+                supplyAsync(() -> orderRepository.sumRevenueInPeriod(previousStartDate, previousEndDate, PaymentStatus.PAID)),
+                supplyAsync(() -> orderRepository.countOrdersInPeriod(startDate, endDate)),
+                supplyAsync(() -> orderRepository.countOrdersInPeriod(previousStartDate, previousEndDate)),
+                supplyAsync(() -> orderDetailRepository.countProductsSoldInPeriod(startDate, endDate)),
+                supplyAsync(() -> orderDetailRepository.countProductsSoldInPeriod(previousStartDate, previousEndDate)),
+                supplyAsync(() -> orderRepository.countCustomersInPeriod(startDate, endDate)),
+                supplyAsync(() -> orderRepository.countCustomersInPeriod(previousStartDate, previousEndDate)));
+        return futures.stream().map(CompletableFuture::join).toArray(Long[]::new);
+    }
+    
+    private CompletableFuture<Long> supplyAsync(Supplier<Long> query) {
+        return CompletableFuture.supplyAsync(query, statisticsExecutor);
+    }
+    
     /**
      * Tính toán tỷ lệ tăng trưởng
      */
@@ -0,0 +1,238 @@
+package com.lat.be.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.lat.be.domain.Order;
+import com.lat.be.domain.OrderDetail;
+import com.lat.be.domain.StockReservation;
+import com.lat.be.domain.enumeration.ReservationStatus;
+import com.lat.be.domain.event.CatalogChangedEvent;
+import com.lat.be.repository.OrderDetailRepository;
+import com.lat.be.repository.OrderRepository;
+import com.lat.be.repository.ProductRepository;
+import com.lat.be.repository.StockReservationRepository;
+import com.lat.be.util.constant.PaymentStatus;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Quản lý giữ hàng có thời hạn cho đơn hàng thanh toán qua VNPay.
+ * Khi tạo đơn, tồn kho được trừ ngay và ghi lại phiếu giữ hàng; thanh toán thành công
+ * chuyển phiếu sang COMMITTED, còn phiếu hết hạn được trả lại kho theo lô.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationService {
+    private final StockReservationRepository reservationRepository;
+    private final ProductRepository productRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${vnpay.payment-ttl-minutes:15}")
+    private long paymentTtlMinutes;
+
+    @Value("${reservation.grace-minutes:5}")
+    private long graceMinutes;
+
+    @Value("${reservation.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * Tạo phiếu giữ hàng cho các dòng của đơn hàng (tồn kho đã được trừ trước đó).
+     * Hạn giữ = thời hạn URL VNPay + thời gian ân hạn cho giao dịch đang xử lý.
+     */
+    @Transactional
+    public List<StockReservation> holdForOrder(Order order, List<OrderDetail> orderDetails) {
+        Instant expiresAt = Instant.now().plus(Duration.ofMinutes(paymentTtlMinutes + graceMinutes));
+        List<StockReservation> reservations = new ArrayList<>();
+        for (OrderDetail detail : orderDetails) {
+            reservations.add(StockReservation.builder()
+                    .order(order)
+                    .product(detail.getProduct())
+                    .quantity(detail.getQuantity())
+                    .status(ReservationStatus.HELD)
+                    .expiresAt(expiresAt)
+                    .build());
+        }
+        return this.reservationRepository.saveAll(reservations);
+    }
+
+    /**
+     * Chuyển giữ hàng thành trừ kho vĩnh viễn khi đơn hàng đã thanh toán.
+     * Nếu phiếu đã bị trả lại kho (thanh toán về trễ) thì trừ kho lại; khi có sản phẩm không còn đủ hàng
+     * thì không phiếu nào được chuyển và phần vừa trừ được hoàn lại, người gọi phải xử lý đơn hàng.
+     * @return ID các sản phẩm không còn đủ hàng, rỗng nếu toàn bộ đơn hàng đã được trừ kho
+     */
+    @Transactional
+    public List<Long> commitForOrder(Long orderId) {
+        Instant now = Instant.now();
+        List<StockReservation> reservations = this.reservationRepository.findByOrderIdForUpdate(orderId);
+        List<Long> committedIds = new ArrayList<>();
+        // Theo thứ tự ID sản phẩm như khi tạo đơn để tránh deadlock
+        Map<Long, Integer> restock = new TreeMap<>();
+        for (StockReservation reservation : reservations) {
+            if (reservation.getStatus() == ReservationStatus.HELD) {
+                committedIds.add(reservation.getId());
+            } else if (reservation.getStatus() == ReservationStatus.RELEASED) {
+                restock.merge(reservation.getProduct().getId(), reservation.getQuantity(), Integer::sum);
+                committedIds.add(reservation.getId());
+            }
+        }
+        if (!restock.isEmpty()) {
+            List<Long> insufficient = this.productRepository.decrementStockBatch(restock, now);
+            if (!insufficient.isEmpty()) {
+                for (Map.Entry<Long, Integer> entry : restock.entrySet()) {
+                    if (!insufficient.contains(entry.getKey())) {
+                        this.productRepository.releaseStock(entry.getKey(), entry.getValue(), now);
+                    }
+                }
+                log.error("Order {} paid after its hold expired but products {} are out of stock", orderId, insufficient);
+                return insufficient;
+            }
+        }
+        if (!committedIds.isEmpty()) {
+            this.reservationRepository.updateStatus(committedIds,
+                    List.of(ReservationStatus.HELD, ReservationStatus.RELEASED), ReservationStatus.COMMITTED, now);
+        }
+        if (!restock.isEmpty()) {
+            Map<Long, Integer> decrements = new TreeMap<>();
+            restock.forEach((productId, quantity) -> decrements.put(productId, -quantity));
+            this.eventPublisher.publishEvent(CatalogChangedEvent.stock(restock.keySet(),
+                    this.productRepository.findStockCrossedZero(decrements)));
+        }
+        return List.of();
+    }
+
+    /**
+     * Trả lại kho toàn bộ hàng của các đơn bị hủy; gọi trong giao dịch đã khóa các đơn hàng đó.
+     * Số lượng trả = tổng order_details trừ phần phiếu giữ hàng đã được trả trước (RELEASED), nên đơn không có phiếu
+     * (COD, đơn cũ) cũng được trả đúng. Các phiếu còn lại chuyển sang RELEASED để thanh toán về trễ được trừ kho lại.
+     * @return ID các sản phẩm đã được cộng kho
+     */
+    @Transactional
+    public Set<Long> releaseForCancelledOrders(Collection<Long> orderIds) {
+        Instant now = Instant.now();
+        // Khóa phiếu trước để không trả trùng với releaseExpiredReservations đang chạy song song
+        List<StockReservation> reservations = this.reservationRepository.findByOrderIdsForUpdate(orderIds);
+
+        Map<Long, Integer> quantityByProduct = new TreeMap<>();
+        for (Object[] row : this.orderDetailRepository.sumQuantityByProduct(orderIds)) {
+            quantityByProduct.merge((Long) row[0], ((Number) row[1]).intValue(), Integer::sum);
+        }
+        List<Long> openIds = new ArrayList<>();
+        for (StockReservation reservation : reservations) {
+            if (reservation.getStatus() == ReservationStatus.RELEASED) {
+                quantityByProduct.merge(reservation.getProduct().getId(), -reservation.getQuantity(), Integer::sum);
+            } else {
+                openIds.add(reservation.getId());
+            }
+        }
+
+        // Một câu UPDATE cho mỗi sản phẩm, theo thứ tự ID để tránh deadlock
+        Set<Long> releasedProductIds = new TreeSet<>();
+        for (Map.Entry<Long, Integer> entry : quantityByProduct.entrySet()) {
+            if (entry.getValue() > 0) {
+                this.productRepository.releaseStock(entry.getKey(), entry.getValue(), now);
+                releasedProductIds.add(entry.getKey());
+            }
+        }
+        if (!openIds.isEmpty()) {
+            this.reservationRepository.updateStatus(openIds,
+                    List.of(ReservationStatus.HELD, ReservationStatus.COMMITTED), ReservationStatus.RELEASED, now);
+        }
+        if (!releasedProductIds.isEmpty()) {
+            quantityByProduct.keySet().retainAll(releasedProductIds);
+            this.eventPublisher.publishEvent(CatalogChangedEvent.stock(releasedProductIds,
+                    this.productRepository.findStockCrossedZero(quantityByProduct)));
+        }
+        return releasedProductIds;
+    }
+
+    /**
+     * Định kỳ trả lại kho các phiếu giữ hàng đã hết hạn, mỗi lô trong một giao dịch riêng.
+     * Chỉ trả phiếu của đơn còn chờ thanh toán (PENDING / FAILED); phiếu của đơn đã thanh toán được chốt (COMMITTED).
+     */
+    @Scheduled(fixedDelayString = "${reservation.sweep-interval-ms:60000}")
+    public void releaseExpiredReservations() {
+        int total = 0;
+        int released;
+        do {
+            Integer count = this.transactionTemplate.execute(status -> releaseExpiredBatch());
+            released = count != null ? count : 0;
+            total += released;
+        } while (released == batchSize);
+
+        if (total > 0) {
+            log.info("Released {} expired stock reservations", total);
+        }
+    }
+
+    private int releaseExpiredBatch() {
+        Instant now = Instant.now();
+        List<StockReservation> expired = this.reservationRepository.findExpiredForUpdate(
+                ReservationStatus.HELD, now, PageRequest.of(0, batchSize));
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        Set<Long> orderIds = new TreeSet<>();
+        for (StockReservation reservation : expired) {
+            orderIds.add(reservation.getOrder().getId());
+        }
+        Map<Long, PaymentStatus> paymentStatuses = new HashMap<>();
+        for (Object[] row : this.orderRepository.findStatusRowsByIds(orderIds)) {
+            paymentStatuses.put((Long) row[0], (PaymentStatus) row[2]);
+        }
+
+        // Gộp số lượng theo sản phẩm: một câu UPDATE cho mỗi sản phẩm, theo thứ tự ID để tránh deadlock
+        Map<Long, Integer> quantityByProduct = new TreeMap<>();
+        List<Long> ids = new ArrayList<>(expired.size());
+        List<Long> paidIds = new ArrayList<>();
+        for (StockReservation reservation : expired) {
+            PaymentStatus paymentStatus = paymentStatuses.get(reservation.getOrder().getId());
+            if (paymentStatus != PaymentStatus.PENDING && paymentStatus != PaymentStatus.FAILED) {
+                // Đơn đã thanh toán nhưng phiếu chưa được chốt: giữ nguyên tồn kho
+                paidIds.add(reservation.getId());
+                continue;
+            }
+            ids.add(reservation.getId());
+            quantityByProduct.merge(reservation.getProduct().getId(), reservation.getQuantity(), Integer::sum);
+        }
+        if (!paidIds.isEmpty()) {
+            this.reservationRepository.updateStatus(paidIds,
+                    List.of(ReservationStatus.HELD), ReservationStatus.COMMITTED, now);
+            log.warn("Committed {} expired stock reservations of orders no longer awaiting payment", paidIds.size());
+        }
+        if (ids.isEmpty()) {
+            return expired.size();
+        }
+        for (Map.Entry<Long, Integer> entry : quantityByProduct.entrySet()) {
+            this.productRepository.releaseStock(entry.getKey(), entry.getValue(), now);
+        }
+        this.reservationRepository.updateStatus(ids, List.of(ReservationStatus.HELD), ReservationStatus.RELEASED, now);
+        this.eventPublisher.publishEvent(CatalogChangedEvent.stock(quantityByProduct.keySet(),
+                this.productRepository.findStockCrossedZero(quantityByProduct)));
+        return expired.size();
+    }
+}
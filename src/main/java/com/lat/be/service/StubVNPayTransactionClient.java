@@ -0,0 +1,75 @@
+package com.lat.be.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bản giả của VNPay querydr cho kiểm thử (vnpay.reconciliation.client=stub): không gọi mạng,
+ * trả kết quả đã đặt trước theo vnp_TxnRef, nếu không có thì trả mã mặc định trong cấu hình.
+ */
+@Component
+@ConditionalOnProperty(name = "vnpay.reconciliation.client", havingValue = "stub")
+public class StubVNPayTransactionClient implements VNPayTransactionClient {
+    private final Map<String, String[]> results = new ConcurrentHashMap<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    // 91: không tìm thấy giao dịch (người dùng chưa thanh toán)
+    @Value("${vnpay.reconciliation.stub.response-code:91}")
+    private String defaultResponseCode;
+
+    @Value("${vnpay.reconciliation.stub.transaction-status:}")
+    private String defaultTransactionStatus;
+
+    // Độ trễ giả lập của mỗi lần gọi, để thử giới hạn số lời gọi song song
+    @Value("${vnpay.reconciliation.stub.latency-ms:0}")
+    private long latencyMs;
+
+    /**
+     * Đặt kết quả trả về cho một giao dịch (ví dụ "00" / "00" là đã thanh toán)
+     */
+    public void setResult(String txnRef, String responseCode, String transactionStatus) {
+        this.results.put(txnRef, new String[] {responseCode, transactionStatus});
+    }
+
+    public void clear() {
+        this.results.clear();
+        this.calls.set(0);
+    }
+
+    public int getCallCount() {
+        return this.calls.get();
+    }
+
+    @Override
+    public Map<String, String> queryTransaction(String txnRef, String transactionDate) {
+        this.calls.incrementAndGet();
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Bị ngắt khi truy vấn giao dịch " + txnRef, e);
+            }
+        }
+        String[] result = this.results.getOrDefault(txnRef, new String[] {defaultResponseCode, defaultTransactionStatus});
+
+        Map<String, String> response = new HashMap<>();
+        response.put("vnp_Command", "querydr");
+        response.put("vnp_TxnRef", txnRef);
+        response.put("vnp_ResponseCode", result[0]);
+        if (result[1] != null && !result[1].isEmpty()) {
+            response.put("vnp_TransactionStatus", result[1]);
+        }
+        if ("00".equals(result[0]) && "00".equals(result[1])) {
+            response.put("vnp_TransactionNo", "STUB" + Integer.toHexString(txnRef.hashCode()));
+            response.put("vnp_PayDate", transactionDate);
+        }
+        return response;
+    }
+}
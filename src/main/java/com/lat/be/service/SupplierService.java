@@ -4,7 +4,9 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -15,20 +17,27 @@ import org.springframework.web.multipart.MultipartFile;
 import com.lat.be.domain.Category;
 import com.lat.be.domain.Supplier;
 import com.lat.be.domain.SupplierCategory;
+import com.lat.be.domain.event.CatalogChangedEvent;
 import com.lat.be.domain.response.ResultPaginationDTO;
 import com.lat.be.repository.CategoryRepository;
 import com.lat.be.repository.SupplierCategoryRepository;
 import com.lat.be.repository.SupplierRepository;
+import com.lat.be.util.CursorPagination;
+import com.lat.be.util.error.IdInvalidException;
 
 import lombok.RequiredArgsConstructor;
 
 @Service
 @RequiredArgsConstructor
 public class SupplierService {
+    // Thuộc tính được phép sắp xếp khi phân trang theo con trỏ
+    private static final Set<String> CURSOR_SORTS = Set.of("name", "createdAt", "updatedAt");
+
     private final SupplierRepository supplierRepository;
     private final CloudinaryService cloudinaryService;
     private final CategoryRepository categoryRepository;
     private final SupplierCategoryRepository supplierCategoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public Supplier handleCreateSupplier(Supplier supplier, MultipartFile imageFile, List<Long> categoryIds) {
@@ -54,6 +63,7 @@ public class SupplierService {
             }
         }
         
+        this.eventPublisher.publishEvent(CatalogChangedEvent.all());
         return savedSupplier;
     }
 
@@ -68,6 +78,8 @@ public class SupplierService {
         
         // Sau đó xóa supplier
         this.supplierRepository.deleteById(id);
+        // Sản phẩm trong cache danh mục sản phẩm nhúng thông tin nhà cung cấp
+        this.eventPublisher.publishEvent(CatalogChangedEvent.all());
     }
 
     public Supplier fetchSupplierById(Long id) {
@@ -90,6 +102,12 @@ public class SupplierService {
         return rs;
     }
 
+    public ResultPaginationDTO handleGetSupplierByCursor(Specification<Supplier> supplierSpec, Pageable pageable, String cursor)
+            throws IdInvalidException {
+        return CursorPagination.fetch(this.supplierRepository, supplierSpec, pageable, cursor, CURSOR_SORTS,
+                suppliers -> suppliers);
+    }
+
     @Transactional
     public Supplier handleUpdateSupplier(Long id, Supplier supplier, MultipartFile imageFile, List<Long> categoryIds) {
         System.out.println("Nhận được categoryIds: " + categoryIds);
@@ -126,6 +144,8 @@ public class SupplierService {
             }
         }
         
+        this.eventPublisher.publishEvent(CatalogChangedEvent.all());
+
         // Truy vấn lại từ DB để có dữ liệu mới nhất
         return supplierRepository.findById(id).orElse(null);
     }
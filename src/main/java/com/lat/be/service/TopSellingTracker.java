@@ -0,0 +1,310 @@
+package com.lat.be.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.lat.be.domain.event.OrderCancelledEvent;
+import com.lat.be.domain.event.OrderCreatedEvent;
+import com.lat.be.domain.event.OrderPaymentStatusChangedEvent;
+import com.lat.be.domain.response.ProductStatDTO;
+import com.lat.be.repository.OrderDetailRepository;
+import com.lat.be.repository.OrderRepository;
+import com.lat.be.util.constant.OrderStatus;
+import com.lat.be.util.constant.PaymentStatus;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bảng xếp hạng sản phẩm bán chạy (toàn thời gian) giữ trong bộ nhớ.
+ * Tổng bán của từng sản phẩm được cộng dồn theo đơn hàng mới và bị trừ khi đơn bị hủy, thanh toán thất bại
+ * hoặc chờ hoàn tiền; top K được giữ trong một min-heap có giới hạn nên mỗi lần cộng chỉ tốn O(K)
+ * (trừ thì dựng lại heap), và đọc chỉ là trả về ảnh chụp đã sắp xếp sẵn.
+ * Sự kiện đến trong lúc nạp dữ liệu ban đầu được giữ lại rồi áp dụng sau khi nạp xong.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TopSellingTracker {
+    private final OrderDetailRepository orderDetailRepository;
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${statistics.top-selling.capacity:20}")
+    private int capacity;
+
+    // Bán ít hơn đứng trước; cùng số lượng thì ID nhỏ hơn được ưu tiên giữ lại
+    private static final Comparator<ProductSales> BY_QUANTITY = Comparator
+            .comparingLong(ProductSales::getQuantity)
+            .thenComparing(ProductSales::getProductId, Comparator.reverseOrder());
+
+    private final Map<Long, ProductSales> sales = new HashMap<>();
+    private final PriorityQueue<ProductSales> topHeap = new PriorityQueue<>(BY_QUANTITY);
+
+    private volatile List<ProductStatDTO> snapshot = List.of();
+    private volatile boolean ready = false;
+    // Chỉ truy cập khi giữ khóa this
+    private boolean seedFailed = false;
+    private final List<Object> pendingEvents = new ArrayList<>();
+    private TransactionTemplate snapshotTemplate;
+
+    private static class ProductSales {
+        final Long productId;
+        String productName;
+        String productImage;
+        long quantity;
+        long revenue;
+
+        ProductSales(Long productId) {
+            this.productId = productId;
+        }
+
+        Long getProductId() {
+            return productId;
+        }
+
+        long getQuantity() {
+            return quantity;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Lấy top sản phẩm bán chạy, limit không vượt quá capacity
+     */
+    public List<ProductStatDTO> getTop(int limit) {
+        List<ProductStatDTO> current = this.snapshot;
+        return current.size() <= limit ? current : current.subList(0, limit);
+    }
+
+    /**
+     * Đơn hàng có được tính vào doanh số không (cùng quy tắc với OrderDetailRepository.findTopSellingProducts)
+     */
+    static boolean isCounted(boolean cancelled, PaymentStatus paymentStatus) {
+        return !cancelled && paymentStatus != PaymentStatus.FAILED && paymentStatus != PaymentStatus.REFUND_REQUIRED;
+    }
+
+    @PostConstruct
+    void init() {
+        // Tổng hợp và đọc lại trạng thái các đơn có sự kiện chờ trên cùng một ảnh chụp dữ liệu
+        this.snapshotTemplate = new TransactionTemplate(this.transactionTemplate.getTransactionManager());
+        this.snapshotTemplate.setReadOnly(true);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        try {
+            Integer products = this.snapshotTemplate.execute(status -> seedFromSnapshot());
+            log.info("Top selling tracker seeded with {} products", products);
+        } catch (Exception e) {
+            synchronized (this) {
+                this.seedFailed = true;
+                this.pendingEvents.clear();
+            }
+            log.error("Failed to seed top selling tracker", e);
+        }
+    }
+
+    private int seedFromSnapshot() {
+        List<Object[]> rows = this.orderDetailRepository.findTopSellingProducts(Pageable.unpaged());
+        synchronized (this) {
+            this.sales.clear();
+            for (Object[] row : rows) {
+                ProductSales entry = this.sales.computeIfAbsent((Long) row[0], ProductSales::new);
+                entry.productName = (String) row[1];
+                entry.productImage = (String) row[2];
+                entry.quantity = row[3] != null ? ((Number) row[3]).longValue() : 0L;
+                entry.revenue = row[4] != null ? ((Number) row[4]).longValue() : 0L;
+            }
+            replayPending();
+            rebuildHeap();
+            publishSnapshot();
+            this.ready = true;
+        }
+        return rows.size();
+    }
+
+    /**
+     * Áp dụng các sự kiện đến trong lúc nạp. Với mỗi đơn hàng chỉ so trạng thái sau sự kiện cuối cùng
+     * với trạng thái mà truy vấn tổng hợp đã thấy (cùng ảnh chụp), nên đơn đã có trong số liệu nạp không bị cộng hai lần.
+     */
+    private void replayPending() {
+        Map<Long, Boolean> finalCounted = new LinkedHashMap<>();
+        for (Object event : this.pendingEvents) {
+            if (event instanceof OrderCreatedEvent created) {
+                finalCounted.put(created.getOrderId(), isCounted(false, created.getPaymentStatus()));
+            } else if (event instanceof OrderPaymentStatusChangedEvent changed) {
+                finalCounted.put(changed.getOrderId(), isCounted(changed.isOrderCancelled(), changed.getNewStatus()));
+            } else if (event instanceof OrderCancelledEvent cancelled) {
+                cancelled.getPaymentStatuses().keySet().forEach(orderId -> finalCounted.put(orderId, false));
+            }
+        }
+        this.pendingEvents.clear();
+        if (finalCounted.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Boolean> seeded = new HashMap<>();
+        for (Object[] row : this.orderRepository.findStatusRowsByIds(finalCounted.keySet())) {
+            seeded.put((Long) row[0], isCounted(row[1] == OrderStatus.CANCELLED, (PaymentStatus) row[2]));
+        }
+        List<Long> added = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        finalCounted.forEach((orderId, counted) -> {
+            boolean inSeed = seeded.getOrDefault(orderId, false);
+            if (counted && !inSeed) {
+                added.add(orderId);
+            } else if (!counted && inSeed) {
+                removed.add(orderId);
+            }
+        });
+        if (!added.isEmpty()) {
+            applyLines(this.orderDetailRepository.findSalesLinesByOrderIds(added), 1);
+        }
+        if (!removed.isEmpty()) {
+            applyLines(this.orderDetailRepository.findSalesLinesByOrderIds(removed), -1);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        if (!bufferUntilSeeded(event) && isCounted(false, event.getPaymentStatus())) {
+            apply(List.of(event.getOrderId()), 1);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentStatusChanged(OrderPaymentStatusChangedEvent event) {
+        if (bufferUntilSeeded(event)) {
+            return;
+        }
+        boolean before = isCounted(event.isOrderCancelled(), event.getOldStatus());
+        boolean after = isCounted(event.isOrderCancelled(), event.getNewStatus());
+        if (before != after) {
+            apply(List.of(event.getOrderId()), after ? 1 : -1);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrdersCancelled(OrderCancelledEvent event) {
+        if (bufferUntilSeeded(event)) {
+            return;
+        }
+        List<Long> counted = new ArrayList<>();
+        event.getPaymentStatuses().forEach((orderId, paymentStatus) -> {
+            if (isCounted(false, paymentStatus)) {
+                counted.add(orderId);
+            }
+        });
+        if (!counted.isEmpty()) {
+            apply(counted, -1);
+        }
+    }
+
+    /**
+     * Giữ sự kiện lại nếu chưa nạp xong (bỏ qua nếu nạp thất bại, khi đó thống kê đọc thẳng từ CSDL)
+     * @return true nếu sự kiện chưa được áp dụng ngay
+     */
+    private synchronized boolean bufferUntilSeeded(Object event) {
+        if (this.ready) {
+            return false;
+        }
+        if (!this.seedFailed) {
+            this.pendingEvents.add(event);
+        }
+        return true;
+    }
+
+    private void apply(List<Long> orderIds, int sign) {
+        try {
+            List<Object[]> lines = orderIds.size() == 1
+                    ? this.orderDetailRepository.findSalesLinesByOrderId(orderIds.get(0))
+                    : this.orderDetailRepository.findSalesLinesByOrderIds(orderIds);
+            synchronized (this) {
+                applyLines(lines, sign);
+                if (sign < 0) {
+                    // Sản phẩm trong top giảm số lượng có thể bị sản phẩm ngoài heap vượt qua
+                    rebuildHeap();
+                }
+                publishSnapshot();
+            }
+        } catch (Exception e) {
+            log.error("Failed to update top selling tracker for orders {}", orderIds, e);
+        }
+    }
+
+    // Gọi khi đang giữ khóa this; cộng dồn khi sign = 1, trừ khi sign = -1
+    private void applyLines(List<Object[]> lines, int sign) {
+        for (Object[] line : lines) {
+            ProductSales entry = this.sales.computeIfAbsent((Long) line[0], ProductSales::new);
+            entry.productName = (String) line[1];
+            entry.productImage = (String) line[2];
+            entry.quantity += sign * (line[3] != null ? ((Number) line[3]).longValue() : 0L);
+            entry.revenue += sign * (line[4] != null ? ((Number) line[4]).longValue() : 0L);
+            if (entry.quantity <= 0) {
+                this.topHeap.remove(entry);
+                this.sales.remove(entry.productId);
+            } else if (sign > 0 && this.ready) {
+                // Phần tử trong heap phải được lấy ra rồi đưa lại để heap sắp xếp lại theo số lượng mới
+                this.topHeap.remove(entry);
+                offer(entry);
+            }
+        }
+    }
+
+    private void rebuildHeap() {
+        this.topHeap.clear();
+        for (ProductSales entry : this.sales.values()) {
+            offer(entry);
+        }
+    }
+
+    private void offer(ProductSales entry) {
+        if (this.topHeap.size() < this.capacity) {
+            this.topHeap.add(entry);
+        } else if (BY_QUANTITY.compare(entry, this.topHeap.peek()) > 0) {
+            // Khi cộng thêm, sản phẩm ngoài heap chỉ vào được top khi vượt phần tử nhỏ nhất
+            this.topHeap.poll();
+            this.topHeap.add(entry);
+        }
+    }
+
+    private void publishSnapshot() {
+        List<ProductSales> ordered = new ArrayList<>(this.topHeap);
+        ordered.sort(BY_QUANTITY.reversed());
+        List<ProductStatDTO> top = new ArrayList<>(ordered.size());
+        for (ProductSales entry : ordered) {
+            top.add(ProductStatDTO.builder()
+                    .productId(entry.productId)
+                    .productName(entry.productName)
+                    .productImage(entry.productImage)
+                    .totalQuantitySold(entry.quantity)
+                    .totalRevenue(entry.revenue)
+                    .build());
+        }
+        this.snapshot = List.copyOf(top);
+    }
+}
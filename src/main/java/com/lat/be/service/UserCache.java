@@ -0,0 +1,69 @@
+package com.lat.be.service;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lat.be.domain.User;
+import com.lat.be.domain.event.UserChangedEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Bản lưu người dùng theo email để không phải truy vấn lại ở mỗi request đã xác thực.
+ * Giới hạn kích thước và thời gian sống; bị xóa sau khi giao dịch thay đổi người dùng commit.
+ * Đối tượng trong cache là entity đã tách khỏi phiên, chỉ dùng để đọc hoặc làm tham chiếu khóa ngoại.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserCache {
+    private final MeterRegistry meterRegistry;
+
+    @Value("${user.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${user.cache.max-size:10000}")
+    private long maxSize;
+
+    private Cache<String, User> usersByEmail;
+
+    @PostConstruct
+    void init() {
+        this.usersByEmail = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, usersByEmail, "users.by-email");
+    }
+
+    /**
+     * Lấy người dùng theo email, gọi loader khi chưa có trong cache (loader trả về null thì không lưu)
+     */
+    public User get(String email, Function<String, User> loader) {
+        return this.usersByEmail.get(email, loader);
+    }
+
+    public void evict(String email) {
+        if (email != null) {
+            this.usersByEmail.invalidate(email);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getEmail() == null) {
+            this.usersByEmail.invalidateAll();
+        } else {
+            evict(event.getEmail());
+        }
+    }
+}
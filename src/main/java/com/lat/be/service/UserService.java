@@ -1,6 +1,7 @@
 package com.lat.be.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -9,31 +10,41 @@ import org.springframework.web.multipart.MultipartFile;
 
 import com.lat.be.domain.Role;
 import com.lat.be.domain.User;
+import com.lat.be.domain.event.UserChangedEvent;
 import com.lat.be.domain.request.ChangePasswordDTO;
 import com.lat.be.domain.request.CreateUserDTO;
 import com.lat.be.domain.request.UpdateUserDTO;
 import com.lat.be.domain.response.ResCreateUserDTO;
+import com.lat.be.domain.response.ResLoginDTO;
 import com.lat.be.domain.response.ResUpdateUserDTO;
 import com.lat.be.domain.response.ResUserDTO;
 import com.lat.be.domain.response.ResultPaginationDTO;
 import com.lat.be.repository.UserRepository;
+import com.lat.be.util.CursorPagination;
 import com.lat.be.util.SecurityUtil;
+import com.lat.be.util.error.IdInvalidException;
 import com.lat.be.util.error.InvalidPasswordException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import jakarta.persistence.EntityNotFoundException;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @RequiredArgsConstructor
 public class UserService {
+    // Thuộc tính được phép sắp xếp khi phân trang theo con trỏ
+    private static final Set<String> CURSOR_SORTS = Set.of("name", "email", "createdAt", "updatedAt");
+
     private final UserRepository userRepository;
     private final RoleService roleService;
     private final CloudinaryService cloudinaryService;
     private final PasswordEncoder passwordEncoder;
+    private final CurrentUserResolver currentUserResolver;
+    private final ApplicationEventPublisher eventPublisher;
 
 
     public User handleCreateUser(User user, MultipartFile avatarFile) {
@@ -52,6 +63,8 @@ public class UserService {
     }
 
     public void handleDeleteUser(Long id) {
+        this.userRepository.findById(id)
+                .ifPresent(user -> this.eventPublisher.publishEvent(new UserChangedEvent(user.getEmail())));
         this.userRepository.deleteById(id);
     }
 
@@ -84,6 +97,12 @@ public class UserService {
         return rs;
     }
 
+    public ResultPaginationDTO handleGetUserByCursor(Specification<User> userSpec, Pageable pageable, String cursor)
+            throws IdInvalidException {
+        return CursorPagination.fetch(this.userRepository, userSpec, pageable, cursor, CURSOR_SORTS,
+                users -> users.stream().map(this::convertToResUserDTO).collect(Collectors.toList()));
+    }
+
     public User handleUpdateUser(Long userId, UpdateUserDTO reqUser, MultipartFile avatarFile) {
         User currentUser = this.fetchUserById(userId);
 
@@ -103,12 +122,15 @@ public class UserService {
             }
         }
         currentUser = this.userRepository.save(currentUser);
+        this.eventPublisher.publishEvent(new UserChangedEvent(currentUser.getEmail()));
         return currentUser;
     }
 
     public User handleUpdateUserProfile(UpdateUserDTO reqUser, MultipartFile avatarFile) {
-        User currentUser = this.getCurrentUser();
+        // Tải bản mới từ DB thay vì sửa bản đang nằm trong cache
+        User currentUser = this.fetchUserById(this.getCurrentPrincipal().getId());
         if (currentUser!=null) {
+            this.eventPublisher.publishEvent(new UserChangedEvent(currentUser.getEmail()));
             currentUser.setAddress(reqUser.getAddress());
             currentUser.setGender(reqUser.getGender());
             currentUser.setName(reqUser.getName());
@@ -120,6 +142,7 @@ public class UserService {
             }
         }
         currentUser = this.userRepository.save(currentUser);
+        this.eventPublisher.publishEvent(new UserChangedEvent(currentUser.getEmail()));
         return currentUser;
     }
 
@@ -131,14 +154,18 @@ public class UserService {
         return this.userRepository.existsByEmail(email);
     }
 
+    /**
+     * Người dùng hiện tại, tải một lần cho mỗi request qua UserCache (không sửa trực tiếp đối tượng trả về)
+     */
     public User getCurrentUser() {
-        String email = SecurityUtil.getCurrentUserLogin()
-            .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy thông tin người dùng hiện tại"));
-        User user = handleGetUserByEmail(email);
-        if (user == null) {
-            throw new EntityNotFoundException("Không tìm thấy người dùng với email: " + email);
-        }
-        return user;
+        return this.currentUserResolver.getUser();
+    }
+
+    /**
+     * Thông tin gọn (id, email, tên) của người dùng hiện tại, đọc từ claim của access token
+     */
+    public ResLoginDTO.UserInsideToken getCurrentPrincipal() {
+        return this.currentUserResolver.getPrincipal();
     }
 
     public ResCreateUserDTO convertToResCreateUserDTO(User user) {
@@ -204,16 +231,41 @@ public class UserService {
                 .build();
     }
 
-    public void updateUserToken(String token, String email){
+    /**
+     * Lưu refresh token hiện hành (dạng băm) của người dùng; token và family null nghĩa là đăng xuất
+     */
+    public void updateUserToken(String token, String family, String email){
         User currentUser = this.handleGetUserByEmail(email);
         if(currentUser != null){
-            currentUser.setRefreshToken(token);
-            this.userRepository.save(currentUser);
+            this.saveRefreshToken(currentUser, token, family);
+        }
+    }
+
+    public void saveRefreshToken(User user, String token, String family){
+        user.setRefreshTokenHash(token != null ? SecurityUtil.hashToken(token) : null);
+        user.setRefreshTokenFamily(token != null ? family : null);
+        this.userRepository.save(user);
+        this.eventPublisher.publishEvent(new UserChangedEvent(user.getEmail()));
+    }
+
+    /**
+     * Thu hồi phiên khi một refresh token cũ của họ token hiện hành bị dùng lại
+     */
+    public void revokeRefreshTokenFamily(String email, String family){
+        if(family == null){
+            return;
+        }
+        User user = this.handleGetUserByEmail(email);
+        if(user != null && family.equals(user.getRefreshTokenFamily())){
+            this.saveRefreshToken(user, null, null);
         }
     }
 
-    public User getUserByRefreshTokenAndEmail(String token, String email){
-        return this.userRepository.findByRefreshTokenAndEmail(token, email);
+    /**
+     * Tìm người dùng theo refresh token bằng một lần tra chỉ mục trên giá trị băm
+     */
+    public User getUserByRefreshToken(String token){
+        return this.userRepository.findByRefreshTokenHash(SecurityUtil.hashToken(token));
     }
 
 
@@ -238,5 +290,6 @@ public class UserService {
         // Cập nhật mật khẩu mới
         user.setPassword(passwordEncoder.encode(changePasswordDTO.getNewPassword()));
         this.userRepository.save(user);
+        this.eventPublisher.publishEvent(new UserChangedEvent(user.getEmail()));
     }
 }
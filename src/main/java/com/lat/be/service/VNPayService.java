@@ -3,6 +3,8 @@ package com.lat.be.service;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -12,11 +14,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
 import com.lat.be.config.VNPayConfig;
 import com.lat.be.domain.Order;
+import com.lat.be.domain.PaymentAttempt;
+import com.lat.be.domain.PaymentEvent;
+import com.lat.be.domain.enumeration.PaymentEventStatus;
 import com.lat.be.repository.OrderRepository;
+import com.lat.be.repository.PaymentAttemptRepository;
 import com.lat.be.util.constant.PaymentStatus;
 
 import lombok.RequiredArgsConstructor;
@@ -26,8 +34,29 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 @Slf4j
 public class VNPayService {
+    // Mã phản hồi IPN theo tài liệu VNPay
+    public static final String IPN_CONFIRMED = "00";
+    public static final String IPN_ORDER_NOT_FOUND = "01";
+    public static final String IPN_ALREADY_CONFIRMED = "02";
+    public static final String IPN_INVALID_AMOUNT = "04";
+    public static final String IPN_INVALID_SIGNATURE = "97";
+    public static final String IPN_UNKNOWN_ERROR = "99";
+
     private final VNPayConfig vnPayConfig;
     private final OrderRepository orderRepository;
+    private final PaymentAttemptRepository paymentAttemptRepository;
+    private final PaymentEventService paymentEventService;
+
+    /**
+     * Số tiền VND gửi sang VNPay cho tổng tiền của đơn hàng: quy đổi theo tỷ giá 26.000 và làm tròn lên hàng chục nghìn
+     */
+    public static long toChargeAmount(long totalPrice) {
+        return (long) (Math.ceil((totalPrice * 26000) / 10000.0) * 10000);
+    }
+
+    // URL đã lưu chỉ được dùng lại khi còn ít nhất chừng này giây để người dùng thanh toán
+    @Value("${vnpay.payment-url-min-remaining-seconds:120}")
+    private long paymentUrlMinRemainingSeconds;
 
     public String createPaymentUrl(Long orderId, long amount, String orderInfo) {
         return createPaymentUrl(orderId, amount, orderInfo, vnPayConfig.getVnpIpAddr());
@@ -39,40 +68,123 @@ public class VNPayService {
     }
 
     /**
-     * Cập nhật trạng thái thanh toán đơn hàng dựa trên kết quả từ VNPay
+     * Ký URL thanh toán mới và gán vào đơn hàng cùng thời điểm hết hạn (chưa lưu đơn hàng).
+     * vnp_TxnRef được ghi vào payment_attempts trước khi URL tới tay người dùng để đối soát truy vấn được mọi URL đã cấp.
      */
-    public Order updateOrderPaymentStatus(Long orderId, String vnpResponseCode, String vnpTransactionStatus) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng với ID: " + orderId));
-        
-        // Kiểm tra nếu đơn hàng đã được thanh toán rồi thì không cập nhật nữa
-        if (order.getPaymentStatus() == PaymentStatus.PAID) {
-            log.info("Order {} already paid, skipping update", orderId);
-            return order;
+    public String issuePaymentUrl(Order order, long amount, String orderInfo, String ipAddress) {
+        Instant now = Instant.now();
+        String vnpTxnRef = order.getId() + "-" + now.toEpochMilli();
+        String paymentUrl = vnPayConfig.createPaymentUrl(order.getId(), vnpTxnRef, amount, orderInfo, ipAddress, now);
+        Instant expiresAt = vnPayConfig.getPaymentUrlExpiry(now);
+        paymentAttemptRepository.save(PaymentAttempt.builder()
+                .orderId(order.getId())
+                .txnRef(vnpTxnRef)
+                .transactionDate(LocalDateTime.ofInstant(now, VNPayConfig.VIETNAM_ZONE).format(VNPayConfig.VNP_DATE_FORMAT))
+                .amount(amount)
+                .expiresAt(expiresAt)
+                .build());
+        order.setPaymentUrl(paymentUrl);
+        order.setPaymentUrlExpiresAt(expiresAt);
+        return paymentUrl;
+    }
+
+    /**
+     * URL thanh toán của đơn hàng: trả lại URL đã lưu nếu đơn còn chờ thanh toán và URL còn hạn đủ lâu;
+     * chỉ ký lại và ghi đơn hàng khi thật sự phải tạo URL mới
+     */
+    public String getOrIssuePaymentUrl(Order order, long amount, String orderInfo, String ipAddress) {
+        if (isReusable(order.getPaymentUrl(), order.getPaymentUrlExpiresAt(), order.getPaymentStatus())) {
+            return order.getPaymentUrl();
         }
-        
-        // Xác định trạng thái thanh toán dựa trên mã phản hồi từ VNPay
-        boolean paymentSuccess = "00".equals(vnpResponseCode) && "00".equals(vnpTransactionStatus);
-        
-        if (paymentSuccess) {
-            // Thanh toán thành công
-            order.setPaymentStatus(PaymentStatus.PAID);
-            order.setPaymentMessage("Thanh toán thành công qua VNPay");
-            log.info("Payment successful for order: {}", orderId);
-        } else {
-            // Thanh toán thất bại hoặc bị hủy
-            order.setPaymentStatus(PaymentStatus.FAILED);
-            order.setPaymentMessage(getPaymentErrorMessage(vnpResponseCode));
-            log.info("Payment failed for order: {} with response code: {}", orderId, vnpResponseCode);
+        String paymentUrl = issuePaymentUrl(order, amount, orderInfo, ipAddress);
+        try {
+            orderRepository.save(order);
+            return paymentUrl;
+        } catch (OptimisticLockingFailureException e) {
+            // Request khác (ví dụ người dùng tải lại trang) vừa ghi URL mới cho đơn hàng: dùng URL đó nếu còn hạn
+            for (Object[] row : orderRepository.findPaymentUrlRowById(order.getId())) {
+                if (isReusable((String) row[0], (Instant) row[1], (PaymentStatus) row[2])) {
+                    return (String) row[0];
+                }
+            }
+            throw e;
         }
-        
-        return orderRepository.save(order);
     }
-    
+
+    private boolean isReusable(String paymentUrl, Instant expiresAt, PaymentStatus paymentStatus) {
+        return paymentUrl != null
+                && expiresAt != null
+                && paymentStatus == PaymentStatus.PENDING
+                && Instant.now().plusSeconds(paymentUrlMinRemainingSeconds).isBefore(expiresAt);
+    }
+
+    /**
+     * Xử lý IPN (VNPay gọi trực tiếp tới server): kiểm tra chữ ký và số tiền, ghi sự kiện vào hàng đợi bền rồi trả lời ngay;
+     * việc cập nhật đơn hàng chạy nền trên luồng của đơn hàng đó.
+     * @return mã phản hồi cho VNPay (RspCode)
+     */
+    public String handleIpn(Map<String, String> vnpParams) {
+        if (!vnPayConfig.validateReturnData(vnpParams)) {
+            log.warn("Invalid checksum in VNPay IPN for txnRef {}", vnpParams.get("vnp_TxnRef"));
+            return IPN_INVALID_SIGNATURE;
+        }
+        PaymentEvent event;
+        try {
+            String txnRef = vnpParams.getOrDefault("vnp_TxnRef", "");
+            Long orderId = Long.parseLong(txnRef.split("-")[0]);
+            List<Object[]> rows = this.orderRepository.findPaymentCheckRowById(orderId);
+            if (rows.isEmpty()) {
+                return IPN_ORDER_NOT_FOUND;
+            }
+            PaymentStatus paymentStatus = (PaymentStatus) rows.get(0)[0];
+            long totalPrice = ((Number) rows.get(0)[1]).longValue();
+            if (paymentStatus == PaymentStatus.PAID || paymentStatus == PaymentStatus.REFUND_REQUIRED) {
+                return IPN_ALREADY_CONFIRMED;
+            }
+            // Số tiền VNPay báo (nhân 100) phải đúng số tiền đã ký cho giao dịch này
+            long expected = this.paymentAttemptRepository.findAmountByTxnRef(txnRef)
+                    .orElseGet(() -> toChargeAmount(totalPrice));
+            if (parseVnpAmount(vnpParams.get("vnp_Amount")) != expected) {
+                log.warn("VNPay IPN amount {} does not match {} for txnRef {}", vnpParams.get("vnp_Amount"), expected, txnRef);
+                return IPN_INVALID_AMOUNT;
+            }
+            event = this.paymentEventService.record(vnpParams, PaymentEventService.SOURCE_IPN);
+        } catch (IllegalArgumentException e) {
+            // Bao gồm NumberFormatException khi vnp_TxnRef sai định dạng
+            return IPN_ORDER_NOT_FOUND;
+        }
+        if (event.getStatus() != PaymentEventStatus.PENDING) {
+            return IPN_ALREADY_CONFIRMED;
+        }
+        this.paymentEventService.enqueue(event);
+        return IPN_CONFIRMED;
+    }
+
+    /**
+     * Đổi vnp_Amount (VND nhân 100) về VND; trả về -1 nếu thiếu hoặc sai định dạng
+     */
+    private static long parseVnpAmount(String vnpAmount) {
+        try {
+            return Long.parseLong(vnpAmount) / 100;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Áp dụng kết quả thanh toán (đã kiểm tra chữ ký) từ redirect của trình duyệt.
+     * Đi qua cùng hàng đợi với IPN nên nếu IPN đã xử lý trước thì chỉ trả về trạng thái hiện tại.
+     */
+    public Order applyPaymentResult(Map<String, String> vnpParams) {
+        PaymentEvent event = this.paymentEventService.record(vnpParams, PaymentEventService.SOURCE_RETURN);
+        return this.paymentEventService.applyNow(event)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng với ID: " + event.getOrderId()));
+    }
+
     /**
      * Lấy thông báo lỗi dựa trên mã phản hồi từ VNPay
      */
-    private String getPaymentErrorMessage(String responseCode) {
+    static String getPaymentErrorMessage(String responseCode) {
         if (responseCode == null) {
             return "Thanh toán thất bại";
         }
@@ -112,46 +224,15 @@ public class VNPayService {
             return Optional.empty();
         }
 
-        // Lấy thông tin thanh toán
-        String vnpResponseCode = vnpParams.get("vnp_ResponseCode");
-        String vnpTxnRef = vnpParams.get("vnp_TxnRef");
-        String orderId = vnpTxnRef.split("-")[0]; // lấy orderId gốc
-        log.info("Processing VNPay payment return - vnpTxnRef: {}, orderId: {}, Response Code: {}", vnpTxnRef, orderId, vnpResponseCode);
-
-        // Tìm đơn hàng theo orderId
-        Optional<Order> orderOpt = orderRepository.findById(Long.parseLong(orderId));
-        if (orderOpt.isEmpty()) {
-            log.error("Order not found with orderId: {} (from vnpTxnRef: {})", orderId, vnpTxnRef);
-            return Optional.empty();
-        }
-        Order order = orderOpt.get();
-        
-        // Tránh xử lý trùng lặp đơn hàng đã thanh toán
-        if (order.getPaymentStatus() == PaymentStatus.PAID) {
-            log.info("Order already paid: {}", orderId);
-            return Optional.of(order);
-        }
-
-        // Kiểm tra kết quả thanh toán
-        if ("00".equals(vnpResponseCode)) {
-            // Cập nhật trạng thái thanh toán thành công
-            order.setPaymentStatus(PaymentStatus.PAID);
-            order.setPaymentMessage("Thanh toán thành công " + order.getTotalPrice() + " đồng");
-            
-            // Lưu mã giao dịch VNPay nếu có
-            if (vnpParams.containsKey("vnp_TransactionNo")) {
-                order.setTransactionNo(vnpParams.get("vnp_TransactionNo"));
+        try {
+            Order order = applyPaymentResult(vnpParams);
+            if (order.getPaymentStatus() == PaymentStatus.PAID) {
+                return Optional.of(order);
             }
-            
-            orderRepository.save(order);
-            log.info("Payment successful for order: {}", orderId);
-            return Optional.of(order);
-        } else {
-            // Cập nhật trạng thái thanh toán thất bại
-            order.setPaymentStatus(PaymentStatus.FAILED);
-            order.setPaymentMessage(getPaymentErrorMessage(vnpResponseCode));
-            orderRepository.save(order);
-            log.error("Payment failed for order: {} with response code: {}", orderId, vnpResponseCode);
+            log.error("Payment failed for order: {} with response code: {}", order.getId(), vnpParams.get("vnp_ResponseCode"));
+            return Optional.empty();
+        } catch (RuntimeException e) {
+            log.error("Could not apply VNPay return for txnRef {}", vnpParams.get("vnp_TxnRef"), e);
             return Optional.empty();
         }
     }
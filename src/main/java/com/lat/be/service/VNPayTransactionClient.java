@@ -0,0 +1,19 @@
+package com.lat.be.service;
+
+import java.util.Map;
+
+/**
+ * Truy vấn kết quả giao dịch VNPay (querydr) theo vnp_TxnRef.
+ * Mặc định gọi vnpay.api-url (HttpVNPayTransactionClient); đặt vnpay.reconciliation.client=stub
+ * để dùng StubVNPayTransactionClient khi kiểm thử, không cần tới VNPay.
+ */
+public interface VNPayTransactionClient {
+
+    /**
+     * @param txnRef vnp_TxnRef của giao dịch
+     * @param transactionDate vnp_CreateDate của URL thanh toán (yyyyMMddHHmmss)
+     * @return các trường vnp_* của phản hồi đã kiểm tra chữ ký (vnp_ResponseCode, vnp_TransactionStatus, ...)
+     * @throws IllegalStateException nếu không gọi được VNPay hoặc chữ ký phản hồi không hợp lệ
+     */
+    Map<String, String> queryTransaction(String txnRef, String transactionDate);
+}
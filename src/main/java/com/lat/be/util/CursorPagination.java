@@ -0,0 +1,210 @@
+package com.lat.be.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+
+import com.lat.be.domain.response.ResultPaginationDTO;
+import com.lat.be.util.error.IdInvalidException;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Phân trang theo con trỏ (keyset) trên cặp (cột sắp xếp, id).
+ * Con trỏ là chuỗi base64url chứa giá trị cột sắp xếp và id của phần tử cuối trang trước
+ * (mỗi thành phần có tiền tố độ dài nên giá trị chứa ký tự bất kỳ vẫn tách đúng), trang tiếp theo được lấy bằng điều kiện WHERE thay vì OFFSET nên tốc độ không phụ thuộc độ sâu trang
+ * và không cần câu COUNT(*).
+ */
+public final class CursorPagination {
+    private static final String ID = "id";
+    private static final int PARTS = 4;
+
+    private CursorPagination() {
+    }
+
+    /**
+     * Tải tối đa limit dòng thỏa điều kiện theo thứ tự cho trước
+     */
+    @FunctionalInterface
+    public interface RowLoader<T, R> {
+        List<R> load(Specification<T> spec, Sort sort, int limit);
+    }
+
+    /**
+     * Lấy một trang theo con trỏ; cursor rỗng nghĩa là trang đầu tiên.
+     * Chỉ dùng thứ tự sắp xếp đầu tiên của pageable (mặc định id), id luôn được thêm vào làm khóa phụ.
+     * @param sortable các thuộc tính được phép sắp xếp (id luôn được phép)
+     * @throws IdInvalidException nếu sắp xếp theo thuộc tính ngoài sortable hoặc con trỏ không hợp lệ
+     */
+    public static <T> ResultPaginationDTO fetch(JpaSpecificationExecutor<T> repository, Specification<T> spec,
+                                                Pageable pageable, String cursor, Set<String> sortable,
+                                                Function<List<T>, Object> mapper)
+            throws IdInvalidException {
+        return CursorPagination.<T, T>fetch(spec, pageable, cursor, sortable,
+                (keysetSpec, sort, limit) -> repository.findBy(keysetSpec, query -> query.sortBy(sort).limit(limit).all()),
+                mapper);
+    }
+
+    /**
+     * Như trên nhưng các dòng được tải bằng loader (ví dụ chỉ chọn một số cột).
+     * Kiểu dòng R phải có thuộc tính cùng tên với mọi thuộc tính trong sortable để dựng con trỏ.
+     */
+    public static <T, R> ResultPaginationDTO fetch(Specification<T> spec, Pageable pageable, String cursor,
+                                                   Set<String> sortable, RowLoader<T, R> loader,
+                                                   Function<List<R>, Object> mapper)
+            throws IdInvalidException {
+        Sort.Order order = pageable.getSort().stream().findFirst().orElse(Sort.Order.asc(ID));
+        String property = order.getProperty();
+        // Kiểm tra trước khi truy vấn: thuộc tính lạ sẽ làm truy vấn lỗi (500) hoặc chỉ bị phát hiện khi có trang sau
+        if (!property.equals(ID) && !sortable.contains(property)) {
+            throw new IdInvalidException("Không hỗ trợ phân trang theo con trỏ khi sắp xếp theo: " + property);
+        }
+        Sort.Direction direction = order.getDirection();
+        Sort sort = property.equals(ID)
+                ? Sort.by(direction, ID)
+                : Sort.by(new Sort.Order(direction, property), new Sort.Order(direction, ID));
+
+        Specification<T> keysetSpec = Specification.where(spec);
+        if (cursor != null && !cursor.isBlank()) {
+            keysetSpec = keysetSpec.and(after(decode(cursor, property, direction), property, direction));
+        }
+
+        int size = pageable.getPageSize();
+        List<R> rows = loader.load(keysetSpec, sort, size + 1);
+
+        // Lấy dư một phần tử để biết còn trang sau hay không
+        boolean hasNext = rows.size() > size;
+        List<R> content = hasNext ? rows.subList(0, size) : rows;
+
+        ResultPaginationDTO result = new ResultPaginationDTO();
+        ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
+        meta.setPageSize(size);
+        if (hasNext) {
+            BeanWrapper last = PropertyAccessorFactory.forBeanPropertyAccess(content.get(content.size() - 1));
+            meta.setNextCursor(encode(property, direction, last.getPropertyValue(property), last.getPropertyValue(ID)));
+        }
+        result.setMeta(meta);
+        result.setResult(mapper.apply(content));
+        return result;
+    }
+
+    /**
+     * Nối các thành phần dạng "độ dài:giá trị" rồi mã hóa base64url
+     */
+    private static String encode(String property, Sort.Direction direction, Object value, Object id) {
+        StringBuilder raw = new StringBuilder();
+        for (String part : new String[] {property, direction.name(), value == null ? "n" : "v" + value, String.valueOf(id)}) {
+            raw.append(part.length()).append(':').append(part);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String cursor, String property, Sort.Direction direction) throws IdInvalidException {
+        String[] parts;
+        try {
+            parts = split(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            // Bao gồm NumberFormatException khi tiền tố độ dài sai
+            throw new IdInvalidException("Con trỏ phân trang không hợp lệ");
+        }
+        if (parts == null || !parts[0].equals(property) || !parts[1].equals(direction.name())) {
+            throw new IdInvalidException("Con trỏ phân trang không hợp lệ hoặc không khớp thứ tự sắp xếp");
+        }
+        try {
+            Long.parseLong(parts[3]);
+        } catch (NumberFormatException e) {
+            throw new IdInvalidException("Con trỏ phân trang không hợp lệ");
+        }
+        return parts;
+    }
+
+    /**
+     * Tách chuỗi "độ dài:giá trị" thành đúng PARTS thành phần, null nếu sai định dạng
+     */
+    private static String[] split(String raw) {
+        String[] parts = new String[PARTS];
+        int position = 0;
+        for (int i = 0; i < PARTS; i++) {
+            int colon = raw.indexOf(':', position);
+            if (colon < 0) {
+                return null;
+            }
+            int length = Integer.parseInt(raw.substring(position, colon));
+            int start = colon + 1;
+            if (length < 0 || start + length > raw.length()) {
+                return null;
+            }
+            parts[i] = raw.substring(start, start + length);
+            position = start + length;
+        }
+        return position == raw.length() ? parts : null;
+    }
+
+    /**
+     * Điều kiện "đứng sau phần tử cuối" theo (property, id).
+     * MySQL xếp NULL trước khi tăng dần và sau cùng khi giảm dần.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Specification<T> after(String[] cursor, String property, Sort.Direction direction) {
+        boolean ascending = direction.isAscending();
+        Long lastId = Long.parseLong(cursor[3]);
+        return (root, query, cb) -> {
+            Path<Long> id = root.get(ID);
+            Predicate idAfter = ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId);
+            if (property.equals(ID)) {
+                return idAfter;
+            }
+
+            Path<Comparable> path = (Path<Comparable>) resolve(root, property);
+            if (cursor[2].equals("n")) {
+                Predicate sameNull = cb.and(cb.isNull(path), idAfter);
+                return ascending ? cb.or(sameNull, cb.isNotNull(path)) : sameNull;
+            }
+
+            Comparable value = convert(cursor[2].substring(1), path.getJavaType());
+            Predicate valueAfter = ascending ? cb.greaterThan(path, value) : cb.lessThan(path, value);
+            Predicate sameValue = cb.and(cb.equal(path, value), idAfter);
+            return ascending
+                    ? cb.or(valueAfter, sameValue)
+                    : cb.or(valueAfter, sameValue, cb.isNull(path));
+        };
+    }
+
+    private static Path<?> resolve(Root<?> root, String property) {
+        Path<?> path = root;
+        for (String part : property.split("\\.")) {
+            path = path.get(part);
+        }
+        return path;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparable convert(String value, Class<?> type) {
+        if (type == Instant.class) {
+            return Instant.parse(value);
+        }
+        if (type == LocalDate.class) {
+            return LocalDate.parse(value);
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.parse(value);
+        }
+        return (Comparable) DefaultConversionService.getSharedInstance().convert(value, type);
+    }
+}
@@ -1,8 +1,8 @@
 package com.lat.be.util;
 
-import com.nimbusds.jose.util.Base64;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.codec.Hex;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -12,8 +12,9 @@ import org.springframework.security.oauth2.jwt.*;
 import org.springframework.stereotype.Service;
 import com.lat.be.domain.response.ResLoginDTO;
 
-import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -27,9 +28,7 @@ public class SecurityUtil {
     public static final MacAlgorithm JWT_ALGORITHM = MacAlgorithm.HS512;
 
     private final JwtEncoder jwtEncoder;
-
-    @Value("${lat.jwt.base64-secret}")
-    private String jwtKey;
+    private final JwtDecoder jwtDecoder;
 
     @Value("${lat.jwt.access-token-validity-in-seconds}")
     private long accessTokenExpiration;
@@ -66,7 +65,10 @@ public class SecurityUtil {
 
     }
 
-    public String createRefreshToken(String email, ResLoginDTO resLoginDTO){
+    /**
+     * Tạo refresh token thuộc họ token family; các token được xoay vòng từ cùng một lần đăng nhập dùng chung family
+     */
+    public String createRefreshToken(String email, ResLoginDTO resLoginDTO, String family){
 
         ResLoginDTO.UserInsideToken userInsideToken = new ResLoginDTO.UserInsideToken();
         userInsideToken.setId(resLoginDTO.getUser().getId());
@@ -82,6 +84,7 @@ public class SecurityUtil {
                 .expiresAt(validity)
                 .subject(email)
                 .claim("user", userInsideToken)
+                .claim("family", family)
                 .build();
         JwsHeader jwsHeader = JwsHeader.with(JWT_ALGORITHM).build();
         return this.jwtEncoder.encode(JwtEncoderParameters.from(jwsHeader,
@@ -89,22 +92,21 @@ public class SecurityUtil {
 
     }
 
-    private SecretKey getSecretKey() {
-        byte[] keyBytes = Base64.from(jwtKey).decode();
-        return new SecretKeySpec(keyBytes, 0, keyBytes.length,JWT_ALGORITHM.getName());
-    }
-
+    // Dùng lại decoder dùng chung (cùng khóa và thuật toán) thay vì tạo mới mỗi lần làm mới token
     public Jwt checkValidRefreshToken(String refreshToken){
+        return this.jwtDecoder.decode(refreshToken);
+    }
 
-        NimbusJwtDecoder jwtDecoder = NimbusJwtDecoder.withSecretKey(
-                getSecretKey()).macAlgorithm(JWT_ALGORITHM).build();
+    /**
+     * Băm refresh token (SHA-256, hex 64 ký tự) để lưu và tra cứu trong cột có chỉ mục
+     */
+    public static String hashToken(String token) {
         try {
-            return jwtDecoder.decode(refreshToken);
-        } catch (Exception e) {
-            System.out.println(">>> JWT error: " + e.getMessage());
-            throw e;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return new String(Hex.encode(digest.digest(token.getBytes(StandardCharsets.UTF_8))));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
         }
-
     }
 
     /**
@@ -0,0 +1,198 @@
+package com.lat.be.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Ký và kiểm tra chữ ký HMAC-SHA512 theo chuẩn VNPay.
+ * Mỗi luồng giữ sẵn một Mac đã init bằng khóa bí mật cùng bộ đệm byte, nên ký / kiểm tra không gọi
+ * Mac.getInstance, không init lại và không cấp phát mảng trung gian. Chuỗi cần ký được dựng trong một lượt
+ * duyệt các tham số theo thứ tự tên, mã hóa giống URLEncoder với US-ASCII.
+ */
+public final class VNPaySigner {
+    public static final String SECURE_HASH = "vnp_SecureHash";
+    public static final String SECURE_HASH_TYPE = "vnp_SecureHashType";
+
+    private static final String ALGORITHM = "HmacSHA512";
+    private static final int DIGEST_LENGTH = 64;
+    private static final char[] HEX_LOWER = "0123456789abcdef".toCharArray();
+    private static final char[] HEX_UPPER = "0123456789ABCDEF".toCharArray();
+    // Ký tự giữ nguyên khi mã hóa (giống URLEncoder): chữ, số và . - * _
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            UNRESERVED[c] = true;
+        }
+        UNRESERVED['.'] = true;
+        UNRESERVED['-'] = true;
+        UNRESERVED['*'] = true;
+        UNRESERVED['_'] = true;
+    }
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<State> state;
+
+    public VNPaySigner(String secret) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.state = ThreadLocal.withInitial(this::newState);
+        // Kiểm tra khóa ngay khi khởi tạo thay vì ở lần ký đầu tiên
+        this.state.get();
+    }
+
+    // Trạng thái riêng của mỗi luồng
+    private static final class State {
+        final Mac mac;
+        final byte[] digest = new byte[DIGEST_LENGTH];
+        final char[] hex = new char[DIGEST_LENGTH * 2];
+        byte[] buffer = new byte[1024];
+
+        State(Mac mac) {
+            this.mac = mac;
+        }
+    }
+
+    private State newState() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(this.key);
+            return new State(mac);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Không khởi tạo được HMAC-SHA512", e);
+        }
+    }
+
+    /**
+     * Chữ ký HMAC-SHA512 dạng hex chữ thường
+     */
+    public String sign(CharSequence data) {
+        State current = digest(data);
+        char[] hex = current.hex;
+        byte[] digest = current.digest;
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            hex[i * 2] = HEX_LOWER[(digest[i] >> 4) & 0x0F];
+            hex[i * 2 + 1] = HEX_LOWER[digest[i] & 0x0F];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * So chữ ký hex (chữ thường) với chữ ký của data trong thời gian không phụ thuộc vị trí sai khác
+     */
+    public boolean verify(CharSequence data, String signature) {
+        if (signature == null || signature.length() != DIGEST_LENGTH * 2) {
+            return false;
+        }
+        byte[] digest = digest(data).digest;
+        int diff = 0;
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            diff |= signature.charAt(i * 2) ^ HEX_LOWER[(digest[i] >> 4) & 0x0F];
+            diff |= signature.charAt(i * 2 + 1) ^ HEX_LOWER[digest[i] & 0x0F];
+        }
+        return diff == 0;
+    }
+
+    /**
+     * Kiểm tra chữ ký vnp_SecureHash của các tham số VNPay trả về (không sửa map đầu vào)
+     */
+    public boolean verify(Map<String, String> params) {
+        return verify(canonicalQuery(params), params.get(SECURE_HASH));
+    }
+
+    private State digest(CharSequence data) {
+        State current = this.state.get();
+        int length = data.length();
+        if (current.buffer.length < length) {
+            current.buffer = new byte[Math.max(length, current.buffer.length * 2)];
+        }
+        byte[] buffer = current.buffer;
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i);
+            if (c >= 0x80) {
+                // Chuỗi đã mã hóa chỉ gồm ASCII; trường hợp khác ký trên UTF-8
+                current.mac.update(data.toString().getBytes(StandardCharsets.UTF_8));
+                return finish(current);
+            }
+            buffer[i] = (byte) c;
+        }
+        current.mac.update(buffer, 0, length);
+        return finish(current);
+    }
+
+    private static State finish(State current) {
+        try {
+            current.mac.doFinal(current.digest, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Không tính được HMAC-SHA512", e);
+        }
+        return current;
+    }
+
+    /**
+     * Chuỗi tham số theo thứ tự tên: name=value&... (value mã hóa URL, bỏ giá trị rỗng và các tham số chữ ký).
+     * Với tên tham số VNPay (chữ, số, gạch dưới) đây cũng chính là query string gửi đi.
+     */
+    public static StringBuilder canonicalQuery(Map<String, String> params) {
+        StringBuilder builder = new StringBuilder(params.size() * 32);
+        if (params instanceof SortedMap<String, String> sorted && sorted.comparator() == null) {
+            for (Map.Entry<String, String> entry : sorted.entrySet()) {
+                appendParam(builder, entry.getKey(), entry.getValue());
+            }
+            return builder;
+        }
+        String[] names = params.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        for (String name : names) {
+            appendParam(builder, name, params.get(name));
+        }
+        return builder;
+    }
+
+    private static void appendParam(StringBuilder builder, String name, String value) {
+        if (value == null || value.isEmpty() || SECURE_HASH.equals(name) || SECURE_HASH_TYPE.equals(name)) {
+            return;
+        }
+        if (builder.length() > 0) {
+            builder.append('&');
+        }
+        encode(builder, name);
+        builder.append('=');
+        encode(builder, value);
+    }
+
+    /**
+     * Mã hóa như URLEncoder.encode(value, US_ASCII): ký tự ngoài ASCII (kể cả cặp surrogate) thành %3F
+     */
+    static void encode(StringBuilder builder, String value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (UNRESERVED[c]) {
+                    builder.append(c);
+                } else if (c == ' ') {
+                    builder.append('+');
+                } else {
+                    builder.append('%').append(HEX_UPPER[c >> 4]).append(HEX_UPPER[c & 0x0F]);
+                }
+            } else {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    i++;
+                }
+                builder.append("%3F");
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.lat.be.util.constant;
+
+public enum CartAction {
+    ADD,
+    SET,
+    REMOVE
+}
@@ -4,5 +4,6 @@ public enum OrderStatus {
     PENDING,
     PROCESSING,
     SHIPPED,
-    DELIVERED
+    DELIVERED,
+    CANCELLED
 }
\ No newline at end of file
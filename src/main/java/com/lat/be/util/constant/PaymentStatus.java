@@ -4,5 +4,7 @@ public enum PaymentStatus {
     PENDING,
     PAID,
     FAILED,
-    REFUNDED
+    REFUNDED,
+    // Tiền đã về nhưng đơn hàng không thể giao (đã bị hủy hoặc hết hàng): cần hoàn tiền / xử lý thủ công
+    REFUND_REQUIRED
 } 
\ No newline at end of file
@@ -0,0 +1,171 @@
+package com.lat.be.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.lat.be.domain.Cart;
+import com.lat.be.domain.CartDetail;
+import com.lat.be.domain.Order;
+import com.lat.be.domain.OrderDetail;
+import com.lat.be.domain.Product;
+import com.lat.be.domain.User;
+import com.lat.be.domain.enumeration.ProductStatus;
+import com.lat.be.repository.CartDetailRepository;
+import com.lat.be.repository.CartRepository;
+import com.lat.be.repository.OrderDetailRepository;
+import com.lat.be.repository.OrderRepository;
+import com.lat.be.repository.ProductRepository;
+import com.lat.be.repository.UserRepository;
+import com.lat.be.support.MySqlIntegrationTest;
+import com.lat.be.util.constant.OrderStatus;
+import com.lat.be.util.constant.PaymentMethod;
+import com.lat.be.util.constant.PaymentStatus;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Số câu lệnh SQL của các API danh sách không được tăng theo số đơn hàng / số dòng giỏ hàng (chống N+1).
+ * Đếm bằng Hibernate Statistics (generate_statistics đã bật trong application.yml).
+ */
+@AutoConfigureMockMvc
+class ListingQueryCountTest extends MySqlIntegrationTest {
+    private static final int LINES_PER_ORDER = 3;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderDetailRepository orderDetailRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartDetailRepository cartDetailRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        this.statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void myOrdersUsesTwoStatementsRegardlessOfOrderCount() throws Exception {
+        // Đơn hàng dạng gọn + dòng sản phẩm của mọi đơn
+        assertThat(statementsFor(1, "/api/v1/orders/my-orders")).isEqualTo(2);
+        assertThat(statementsFor(8, "/api/v1/orders/my-orders")).isEqualTo(2);
+    }
+
+    @Test
+    void myOrdersPageUsesThreeStatementsRegardlessOfOrderCount() throws Exception {
+        // Đếm + một trang đơn hàng + dòng sản phẩm của trang
+        assertThat(statementsFor(1, "/api/v1/orders/my-orders/page?page=1&size=10")).isEqualTo(3);
+        assertThat(statementsFor(8, "/api/v1/orders/my-orders/page?page=1&size=10")).isEqualTo(3);
+    }
+
+    @Test
+    void cartListingUsesTwoStatementsRegardlessOfLineCount() throws Exception {
+        // ID giỏ hàng + dòng giỏ kèm giỏ, người dùng và sản phẩm
+        assertThat(cartStatementsFor(1)).isEqualTo(2);
+        assertThat(cartStatementsFor(8)).isEqualTo(2);
+    }
+
+    private long statementsFor(int orders, String url) throws Exception {
+        User user = createUser("orders");
+        for (int i = 0; i < orders; i++) {
+            createOrder(user);
+        }
+        return countStatements(user, url);
+    }
+
+    private long cartStatementsFor(int lines) throws Exception {
+        User user = createUser("cart");
+        Cart cart = this.cartRepository.save(Cart.builder().user(user).build());
+        for (int i = 0; i < lines; i++) {
+            this.cartDetailRepository.save(CartDetail.builder()
+                    .cart(cart)
+                    .product(createProduct())
+                    .quantity(1)
+                    .build());
+        }
+        return countStatements(user, "/api/v1/carts");
+    }
+
+    private long countStatements(User user, String url) throws Exception {
+        this.statistics.clear();
+        this.mockMvc.perform(get(url).with(jwt()
+                        .jwt(token -> token.subject(user.getEmail()).claim("user", Map.of(
+                                "id", user.getId(), "email", user.getEmail(), "name", user.getName())))
+                        .authorities(new SimpleGrantedAuthority("ROLE_user"))))
+                .andExpect(status().isOk());
+        return this.statistics.getPrepareStatementCount();
+    }
+
+    private User createUser(String prefix) {
+        return this.userRepository.save(User.builder()
+                .name("Người dùng kiểm thử")
+                .email(prefix + "-" + System.nanoTime() + "@test.local")
+                .password("secret")
+                .build());
+    }
+
+    private void createOrder(User user) {
+        Order order = this.orderRepository.save(Order.builder()
+                .user(user)
+                .totalPrice(LINES_PER_ORDER * 100_000L)
+                .paymentMethod(PaymentMethod.COD)
+                .paymentStatus(PaymentStatus.PENDING)
+                .orderStatus(OrderStatus.PENDING)
+                .phone("0900000000")
+                .address("Hà Nội")
+                .build());
+        List<OrderDetail> details = new ArrayList<>();
+        for (int i = 0; i < LINES_PER_ORDER; i++) {
+            details.add(OrderDetail.builder()
+                    .order(order)
+                    .product(createProduct())
+                    .price(100_000)
+                    .quantity(1)
+                    .totalPrice(100_000)
+                    .build());
+        }
+        this.orderDetailRepository.saveAll(details);
+    }
+
+    private Product createProduct() {
+        return this.productRepository.save(Product.builder()
+                .name("Sản phẩm kiểm thử " + System.nanoTime())
+                .sellPrice(100_000)
+                .quantity(10)
+                .status(ProductStatus.ACTIVE)
+                .build());
+    }
+}
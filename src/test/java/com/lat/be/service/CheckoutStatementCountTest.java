@@ -0,0 +1,147 @@
+package com.lat.be.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.lat.be.domain.Cart;
+import com.lat.be.domain.CartDetail;
+import com.lat.be.domain.Product;
+import com.lat.be.domain.User;
+import com.lat.be.domain.enumeration.ProductStatus;
+import com.lat.be.domain.request.CreateOrderDTO;
+import com.lat.be.repository.CartDetailRepository;
+import com.lat.be.repository.CartRepository;
+import com.lat.be.repository.ProductRepository;
+import com.lat.be.repository.UserRepository;
+import com.lat.be.support.AsUser;
+import com.lat.be.support.MySqlIntegrationTest;
+import com.lat.be.support.StatementRecorder;
+import com.lat.be.util.constant.PaymentMethod;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Số câu SQL của giao dịch tạo đơn hàng không được tăng theo số dòng giỏ hàng: trừ kho một batch, ghi dòng đơn
+ * một batch, đọc giỏ một câu và xóa giỏ một câu. Đếm ở tầng JDBC (StatementRecorder) vì trừ kho chạy qua
+ * JdbcTemplate. Câu lấy ID từ bảng giả lập sequence (order_details_seq) không được tính: mỗi lần lấy đủ cho 50 dòng
+ * nên có hay không tùy vị trí trong khối ID, không phụ thuộc số dòng của đơn.
+ */
+class CheckoutStatementCountTest extends MySqlIntegrationTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private StatementRecorder statementRecorder;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartDetailRepository cartDetailRepository;
+
+    @Test
+    void createOrderUsesSameStatementsRegardlessOfLineCount() throws Exception {
+        List<String> single = checkout(1);
+        List<String> many = checkout(8);
+
+        assertThat(many).hasSameSizeAs(single);
+        assertThat(many).hasSizeLessThanOrEqualTo(10);
+    }
+
+    @Test
+    void stockIsDecrementedInOneBatch() throws Exception {
+        assertThat(count(checkout(8), "update", "products")).isEqualTo(1);
+    }
+
+    @Test
+    void orderLinesAreInsertedInOneBatch() throws Exception {
+        List<String> statements = checkout(8);
+        assertThat(count(statements, "insert", "order_details")).isEqualTo(1);
+        assertThat(count(statements, "insert", "orders")).isEqualTo(1);
+    }
+
+    @Test
+    void cartIsReadAndClearedWithOneStatementEach() throws Exception {
+        List<String> statements = checkout(8);
+        assertThat(count(statements, "select", "from cart_details")).isEqualTo(1);
+        assertThat(count(statements, "delete", "cart_details")).isEqualTo(1);
+        // ID giỏ hàng được lấy một lần khi đọc giỏ và dùng lại khi xóa
+        assertThat(count(statements, "select", "from carts")).isEqualTo(1);
+    }
+
+    // Giao dịch tạo đơn được bọc trong giao dịch của kiểm thử để các listener sau commit (số liệu, cache)
+    // không bị tính; flush để các INSERT còn chờ cũng được gửi trước khi dừng đếm
+    private List<String> checkout(int lines) throws Exception {
+        String email = createBuyerWithCart(lines);
+        return AsUser.call(email, () -> this.transactionTemplate.execute(status -> {
+            List<String> statements;
+            this.statementRecorder.start();
+            try {
+                this.orderService.createOrder(CreateOrderDTO.builder()
+                        .paymentMethod(PaymentMethod.COD)
+                        .phone("0900000000")
+                        .address("Hà Nội")
+                        .build());
+                this.entityManager.flush();
+            } finally {
+                statements = this.statementRecorder.stop();
+            }
+            return statements.stream()
+                    .filter(sql -> !sql.contains("_seq"))
+                    .toList();
+        }));
+    }
+
+    private static long count(List<String> statements, String verb, String table) {
+        String pattern = "\\s*" + verb + "\\b.*\\b" + table.toLowerCase(Locale.ROOT) + "\\b.*";
+        return statements.stream()
+                .filter(sql -> sql.replace('\n', ' ').matches(pattern))
+                .count();
+    }
+
+    private String createBuyerWithCart(int lines) {
+        String email = "statements-" + System.nanoTime() + "@test.local";
+        User user = this.userRepository.save(User.builder()
+                .name("Người mua kiểm thử")
+                .email(email)
+                .password("secret")
+                .build());
+        Cart cart = this.cartRepository.save(Cart.builder().user(user).build());
+        for (int i = 0; i < lines; i++) {
+            this.cartDetailRepository.save(CartDetail.builder()
+                    .cart(cart)
+                    .product(createProduct())
+                    .quantity(1)
+                    .build());
+        }
+        return email;
+    }
+
+    private Product createProduct() {
+        return this.productRepository.save(Product.builder()
+                .name("Sản phẩm kiểm thử " + System.nanoTime())
+                .sellPrice(100_000)
+                .quantity(10)
+                .status(ProductStatus.ACTIVE)
+                .build());
+    }
+}
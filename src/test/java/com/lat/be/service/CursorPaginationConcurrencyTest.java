@@ -0,0 +1,131 @@
+package com.lat.be.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.lat.be.domain.Supplier;
+import com.lat.be.domain.response.ResultPaginationDTO;
+import com.lat.be.repository.SupplierRepository;
+import com.lat.be.support.MySqlIntegrationTest;
+
+/**
+ * Phân trang theo con trỏ khi có dòng mới được thêm trong lúc duyệt: mỗi dòng có sẵn xuất hiện đúng một lần,
+ * thứ tự (name, id) được giữ, dòng thêm vào trước vị trí đang đọc không làm lệch trang. Phân trang OFFSET
+ * trong cùng tình huống lặp lại dòng của trang trước (lý do dùng con trỏ cho danh sách dài).
+ */
+class CursorPaginationConcurrencyTest extends MySqlIntegrationTest {
+    private static final int INITIAL_ROWS = 60;
+    private static final int PAGE_SIZE = 7;
+
+    @Autowired
+    private SupplierService supplierService;
+
+    @Autowired
+    private SupplierRepository supplierRepository;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void shutdownWriter() {
+        this.writer.shutdownNow();
+    }
+
+    @Test
+    void cursorPagesStayStableUnderConcurrentInserts() throws Exception {
+        String prefix = "cursor-" + System.nanoTime();
+        Set<Long> initialIds = createInitialRows(prefix);
+
+        // Luồng ghi liên tục thêm dòng xen giữa các dòng có sẵn trong lúc đọc
+        AtomicBoolean stop = new AtomicBoolean();
+        Future<?> inserts = this.writer.submit(() -> {
+            for (int i = 0; !stop.get(); i++) {
+                save(prefix + "-m" + String.format("%02d", i % 20) + "x");
+            }
+        });
+
+        List<Supplier> seen = new ArrayList<>();
+        Set<Long> insertedBefore = new HashSet<>();
+        Set<Long> insertedAfter = new HashSet<>();
+        String cursor = null;
+        try {
+            do {
+                ResultPaginationDTO page = this.supplierService.handleGetSupplierByCursor(
+                        byPrefix(prefix), PageRequest.of(0, PAGE_SIZE, Sort.by("name")), cursor);
+                seen.addAll(content(page));
+                cursor = page.getMeta().getNextCursor();
+                if (cursor != null) {
+                    // Một dòng xếp trước mọi dòng đã đọc và một dòng xếp sau cùng
+                    insertedBefore.add(save(prefix + "-a" + seen.size()).getId());
+                    insertedAfter.add(save(prefix + "-z" + String.format("%04d", seen.size())).getId());
+                }
+            } while (cursor != null);
+        } finally {
+            stop.set(true);
+            inserts.get(30, TimeUnit.SECONDS);
+        }
+
+        List<Long> ids = seen.stream().map(Supplier::getId).toList();
+        assertThat(ids).doesNotHaveDuplicates();
+        assertThat(ids).containsAll(initialIds);
+        // Dòng xếp sau vị trí đang đọc được thấy ở các trang sau, dòng xếp trước thì không
+        assertThat(ids).containsAll(insertedAfter);
+        assertThat(ids).doesNotContainAnyElementsOf(insertedBefore);
+        assertThat(seen).isSortedAccordingTo(Comparator.comparing(Supplier::getName).thenComparing(Supplier::getId));
+    }
+
+    @Test
+    void offsetPagesRepeatRowsWhenRowsAreInsertedBefore() throws Exception {
+        String prefix = "offset-" + System.nanoTime();
+        createInitialRows(prefix);
+
+        List<Long> ids = new ArrayList<>();
+        for (int pageNumber = 0; pageNumber * PAGE_SIZE < INITIAL_ROWS; pageNumber++) {
+            ResultPaginationDTO page = this.supplierService.handleGetSupplier(
+                    byPrefix(prefix), PageRequest.of(pageNumber, PAGE_SIZE, Sort.by("name", "id")));
+            content(page).forEach(supplier -> ids.add(supplier.getId()));
+            save(prefix + "-a" + pageNumber);
+        }
+
+        // Mỗi dòng thêm vào trước đẩy dòng cuối của trang trước sang đầu trang sau
+        assertThat(new HashSet<>(ids)).hasSizeLessThan(ids.size());
+    }
+
+    // Tên trùng theo từng nhóm ba để id phải phân định thứ tự
+    private Set<Long> createInitialRows(String prefix) {
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < INITIAL_ROWS; i++) {
+            ids.add(save(prefix + "-m" + String.format("%02d", i / 3)).getId());
+        }
+        return ids;
+    }
+
+    private Supplier save(String name) {
+        return this.supplierRepository.save(Supplier.builder().name(name).build());
+    }
+
+    private static Specification<Supplier> byPrefix(String prefix) {
+        return (root, query, cb) -> cb.like(root.get("name"), prefix + "-%");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Supplier> content(ResultPaginationDTO page) {
+        return (List<Supplier>) page.getResult();
+    }
+}
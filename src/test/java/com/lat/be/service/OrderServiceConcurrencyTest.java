@@ -0,0 +1,191 @@
+package com.lat.be.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.lat.be.domain.Cart;
+import com.lat.be.domain.CartDetail;
+import com.lat.be.domain.Product;
+import com.lat.be.domain.User;
+import com.lat.be.domain.enumeration.ProductStatus;
+import com.lat.be.domain.request.CreateOrderDTO;
+import com.lat.be.repository.CartDetailRepository;
+import com.lat.be.repository.CartRepository;
+import com.lat.be.repository.ProductRepository;
+import com.lat.be.repository.UserRepository;
+import com.lat.be.support.AsUser;
+import com.lat.be.support.MySqlIntegrationTest;
+import com.lat.be.util.constant.PaymentMethod;
+
+/**
+ * Nhiều người cùng đặt một sản phẩm sắp hết hàng: tồn kho không được âm và số đơn thành công
+ * không được vượt quá tồn kho ban đầu.
+ */
+class OrderServiceConcurrencyTest extends MySqlIntegrationTest {
+    private static final int THREADS = 16;
+    private static final int BUYERS = 40;
+    private static final int INITIAL_STOCK = 5;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartDetailRepository cartDetailRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    void shutdownPool() {
+        this.pool.shutdownNow();
+    }
+
+    @Test
+    void concurrentCheckoutsNeverOversellLowStockProduct() throws Exception {
+        Product product = createProduct(INITIAL_STOCK);
+        List<String> buyers = new ArrayList<>();
+        for (int i = 0; i < BUYERS; i++) {
+            buyers.add(createBuyerWithCart("checkout", i, product, 1));
+        }
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        runConcurrently(buyers.stream().<Callable<Void>>map(email -> () -> {
+            try {
+                AsUser.call(email, () -> this.orderService.createOrder(CreateOrderDTO.builder()
+                        .paymentMethod(PaymentMethod.COD)
+                        .phone("0900000000")
+                        .address("Hà Nội")
+                        .build()));
+                succeeded.incrementAndGet();
+            } catch (RuntimeException e) {
+                rejected.incrementAndGet();
+            }
+            return null;
+        }).toList());
+
+        int remaining = stockOf(product.getId());
+        assertThat(remaining).isGreaterThanOrEqualTo(0);
+        assertThat(succeeded.get()).isLessThanOrEqualTo(INITIAL_STOCK);
+        assertThat(succeeded.get() + rejected.get()).isEqualTo(BUYERS);
+        // Người mua nhiều hơn tồn kho nên hàng phải được bán hết, không đơn nào bị từ chối oan
+        assertThat(remaining).isZero();
+        assertThat(soldQuantity(product.getId())).isEqualTo(INITIAL_STOCK - remaining);
+    }
+
+    @Test
+    void concurrentBatchDecrementsNeverDriveStockNegative() throws Exception {
+        Product product = createProduct(INITIAL_STOCK);
+        Product other = createProduct(1000);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < BUYERS; i++) {
+            // Số lượng 1 hoặc 2 để có cả lô trừ được một phần; lô nào thiếu hàng thì rollback toàn bộ
+            int quantity = 1 + i % 2;
+            tasks.add(() -> {
+                Boolean applied = this.transactionTemplate.execute(status -> {
+                    List<Long> insufficient = this.productRepository.decrementStockBatch(
+                            new TreeMap<>(Map.of(product.getId(), quantity, other.getId(), 1)),
+                            Instant.now());
+                    if (!insufficient.isEmpty()) {
+                        status.setRollbackOnly();
+                        return false;
+                    }
+                    return true;
+                });
+                if (Boolean.TRUE.equals(applied)) {
+                    succeeded.addAndGet(quantity);
+                }
+                return null;
+            });
+        }
+        runConcurrently(tasks);
+
+        int remaining = stockOf(product.getId());
+        assertThat(remaining).isGreaterThanOrEqualTo(0);
+        assertThat(succeeded.get()).isLessThanOrEqualTo(INITIAL_STOCK);
+        assertThat(remaining).isEqualTo(INITIAL_STOCK - succeeded.get());
+    }
+
+    private void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Callable<Void> task : tasks) {
+            futures.add(this.pool.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    private Product createProduct(int quantity) {
+        return this.productRepository.save(Product.builder()
+                .name("Sản phẩm kiểm thử " + System.nanoTime())
+                .sellPrice(100_000)
+                .quantity(quantity)
+                .status(ProductStatus.ACTIVE)
+                .build());
+    }
+
+    private String createBuyerWithCart(String prefix, int index, Product product, int quantity) {
+        String email = prefix + "-" + index + "-" + System.nanoTime() + "@test.local";
+        User user = this.userRepository.save(User.builder()
+                .name("Người mua " + index)
+                .email(email)
+                .password("secret")
+                .build());
+        Cart cart = this.cartRepository.save(Cart.builder().user(user).build());
+        this.cartDetailRepository.save(CartDetail.builder()
+                .cart(cart)
+                .product(product)
+                .quantity(quantity)
+                .build());
+        return email;
+    }
+
+    private int stockOf(Long productId) {
+        return this.jdbcTemplate.queryForObject("SELECT quantity FROM products WHERE id = ?", Integer.class, productId);
+    }
+
+    private int soldQuantity(Long productId) {
+        return this.jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM order_details WHERE product_id = ?", Integer.class, productId);
+    }
+}
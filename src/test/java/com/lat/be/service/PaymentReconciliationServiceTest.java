@@ -0,0 +1,207 @@
+package com.lat.be.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.lat.be.config.VNPayConfig;
+import com.lat.be.domain.Order;
+import com.lat.be.domain.PaymentAttempt;
+import com.lat.be.domain.PaymentEvent;
+import com.lat.be.domain.ScheduledJobState;
+import com.lat.be.repository.OrderRepository;
+import com.lat.be.repository.PaymentAttemptRepository;
+import com.lat.be.repository.PaymentEventRepository;
+import com.lat.be.repository.ScheduledJobStateRepository;
+import com.lat.be.support.MySqlIntegrationTest;
+import com.lat.be.util.constant.OrderStatus;
+import com.lat.be.util.constant.PaymentMethod;
+import com.lat.be.util.constant.PaymentStatus;
+
+/**
+ * Đối soát VNPay với StubVNPayTransactionClient (profile it đặt vnpay.reconciliation.client=stub).
+ */
+class PaymentReconciliationServiceTest extends MySqlIntegrationTest {
+
+    @Autowired
+    private PaymentReconciliationService reconciliationService;
+
+    @Autowired
+    private StubVNPayTransactionClient stubClient;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private PaymentAttemptRepository paymentAttemptRepository;
+
+    @Autowired
+    private PaymentEventRepository paymentEventRepository;
+
+    @Autowired
+    private ScheduledJobStateRepository jobStateRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void resetState() {
+        this.stubClient.clear();
+        this.jobStateRepository.deleteAll();
+        // Đơn còn chờ từ các kiểm thử khác không được lẫn vào lượt quét
+        this.jdbcTemplate.update("UPDATE orders SET payment_status = 'FAILED' WHERE payment_status = 'PENDING'");
+    }
+
+    @AfterEach
+    void restoreLimits() {
+        ReflectionTestUtils.setField(this.reconciliationService, "batchSize", 200);
+        ReflectionTestUtils.setField(this.reconciliationService, "maxBatchesPerRun", 50);
+    }
+
+    @Test
+    void paidResultIsRecordedAsSuccessEventAndMarksOrderPaid() {
+        Order order = createStaleOrder();
+        String txnRef = issue(order, Instant.now().minus(Duration.ofHours(1)));
+        this.stubClient.setResult(txnRef, "00", "00");
+
+        this.reconciliationService.reconcile();
+
+        PaymentEvent event = this.paymentEventRepository.findByTxnRef(txnRef).orElseThrow();
+        assertThat(event.getSource()).isEqualTo(PaymentEventService.SOURCE_QUERY);
+        assertThat(event.isSuccess()).isTrue();
+        assertThat(awaitPaymentStatus(order.getId(), PaymentStatus.PAID)).isEqualTo(PaymentStatus.PAID);
+    }
+
+    @Test
+    void paymentThroughEarlierUrlIsFoundAfterUrlWasReissued() {
+        Order order = createStaleOrder();
+        String paidTxnRef = issue(order, Instant.now().minus(Duration.ofHours(2)));
+        issue(order, Instant.now().minus(Duration.ofHours(1)));
+        this.stubClient.setResult(paidTxnRef, "00", "00");
+
+        this.reconciliationService.reconcile();
+
+        assertThat(this.paymentEventRepository.findByTxnRef(paidTxnRef)).isPresent();
+        assertThat(awaitPaymentStatus(order.getId(), PaymentStatus.PAID)).isEqualTo(PaymentStatus.PAID);
+    }
+
+    @Test
+    void notFoundResponseMarksOrderFailed() {
+        Order order = createStaleOrder();
+        String txnRef = issue(order, Instant.now().minus(Duration.ofHours(1)));
+        this.stubClient.setResult(txnRef, "91", null);
+
+        this.reconciliationService.reconcile();
+
+        assertThat(this.stubClient.getCallCount()).isEqualTo(1);
+        assertThat(paymentStatusOf(order.getId())).isEqualTo(PaymentStatus.FAILED);
+        assertThat(this.paymentEventRepository.findByTxnRef(txnRef)).isEmpty();
+    }
+
+    @Test
+    void runResumesFromSavedCheckpoint() {
+        Order first = createStaleOrder();
+        issue(first, Instant.now().minus(Duration.ofHours(1)));
+        Order second = createStaleOrder();
+        issue(second, Instant.now().minus(Duration.ofHours(1)));
+        ReflectionTestUtils.setField(this.reconciliationService, "batchSize", 1);
+        ReflectionTestUtils.setField(this.reconciliationService, "maxBatchesPerRun", 1);
+
+        this.reconciliationService.reconcile();
+
+        assertThat(paymentStatusOf(first.getId())).isEqualTo(PaymentStatus.FAILED);
+        assertThat(paymentStatusOf(second.getId())).isEqualTo(PaymentStatus.PENDING);
+        ScheduledJobState state = this.jobStateRepository.findById(PaymentReconciliationService.JOB_NAME).orElseThrow();
+        assertThat(state.getCheckpoint()).isEqualTo(first.getId());
+        assertThat(state.getLockedBy()).isNull();
+
+        this.reconciliationService.reconcile();
+
+        assertThat(paymentStatusOf(second.getId())).isEqualTo(PaymentStatus.FAILED);
+        assertThat(this.stubClient.getCallCount()).isEqualTo(2);
+    }
+
+    @Test
+    void secondInstanceIsBlockedByLease() {
+        Order order = createStaleOrder();
+        issue(order, Instant.now().minus(Duration.ofHours(1)));
+        this.jobStateRepository.save(ScheduledJobState.builder()
+                .name(PaymentReconciliationService.JOB_NAME)
+                .lockedBy("other-instance")
+                .lockedUntil(Instant.now().plus(Duration.ofMinutes(10)))
+                .build());
+
+        this.reconciliationService.reconcile();
+
+        assertThat(this.stubClient.getCallCount()).isZero();
+        assertThat(paymentStatusOf(order.getId())).isEqualTo(PaymentStatus.PENDING);
+        ScheduledJobState state = this.jobStateRepository.findById(PaymentReconciliationService.JOB_NAME).orElseThrow();
+        assertThat(state.getLockedBy()).isEqualTo("other-instance");
+    }
+
+    private Order createStaleOrder() {
+        return this.orderRepository.save(Order.builder()
+                .totalPrice(100_000)
+                .paymentMethod(PaymentMethod.TRANSFER)
+                .paymentStatus(PaymentStatus.PENDING)
+                .orderStatus(OrderStatus.PENDING)
+                .phone("0900000000")
+                .address("Hà Nội")
+                .build());
+    }
+
+    // Ghi một URL thanh toán đã hết hạn cho đơn hàng như VNPayService.issuePaymentUrl
+    private String issue(Order order, Instant createdAt) {
+        String txnRef = order.getId() + "-" + createdAt.toEpochMilli();
+        String transactionDate = LocalDateTime.ofInstant(createdAt, VNPayConfig.VIETNAM_ZONE)
+                .format(VNPayConfig.VNP_DATE_FORMAT);
+        Instant expiresAt = createdAt.plus(Duration.ofMinutes(15));
+        this.paymentAttemptRepository.save(PaymentAttempt.builder()
+                .orderId(order.getId())
+                .txnRef(txnRef)
+                .transactionDate(transactionDate)
+                .amount(order.getTotalPrice())
+                .expiresAt(expiresAt)
+                .build());
+        this.jdbcTemplate.update("UPDATE orders SET payment_url = ?, payment_url_expires_at = ? WHERE id = ?",
+                "https://sandbox.vnpayment.vn/paymentv2/vpcpay.html?vnp_CreateDate=" + transactionDate
+                        + "&vnp_TxnRef=" + txnRef,
+                Timestamp.from(expiresAt), order.getId());
+        return txnRef;
+    }
+
+    private PaymentStatus paymentStatusOf(Long orderId) {
+        return this.orderRepository.findPaymentStatusById(orderId).orElseThrow();
+    }
+
+    // Giao dịch thành công được áp dụng bất đồng bộ trên luồng của đơn hàng
+    private PaymentStatus awaitPaymentStatus(Long orderId, PaymentStatus expected) {
+        return await(() -> paymentStatusOf(orderId), expected);
+    }
+
+    private static <T> T await(Supplier<T> value, T expected) {
+        Instant deadline = Instant.now().plusSeconds(10);
+        T current = value.get();
+        while (!expected.equals(current) && Instant.now().isBefore(deadline)) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            current = value.get();
+        }
+        return current;
+    }
+}
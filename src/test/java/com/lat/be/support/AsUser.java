@@ -0,0 +1,42 @@
+package com.lat.be.support;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Gọi service như trong một request của người dùng đã đăng nhập: mỗi lần gọi có request scope riêng
+ * (cho CurrentUserResolver) và SecurityContext với email làm principal. An toàn khi gọi từ nhiều luồng.
+ */
+public final class AsUser {
+
+    private AsUser() {
+    }
+
+    public static <T> T call(String email, Callable<T> action) throws Exception {
+        return call(email, List.of(), action);
+    }
+
+    public static <T> T call(String email, List<String> authorities, Callable<T> action) throws Exception {
+        ServletRequestAttributes attributes = new ServletRequestAttributes(new MockHttpServletRequest());
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(new UsernamePasswordAuthenticationToken(email, null,
+                authorities.stream().map(SimpleGrantedAuthority::new).toList()));
+        RequestContextHolder.setRequestAttributes(attributes);
+        SecurityContextHolder.setContext(context);
+        try {
+            return action.call();
+        } finally {
+            attributes.requestCompleted();
+            RequestContextHolder.resetRequestAttributes();
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
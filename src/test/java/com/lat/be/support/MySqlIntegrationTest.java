@@ -0,0 +1,37 @@
+package com.lat.be.support;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.lat.be.HoangTuSportApplication;
+
+/**
+ * Lớp cơ sở cho kiểm thử tích hợp trên MySQL thật (khóa dòng, SKIP LOCKED và batch JDBC phụ thuộc vào MySQL
+ * nên không dùng CSDL nhúng). Container là một bean nên sống cùng context được cache và dùng chung cho mọi lớp con;
+ * các lớp con bị bỏ qua khi máy không có Docker. StatementRecorder có sẵn để đếm câu SQL gửi tới CSDL.
+ */
+@SpringBootTest(classes = { HoangTuSportApplication.class, MySqlIntegrationTest.Containers.class })
+@ActiveProfiles("it")
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class MySqlIntegrationTest {
+
+    @TestConfiguration(proxyBeanMethods = false)
+    public static class Containers {
+        @Bean
+        @ServiceConnection
+        MySQLContainer<?> mysqlContainer() {
+            return new MySQLContainer<>("mysql:8.0");
+        }
+
+        // Static vì là BeanPostProcessor, phải được tạo trước các bean khác
+        @Bean
+        static StatementRecorder statementRecorder() {
+            return new StatementRecorder();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.lat.be.support;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Ghi lại các câu SQL mà luồng đang ghi gửi tới CSDL, kể cả câu chạy qua JdbcTemplate (Hibernate Statistics không
+ * đếm được). Mỗi lần execute / executeBatch là một lượt gửi: batch được rewriteBatchedStatements gộp thành một câu
+ * nên chỉ ghi một lần. Bọc mọi DataSource của context; khi không ghi thì chỉ chuyển tiếp lời gọi.
+ */
+public class StatementRecorder implements BeanPostProcessor {
+    private final List<String> statements = new CopyOnWriteArrayList<>();
+    private volatile Thread recordingThread;
+
+    /**
+     * Bắt đầu ghi các câu lệnh của luồng hiện tại (xóa kết quả lần ghi trước)
+     */
+    public void start() {
+        this.statements.clear();
+        this.recordingThread = Thread.currentThread();
+    }
+
+    /**
+     * Dừng ghi và trả về các câu lệnh đã gửi theo thứ tự (chữ thường)
+     */
+    public List<String> stop() {
+        this.recordingThread = null;
+        return List.copyOf(this.statements);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !Proxy.isProxyClass(bean.getClass())) {
+            return proxy(DataSource.class, dataSource, null);
+        }
+        return bean;
+    }
+
+    private void record(String sql) {
+        if (this.recordingThread == Thread.currentThread()) {
+            this.statements.add(sql != null ? sql.toLowerCase(Locale.ROOT) : "batch");
+        }
+    }
+
+    // sql: câu lệnh của PreparedStatement, null với Statement thường (câu lệnh nằm trong tham số execute)
+    private <T> T proxy(Class<T> type, T target, String sql) {
+        return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type },
+                (instance, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("executeBatch") || name.equals("executeLargeBatch")) {
+                        record(sql);
+                    } else if (name.startsWith("execute")) {
+                        record(args != null && args.length > 0 && args[0] instanceof String text ? text : sql);
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Connection connection && name.equals("getConnection") && type == DataSource.class) {
+                        return proxy(Connection.class, connection, null);
+                    }
+                    if (type == Connection.class) {
+                        if (result instanceof CallableStatement statement) {
+                            return proxy(CallableStatement.class, statement, (String) args[0]);
+                        }
+                        if (result instanceof PreparedStatement statement) {
+                            return proxy(PreparedStatement.class, statement, (String) args[0]);
+                        }
+                        if (result instanceof Statement statement && name.equals("createStatement")) {
+                            return proxy(Statement.class, statement, null);
+                        }
+                    }
+                    return result;
+                }));
+    }
+}
@@ -0,0 +1,95 @@
+package com.lat.be.util;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Bản sao cách ký trước đây của VNPayConfig, làm mốc cho VNPaySignerTest và VNPaySignerBenchmark
+ */
+final class VNPayLegacySigner {
+    private VNPayLegacySigner() {
+    }
+
+    static String hmacSHA512(String key, String data) {
+        try {
+            Mac sha512_HMAC = Mac.getInstance("HmacSHA512");
+            SecretKeySpec secret_key = new SecretKeySpec(key.getBytes(), "HmacSHA512");
+            sha512_HMAC.init(secret_key);
+            byte[] hash = sha512_HMAC.doFinal(data.getBytes());
+            StringBuilder builder = new StringBuilder();
+            for (byte b : hash) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (Exception ex) {
+            throw new RuntimeException("Failed to calculate hmac-sha512", ex);
+        }
+    }
+
+    static String createQuery(String secret, Map<String, String> vnp_Params) {
+        StringBuilder query = new StringBuilder();
+        StringBuilder hashData = new StringBuilder();
+        List<String> fieldNames = new ArrayList<>(vnp_Params.keySet());
+        Collections.sort(fieldNames);
+        Iterator<String> itr = fieldNames.iterator();
+        while (itr.hasNext()) {
+            String fieldName = itr.next();
+            String fieldValue = vnp_Params.get(fieldName);
+            if ((fieldValue != null) && (fieldValue.length() > 0)) {
+                hashData.append(fieldName);
+                hashData.append('=');
+                try {
+                    hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
+                    query.append(URLEncoder.encode(fieldName, StandardCharsets.US_ASCII.toString()));
+                    query.append('=');
+                    query.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
+                } catch (UnsupportedEncodingException e) {
+                    throw new RuntimeException("Error encoding URL parameters", e);
+                }
+                if (itr.hasNext()) {
+                    query.append('&');
+                    hashData.append('&');
+                }
+            }
+        }
+        return query + "&vnp_SecureHash=" + hmacSHA512(secret, hashData.toString());
+    }
+
+    static boolean validate(String secret, Map<String, String> vnp_Params) {
+        String vnp_SecureHash = vnp_Params.get("vnp_SecureHash");
+        vnp_Params.remove("vnp_SecureHash");
+        if (vnp_Params.containsKey("vnp_SecureHashType")) {
+            vnp_Params.remove("vnp_SecureHashType");
+        }
+        StringBuilder hashData = new StringBuilder();
+        List<String> fieldNames = new ArrayList<>(vnp_Params.keySet());
+        Collections.sort(fieldNames);
+        Iterator<String> itr = fieldNames.iterator();
+        while (itr.hasNext()) {
+            String fieldName = itr.next();
+            String fieldValue = vnp_Params.get(fieldName);
+            if ((fieldValue != null) && (fieldValue.length() > 0)) {
+                hashData.append(fieldName);
+                hashData.append('=');
+                try {
+                    hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
+                } catch (UnsupportedEncodingException e) {
+                    throw new RuntimeException("Error encoding URL parameters", e);
+                }
+                if (itr.hasNext()) {
+                    hashData.append('&');
+                }
+            }
+        }
+        return hmacSHA512(secret, hashData.toString()).equals(vnp_SecureHash);
+    }
+}
@@ -0,0 +1,101 @@
+package com.lat.be.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * VNPaySigner phải cho cùng query string và chữ ký với cách ký cũ (VNPayLegacySigner) trên tham số ngẫu nhiên.
+ */
+class VNPaySignerTest {
+    private static final int ROUNDS = 500;
+    private static final String NAME_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_";
+    private static final String[] VALUE_PARTS = {
+            "a", "Z", "9", " ", ".", "-", "*", "_", "+", "&", "=", "%", "/", ":", "?", "#", "~", "'", "\"",
+            "ă", "đ", "ơ", "Thanh toán", "Nguyễn", "€", "😀", " "
+    };
+
+    // Cố định seed để lỗi tái hiện được
+    private final Random random = new Random(20250101L);
+
+    @Test
+    void signMatchesLegacy() {
+        for (int round = 0; round < ROUNDS; round++) {
+            String secret = randomSecret();
+            Map<String, String> params = randomParams();
+
+            String legacy = VNPayLegacySigner.createQuery(secret, new HashMap<>(params));
+
+            StringBuilder query = VNPaySigner.canonicalQuery(new TreeMap<>(params));
+            String hash = new VNPaySigner(secret).sign(query);
+            query.append('&').append(VNPaySigner.SECURE_HASH).append('=').append(hash);
+            assertThat(query.toString()).as("params %s", params).isEqualTo(legacy);
+
+            // Không phụ thuộc kiểu map đầu vào
+            assertThat(VNPaySigner.canonicalQuery(new HashMap<>(params)).toString())
+                    .isEqualTo(VNPaySigner.canonicalQuery(new TreeMap<>(params)).toString());
+        }
+    }
+
+    @Test
+    void verifyMatchesLegacy() {
+        for (int round = 0; round < ROUNDS; round++) {
+            String secret = randomSecret();
+            VNPaySigner signer = new VNPaySigner(secret);
+            Map<String, String> params = randomParams();
+            String legacy = VNPayLegacySigner.createQuery(secret, new HashMap<>(params));
+            params.put(VNPaySigner.SECURE_HASH, legacy.substring(legacy.lastIndexOf('=') + 1));
+            if (this.random.nextBoolean()) {
+                params.put(VNPaySigner.SECURE_HASH_TYPE, "HmacSHA512");
+            }
+
+            assertThat(signer.verify(params)).as("params %s", params).isTrue();
+            assertThat(VNPayLegacySigner.validate(secret, new HashMap<>(params))).isTrue();
+
+            // Sửa một giá trị thì cả hai cách đều từ chối
+            String name = params.keySet().stream()
+                    .filter(key -> !key.startsWith(VNPaySigner.SECURE_HASH))
+                    .findFirst()
+                    .orElseThrow();
+            params.put(name, params.get(name) + "x");
+            assertThat(signer.verify(params)).isFalse();
+            assertThat(VNPayLegacySigner.validate(secret, new HashMap<>(params))).isFalse();
+        }
+    }
+
+    private String randomSecret() {
+        StringBuilder secret = new StringBuilder();
+        for (int i = 0; i < 32; i++) {
+            secret.append(NAME_CHARS.charAt(this.random.nextInt(NAME_CHARS.length())));
+        }
+        return secret.toString();
+    }
+
+    /**
+     * Tên gồm chữ, số, gạch dưới như tham số VNPay; giá trị luôn khác rỗng vì cách cũ để thừa '&' khi
+     * tham số cuối cùng rỗng (VNPay không gửi tham số rỗng)
+     */
+    private Map<String, String> randomParams() {
+        Map<String, String> params = new HashMap<>();
+        int count = 1 + this.random.nextInt(15);
+        while (params.size() < count) {
+            StringBuilder name = new StringBuilder("vnp_");
+            int nameLength = 1 + this.random.nextInt(12);
+            for (int i = 0; i < nameLength; i++) {
+                name.append(NAME_CHARS.charAt(this.random.nextInt(NAME_CHARS.length())));
+            }
+            StringBuilder value = new StringBuilder();
+            int parts = 1 + this.random.nextInt(8);
+            for (int i = 0; i < parts; i++) {
+                value.append(VALUE_PARTS[this.random.nextInt(VALUE_PARTS.length)]);
+            }
+            params.put(name.toString(), value.toString());
+        }
+        return params;
+    }
+}